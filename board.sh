@@ -1,6 +1,6 @@
 #!/usr/bin/env bash
 java \
--Djava.library.path=native/libpi4j.so \
+-Djava.library.path=native/libpi4j.so:c \
 -client \
 -Xms1g \
 -Xmx1g \
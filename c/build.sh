@@ -0,0 +1,10 @@
+#!/usr/bin/env bash
+# Builds liblightboard.so for CLightBoard from lightboard.c - run on the Pi, against its wiringPi
+cd "$(dirname "$0")"
+JAVA_HOME=${JAVA_HOME:-$(dirname $(dirname $(readlink -f $(which javac))))}
+gcc -O2 -Wall -shared -fPIC \
+-I"$JAVA_HOME/include" \
+-I"$JAVA_HOME/include/linux" \
+-o liblightboard.so \
+lightboard.c \
+-lwiringPi -lpthread
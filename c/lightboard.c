@@ -1,13 +1,25 @@
 #include <stdio.h>
+#include <stdlib.h>
+#include <pthread.h>
 #include <wiringPi.h>
 #include <jni.h>
 
 #define CHECK_BIT(var,pos) ((var) & (1<<(pos)))
 
+// Nibble bits, as laid out by ScanPlan
+#define RED_1   0x1
+#define GREEN_1 0x2
+#define RED_2   0x4
+#define GREEN_2 0x8
+
+// The middle slot word: slot index in the low bits, frame sequence above
+#define INDEX    0x3
+#define SEQUENCE 0x4
+
 int rows = 32;
 int cols = 192;
 
-int clock = 0;
+int clockPin = 0;
 int store = 1;
 int output = 2;
 int data1R = 3;
@@ -19,49 +31,49 @@ int addr1 = 22;
 int addr2 = 23;
 int addr3 = 24;
 
-double currentFrame[3][32][192];
-double nextFrame[3][32][192];
+// Three slots of rows/2 scan lines by cols nibbles, shared with Java
+unsigned char *frames;
+int slotSize;
+
+// Written by both sides, only ever atomically. Unsigned so the sequence wraps cleanly
+volatile unsigned int middle = 2;
+
+// Owned by the scan loop
+int front = 1;
+unsigned int lastSequence = 0;
+
+volatile int sleeping = 0;
 
 void pushTestPattern() {
     int r;
     int c;
-    for ( r=0; r<rows; r++ ) {
+    unsigned char *slot = frames + front * slotSize;
+    for ( r=0; r<rows/2; r++ ) {
         for ( c=0; c<cols; c++ ) {
             if ( c%4==0 || r%4==0 ) {
-                currentFrame[0][r][c] = 1.0;
-                currentFrame[1][r][c] = 1.0;
-                currentFrame[2][r][c] = 1.0;
+                slot[r * cols + c] = RED_1 | GREEN_1 | RED_2 | GREEN_2;
             } else {
-                currentFrame[0][r][c] = 0.0;
-                currentFrame[1][r][c] = 0.0;
-                currentFrame[2][r][c] = 0.0;
+                slot[r * cols + c] = 0;
             }
         }
     }
 }
 
-void dump(double data[3][32][192]) {
-    int r;
-    int c;
-    for ( r=0; r<rows; r++ ) {
-        for ( c=0; c<cols; c++ ) {
-            currentFrame[0][r][c] = data[0][r][c];
-            currentFrame[1][r][c] = data[0][r][c];
-            currentFrame[2][r][c] = data[0][r][c];
-        }
-    }
-}
-
-
-void sendSerialString(double red1[], double green1[], double red2[], double green2[]) {
+void sendSerialString(unsigned char line[]) {
     int col;
+    int last = -1;
     for (col = 0; col < cols ; col++) {
-        digitalWrite(clock, LOW);
-        digitalWrite(data1R, red1[col]<0.5 );
-        digitalWrite(data1G, green1[col]<0.5 );
-        digitalWrite(data2R, red2[col]<0.5 );
-        digitalWrite(data2G, green2[col]<0.5 );
-        digitalWrite(clock, HIGH);
+        int nibble = line[col];
+        int changed = nibble ^ last;
+        digitalWrite(clockPin, LOW);
+        if ( changed!=0 ) {
+            if ( changed & RED_1 ) digitalWrite(data1R, !(nibble & RED_1));
+            if ( changed & GREEN_1 ) digitalWrite(data1G, !(nibble & GREEN_1));
+            if ( changed & RED_2 ) digitalWrite(data2R, !(nibble & RED_2));
+            if ( changed & GREEN_2 ) digitalWrite(data2G, !(nibble & GREEN_2));
+            last = nibble;
+        }
+        digitalWrite(clockPin, HIGH);
     }
 }
 
@@ -88,10 +100,26 @@ void decodeRowAddress(int row) {
     }
 }
 
+// Swap in the newest frame, if Java has presented one since the last scan. If Java presents
+// again mid-swap the exchange fails and the newer frame is picked up next time round
+void acquire() {
+    unsigned int current = __atomic_load_n(&middle, __ATOMIC_ACQUIRE);
+    unsigned int sequence = current & ~INDEX;
+    if ( sequence!=lastSequence ) {
+        if ( __atomic_compare_exchange_n(&middle, &current, sequence | front, 0, __ATOMIC_ACQ_REL, __ATOMIC_ACQUIRE) ) {
+            front = current & INDEX;
+            lastSequence = sequence;
+        }
+    }
+}
+
 void push() {
     int row;
+    unsigned char *slot;
+    acquire();
+    slot = frames + front * slotSize;
     for (row = 0; row < rows/2; row++) {
-        sendSerialString(currentFrame[0][row], currentFrame[1][row], currentFrame[0][row + rows / 2], currentFrame[1][row + rows / 2]);
+        sendSerialString(slot + row * cols);
         digitalWrite(output, HIGH);
         decodeRowAddress(row);
         digitalWrite(store, LOW);
@@ -100,45 +128,75 @@ void push() {
     }
 }
 
+void *scan(void *arg) {
+    for ( ;; ) {
+        if ( sleeping ) {
+            digitalWrite(output, HIGH);
+            delay(100);
+        } else {
+            push();
+        }
+    }
+    return NULL;
+}
+
 void init() {
 
     printf("Starting C RaspPi LightBoard....\n");
 
+    slotSize = (rows / 2) * cols;
+
     pushTestPattern();
 
     wiringPiSetup() ;
 
-    pinMode(clock, OUTPUT);
+    pinMode(clockPin, OUTPUT);
     pinMode(store, OUTPUT);
     pinMode(output, OUTPUT);
     pinMode(data1R, OUTPUT);
     pinMode(data2R, OUTPUT);
     pinMode(data1G, OUTPUT);
-    pinMode(data1R, OUTPUT);
+    pinMode(data2G, OUTPUT);
     pinMode(addr0, OUTPUT);
     pinMode(addr1, OUTPUT);
     pinMode(addr2, OUTPUT);
     pinMode(addr3, OUTPUT);
 
-    for ( ;; ) {
-        push();
-    }
-
 }
 
 int main (void) {
 
+    frames = calloc(3, (rows / 2) * cols);
+
     init();
 
+    scan(NULL);
+
 }
 
-JNIEXPORT void JNICALL Java_net_amarantha_lightboard_board_impl_CLightBoard_init
-(JNIEnv * env, jobject obj) {
+JNIEXPORT jint JNICALL Java_net_amarantha_lightboard_board_impl_CLightBoard_start
+(JNIEnv * env, jobject obj, jobject buffer, jint r, jint c) {
+    pthread_t thread;
+    rows = r;
+    cols = c;
+    frames = (*env)->GetDirectBufferAddress(env, buffer);
     init();
+    pthread_create(&thread, NULL, scan, NULL);
+    return 0;
 }
 
-JNIEXPORT void JNICALL Java_net_amarantha_lightboard_board_impl_CLightBoard_update
-(JNIEnv * env, jobject obj, jobjectArray arr) {
-    printf("update");
+JNIEXPORT jint JNICALL Java_net_amarantha_lightboard_board_impl_CLightBoard_present
+(JNIEnv * env, jobject obj, jint slot) {
+    unsigned int sequence = (__atomic_load_n(&middle, __ATOMIC_RELAXED) & ~INDEX) + SEQUENCE;
+    return __atomic_exchange_n(&middle, sequence | slot, __ATOMIC_ACQ_REL) & INDEX;
 }
 
+JNIEXPORT void JNICALL Java_net_amarantha_lightboard_board_impl_CLightBoard_sleep
+(JNIEnv * env, jobject obj) {
+    sleeping = 1;
+}
+
+JNIEXPORT void JNICALL Java_net_amarantha_lightboard_board_impl_CLightBoard_wake
+(JNIEnv * env, jobject obj) {
+    sleeping = 0;
+}
@@ -7,21 +7,39 @@
 #ifdef __cplusplus
 extern "C" {
 #endif
+#undef net_amarantha_lightboard_board_impl_CLightBoard_SLOTS
+#define net_amarantha_lightboard_board_impl_CLightBoard_SLOTS 3L
 /*
  * Class:     net_amarantha_lightboard_board_impl_CLightBoard
- * Method:    init
+ * Method:    start
+ * Signature: (Ljava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_net_amarantha_lightboard_board_impl_CLightBoard_start
+  (JNIEnv *, jobject, jobject, jint, jint);
+
+/*
+ * Class:     net_amarantha_lightboard_board_impl_CLightBoard
+ * Method:    present
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_net_amarantha_lightboard_board_impl_CLightBoard_present
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     net_amarantha_lightboard_board_impl_CLightBoard
+ * Method:    sleep
  * Signature: ()V
  */
-JNIEXPORT void JNICALL Java_net_amarantha_lightboard_board_impl_CLightBoard_init
+JNIEXPORT void JNICALL Java_net_amarantha_lightboard_board_impl_CLightBoard_sleep
   (JNIEnv *, jobject);
 
 /*
  * Class:     net_amarantha_lightboard_board_impl_CLightBoard
- * Method:    dump
- * Signature: ([[[D)V
+ * Method:    wake
+ * Signature: ()V
  */
-JNIEXPORT void JNICALL Java_net_amarantha_lightboard_board_impl_CLightBoard_dump
-  (JNIEnv *, jobject, jobjectArray);
+JNIEXPORT void JNICALL Java_net_amarantha_lightboard_board_impl_CLightBoard_wake
+  (JNIEnv *, jobject);
 
 #ifdef __cplusplus
 }
@@ -3,3 +3,5 @@ mvn clean package
 sshpass -p raspberry scp -r target/ pi@192.168.0.75:lightboard
 sshpass -p raspberry scp -r html/ pi@192.168.0.75:lightboard
 
+sshpass -p raspberry scp -r c/ pi@192.168.0.75:lightboard
+sshpass -p raspberry ssh pi@192.168.0.75 lightboard/c/build.sh
@@ -0,0 +1,83 @@
+package net.amarantha.lightboard;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+import net.amarantha.lightboard.board.LightBoard;
+import net.amarantha.lightboard.board.impl.ExportBoard;
+import net.amarantha.lightboard.image.LedRenderer;
+import net.amarantha.lightboard.module.ApplicationModule;
+import net.amarantha.lightboard.scene.SceneManager;
+import net.amarantha.lightboard.utility.Now;
+import net.amarantha.lightboard.utility.Sync;
+import net.amarantha.lightboard.utility.VirtualNow;
+import net.amarantha.lightboard.utility.VirtualSync;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.inject.util.Modules.override;
+
+/**
+ * Runs the application headless on a simulated clock, and exports what the board shows to an
+ * animated GIF (.gif) or PNG (.apng), or a PNG strip (.png). An hour of scenes takes seconds.
+ *
+ * Usage: Exporter file seconds [scene|-] [pitch] [dotSize] [frameMillis]
+ *   scene - show just this scene rather than cycling through them
+ */
+public class Exporter {
+
+    public static void main(String[] args) {
+
+        if ( args.length < 2 ) {
+            System.out.println("Usage: Exporter file seconds [scene|-] [pitch] [dotSize] [frameMillis]");
+            System.exit(1);
+        }
+
+        Path file = Paths.get(args[0]);
+        long seconds = Long.parseLong(args[1]);
+        Integer scene = args.length > 2 && !args[2].equals("-") ? Integer.valueOf(args[2]) : null;
+        int pitch = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        int dotSize = args.length > 4 ? Integer.parseInt(args[4]) : Math.max(1, pitch - 1);
+        long frameMillis = args.length > 5 ? Long.parseLong(args[5]) : 40;
+
+        Injector injector = Guice.createInjector(override(new ApplicationModule()).with(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(Sync.class).to(VirtualSync.class);
+                bind(Now.class).to(VirtualNow.class);
+                bind(ExportBoard.class).in(Singleton.class);
+                bind(LightBoard.class).to(ExportBoard.class);
+            }
+        }));
+
+        VirtualSync sync = injector.getInstance(VirtualSync.class);
+        sync.init();
+        sync.setMinimumStep(frameMillis);
+
+        ExportBoard board = injector.getInstance(ExportBoard.class)
+                .setOutput(file)
+                .setRenderer(new LedRenderer().setPitch(pitch).setDotSize(dotSize))
+                .setUpdateInterval(frameMillis);
+
+        injector.getInstance(LightBoardApplication.class).startApplication(false);
+        if ( scene!=null ) {
+            SceneManager sceneManager = injector.getInstance(SceneManager.class);
+            sceneManager.setCycleMode(false);
+            sceneManager.loadScene(scene);
+        }
+
+        long started = System.nanoTime();
+        sync.advance(seconds, TimeUnit.SECONDS);
+        board.close();
+        long took = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        System.out.println("Exported " + seconds + "s as " + board.getFramesWritten() + " frames to " + file + " in " + took + "ms");
+
+        System.exit(0);
+
+    }
+
+}
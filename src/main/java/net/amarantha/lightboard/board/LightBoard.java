@@ -1,5 +1,8 @@
 package net.amarantha.lightboard.board;
 
+import net.amarantha.lightboard.surface.Damage;
+import net.amarantha.lightboard.surface.FrameBuffer;
+
 /**
  * A LightBoard display
  */
@@ -16,6 +19,25 @@ public interface LightBoard {
      */
     void update(double[][][] data);
 
+    /**
+     * Push the packed surface state to the physical display.
+     * Boards that can read packed pixels should override this, the default unpacks to doubles
+     * @param frame Current LightBoardSurface state - one 0x00RRGGBB int per pixel, row-major
+     */
+    default void update(FrameBuffer frame) {
+        update(frame.toColourValues());
+    }
+
+    /**
+     * Push the packed surface state along with the areas that changed since the previous push.
+     * Boards that keep their own copy of the frame can use the damage to skip unchanged rows
+     * and spans; the default ignores it and pushes the whole frame
+     * @param damage Changed areas - only valid for the duration of the call
+     */
+    default void update(FrameBuffer frame, Damage damage) {
+        update(frame);
+    }
+
     /**
      * Indicates how often the LightBoard should receive data via update(...)
      * Return <code>null</code> to update the board as often as possible
@@ -1,31 +1,107 @@
 package net.amarantha.lightboard.board.impl;
 
 import net.amarantha.lightboard.board.LightBoard;
-import net.amarantha.lightboard.module.Cols;
-import net.amarantha.lightboard.module.Rows;
+import net.amarantha.lightboard.board.impl.ScanPlan.Layout;
+import net.amarantha.lightboard.board.impl.ScanPlan.Mode;
+import net.amarantha.lightboard.surface.Damage;
+import net.amarantha.lightboard.surface.FrameBuffer;
 
-import javax.inject.Inject;
+import java.nio.ByteBuffer;
 
+/**
+ * Glasto board driven by the native scan loop in lightboard.c.
+ *
+ * Frames are shared with the native side through one direct ByteBuffer registered at init, so
+ * nothing is marshalled through JNI per frame. The buffer holds three slots, each a complete
+ * ScanPlan (one nibble per clock per scan line). Java fills its back slot and hands it over with
+ * present(), which swaps it with the slot in the middle and bumps the frame sequence; the scan
+ * loop picks up the middle slot whenever the sequence has moved on.
+ *
+ * The library is built on the Pi by c/build.sh (deploy.sh runs it), so it always matches these
+ * native methods - rebuild it whenever they change.
+ */
 public class CLightBoard implements LightBoard {
 
     static {
         System.loadLibrary("lightboard");
     }
 
-    @Override
-    public native void init(int rows, int cols);
+    private static final int SLOTS = 3;
+
+    // The native loop scans on its own thread; this only paces how often frames are handed over
+    private static final long UPDATE_INTERVAL = 10L;
+
+    private int rows;
+    private int cols;
+
+    private ScanPlan plan;
+    private ByteBuffer frames;
+    private int slotSize;
+    private int back;
+
+    private FrameBuffer incoming;
 
     @Override
-    public native void update(double[][][] data);
+    public void init(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        plan = new ScanPlan(Layout.SPLIT_ROWS, rows, cols, 1);
+        slotSize = plan.getScanLines() * plan.getClocks();
+        frames = ByteBuffer.allocateDirect(slotSize * SLOTS);
+        back = start(frames, rows, cols);
+    }
 
     @Override
-    public native Long getUpdateInterval();
+    public void update(double[][][] data) {
+        if ( incoming==null ) {
+            incoming = new FrameBuffer(rows, cols);
+        }
+        incoming.fromColourValues(data);
+        update(incoming);
+    }
 
     @Override
-    public native int getRows();
+    public void update(FrameBuffer frame) {
+        plan.build(frame, Mode.MULTI);
+        present();
+    }
 
     @Override
-    public native int getCols();
+    public void update(FrameBuffer frame, Damage damage) {
+        // The scan loop keeps showing the last frame, so there is nothing to hand over
+        if ( damage.isEmpty() ) {
+            return;
+        }
+        plan.build(frame, damage, Mode.MULTI);
+        present();
+    }
+
+    private void present() {
+        int position = back * slotSize;
+        for ( int line=0; line<plan.getScanLines(); line++ ) {
+            frames.position(position);
+            frames.put(plan.getLine(0, line));
+            position += plan.getClocks();
+        }
+        back = present(back);
+    }
+
+
+    ////////////
+    // Native //
+    ////////////
+
+    /**
+     * Register the shared frame buffer and start the scan thread
+     * @return Index of the first slot Java may write to
+     */
+    private native int start(ByteBuffer frames, int rows, int cols);
+
+    /**
+     * Hand the given slot to the scan loop
+     * @return Index of the slot Java may write to next
+     */
+    private native int present(int slot);
 
     @Override
     public native void sleep();
@@ -33,4 +109,24 @@ public class CLightBoard implements LightBoard {
     @Override
     public native void wake();
 
+
+    /////////////
+    // Getters //
+    /////////////
+
+    @Override
+    public Long getUpdateInterval() {
+        return UPDATE_INTERVAL;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
 }
@@ -0,0 +1,238 @@
+package net.amarantha.lightboard.board.impl;
+
+import com.google.inject.Inject;
+import net.amarantha.lightboard.board.LightBoard;
+import net.amarantha.lightboard.image.FrameEncoder;
+import net.amarantha.lightboard.image.LedRenderer;
+import net.amarantha.lightboard.surface.Damage;
+import net.amarantha.lightboard.surface.FrameBuffer;
+import net.amarantha.lightboard.utility.Sync;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless LightBoard that draws what it is sent as LEDs and encodes it to an animated GIF or
+ * APNG, or a PNG strip - see FrameEncoder.
+ *
+ * Frames are timed by the Sync clock, so under VirtualSync a long playlist exports as fast as it
+ * renders. Each frame goes to the encoder as soon as the next one arrives to say how long it was
+ * shown; updates that change no pixels, however much they report as damaged, just make the
+ * current frame last longer.
+ */
+public class ExportBoard implements LightBoard, Closeable {
+
+    private static final long DEFAULT_UPDATE_INTERVAL = 40L;
+
+    private final Sync sync;
+
+    private Path output;
+    private LedRenderer renderer = new LedRenderer();
+    private Long updateInterval = DEFAULT_UPDATE_INTERVAL;
+
+    private int rows;
+    private int cols;
+    private Damage everything;
+    private FrameBuffer unpacked;
+
+    // What the image shows, to find which damaged pixels really changed
+    private int[] last;
+    private Damage changes;
+
+    private BufferedImage image;
+    private FrameEncoder encoder;
+    private Rectangle changed;
+    private long shownSince;
+    private boolean pending;
+    private int frames;
+
+    @Inject
+    public ExportBoard(Sync sync) {
+        this.sync = sync;
+    }
+
+    /**
+     * File to export to - the extension picks the format. Takes effect from the next init()
+     */
+    public ExportBoard setOutput(Path output) {
+        this.output = output;
+        return this;
+    }
+
+    /**
+     * How the LEDs are drawn. Takes effect from the next init()
+     */
+    public ExportBoard setRenderer(LedRenderer renderer) {
+        this.renderer = renderer;
+        return this;
+    }
+
+    /**
+     * How often the surface sends frames, and so the finest timing the export can have
+     */
+    public ExportBoard setUpdateInterval(Long millis) {
+        updateInterval = millis;
+        return this;
+    }
+
+    @Override
+    public void init(int rows, int cols) {
+        System.out.println("Starting ExportBoard to " + output.toAbsolutePath() + "...");
+        close();
+        this.rows = rows;
+        this.cols = cols;
+        everything = new Damage(rows, cols);
+        everything.addAll();
+        unpacked = new FrameBuffer(rows, cols);
+        last = new int[rows * cols];
+        changes = new Damage(rows, cols);
+
+        // Every LED starts unlit, so later frames only need to draw what they change
+        image = renderer.createImage(rows, cols);
+        renderer.render(unpacked, everything, image);
+        frames = 0;
+        pending = false;
+        try {
+            encoder = FrameEncoder.open(output, image.getWidth(), image.getHeight());
+        } catch ( IOException e ) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void update(double[][][] data) {
+        for ( int r=0; r<rows; r++ ) {
+            for ( int c=0; c<cols; c++ ) {
+                unpacked.setPixel(c, r, data[0][r][c], data[1][r][c], data[2][r][c]);
+            }
+        }
+        update(unpacked, everything);
+    }
+
+    @Override
+    public void update(FrameBuffer frame) {
+        update(frame, everything);
+    }
+
+    @Override
+    public synchronized void update(FrameBuffer frame, Damage damage) {
+        if ( encoder==null || damage.isEmpty() ) {
+            return;
+        }
+        findChanges(frame.getPixels(), damage);
+        boolean first = !pending && frames==0;
+        if ( changes.isEmpty() && !first ) {
+            return;
+        }
+        long now = sync.now();
+        flush(now);
+        Rectangle drawn = renderer.render(frame, changes, image);
+        changed = first ? new Rectangle(0, 0, image.getWidth(), image.getHeight()) : drawn;
+        shownSince = now;
+        pending = true;
+    }
+
+    /**
+     * The damaged pixels that differ from what the image shows
+     */
+    private void findChanges(int[] pixels, Damage damage) {
+        changes.clear();
+        for ( int r=damage.getTop(); r>=0 && r<=damage.getBottom(); r++ ) {
+            if ( damage.isRowDamaged(r) ) {
+                int first = -1;
+                int end = -1;
+                for ( int i=r*cols+damage.getLeft(r); i<=r*cols+damage.getRight(r); i++ ) {
+                    if ( pixels[i]!=last[i] ) {
+                        if ( first < 0 ) {
+                            first = i;
+                        }
+                        end = i;
+                        last[i] = pixels[i];
+                    }
+                }
+                if ( first >= 0 ) {
+                    changes.add(first - r * cols, r, end - first + 1, 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Encode the frame being shown, now that it's known how long it lasted
+     */
+    private void flush(long now) {
+        if ( !pending ) {
+            return;
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(now - shownSince);
+        if ( millis <= 0 ) {
+            millis = updateInterval==null ? 1 : updateInterval;
+        }
+        try {
+            encoder.writeFrame(image, changed, (int) Math.min(millis, Integer.MAX_VALUE));
+            frames++;
+        } catch ( IOException e ) {
+            e.printStackTrace();
+        }
+        pending = false;
+    }
+
+    /**
+     * Encode the last frame, shown until now, and finish the file
+     */
+    @Override
+    public synchronized void close() {
+        if ( encoder==null ) {
+            return;
+        }
+        flush(sync.now());
+        try {
+            encoder.close();
+        } catch ( IOException e ) {
+            e.printStackTrace();
+        }
+        encoder = null;
+    }
+
+    /**
+     * @return How many frames have gone to the encoder since init()
+     */
+    public synchronized int getFramesWritten() {
+        return frames;
+    }
+
+
+    /////////////////////////
+    // Board Specification //
+    /////////////////////////
+
+    @Override
+    public Long getUpdateInterval() {
+        return updateInterval;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public void sleep() {
+
+    }
+
+    @Override
+    public void wake() {
+
+    }
+
+}
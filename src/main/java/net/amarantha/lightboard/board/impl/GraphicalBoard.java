@@ -1,12 +1,15 @@
 package net.amarantha.lightboard.board.impl;
 
 import com.google.inject.Inject;
-import javafx.scene.Group;
+import javafx.application.Platform;
 import javafx.scene.Scene;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.image.WritablePixelFormat;
 import javafx.scene.input.MouseButton;
 import javafx.scene.layout.Pane;
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Circle;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import net.amarantha.lightboard.board.ColourSwitcher;
@@ -14,15 +17,24 @@ import net.amarantha.lightboard.board.LightBoard;
 import net.amarantha.lightboard.module.Cols;
 import net.amarantha.lightboard.module.Debug;
 import net.amarantha.lightboard.module.Rows;
+import net.amarantha.lightboard.surface.Damage;
+import net.amarantha.lightboard.surface.FrameBuffer;
 import net.amarantha.lightboard.utility.Sync;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static net.amarantha.lightboard.entity.Colour.*;
 
 /**
  * UI Simulation of a colour LightBoard
+ *
+ * The LEDs are painted into a single image from a pre-rendered sprite per colour. Updates from the
+ * Sync thread only record which LEDs changed colour; the changes are painted on the FX thread in
+ * one batch, however many updates arrive before it gets round to them.
  */
 public class GraphicalBoard implements LightBoard, ColourSwitcher {
 
@@ -33,7 +45,23 @@ public class GraphicalBoard implements LightBoard, ColourSwitcher {
     private int rows;
     private int cols;
 
-    private Circle[][] leds;
+    // Colour each LED should be showing, and the LEDs changed since the last paint - guarded by lock
+    private final Object lock = new Object();
+    private int[] leds;
+    private int[] changed;
+    private boolean[] queued;
+    private int changedCount;
+    private boolean paintPending;
+
+    // Used only on the FX thread
+    private PixelWriter writer;
+    private int[] painting;
+    private int[] paintingColours;
+    private int[] ledMask;
+    private final Map<Integer, int[]> sprites = new HashMap<>();
+
+    private final static int MAX_SPRITES = 1024;
+    private final static WritablePixelFormat<IntBuffer> SPRITE_FORMAT = PixelFormat.getIntArgbInstance();
 
     private final Sync sync;
 
@@ -67,6 +95,7 @@ public class GraphicalBoard implements LightBoard, ColourSwitcher {
         this.title = title;
         this.ledRadius = ledRadius;
         this.spacer = spacer;
+        mixColours();
     }
 
     @Override
@@ -77,24 +106,30 @@ public class GraphicalBoard implements LightBoard, ColourSwitcher {
         this.rows = rows;
         this.cols = cols;
 
-        leds = new Circle[rows][cols];
         d = ledRadius * 2;
+        ledMask = ledMask(d, ledRadius - spacer);
+        sprites.clear();
 
         // Build UI components
         final Pane pane = new Pane();
         pane.setStyle(BLACK_BACKGROUND);
         addMouseHandlers(pane);
-        Group board = new Group();
-        pane.getChildren().add(board);
-
-        // Create LED Board
-        for (int row = 0; row < rows; row++) {
-            for (int col = 0; col < cols; col++) {
-                Circle led = new Circle(ledRadius - spacer, Color.color(redMin, greenMin, blueMin));
-                led.setCenterX(d + col * d);
-                led.setCenterY(d + row * d);
-                board.getChildren().add(led);
-                leds[row][col] = led;
+        WritableImage image = new WritableImage(getWidthPixels(), getHeightPixels());
+        writer = image.getPixelWriter();
+        pane.getChildren().add(new ImageView(image));
+
+        // Create LED Board, all off
+        int count = rows * cols;
+        painting = new int[count];
+        paintingColours = new int[count];
+        synchronized (lock) {
+            leds = new int[count];
+            changed = new int[count];
+            queued = new boolean[count];
+            changedCount = 0;
+            for ( int i=0; i<count; i++ ) {
+                leds[i] = offColour;
+                paintLed(i, offColour);
             }
         }
 
@@ -113,6 +148,8 @@ public class GraphicalBoard implements LightBoard, ColourSwitcher {
             System.exit(0);
         });
 
+        fullRepaint = true;
+
         System.out.println("Board Ready");
 
     }
@@ -180,34 +217,190 @@ public class GraphicalBoard implements LightBoard, ColourSwitcher {
             debugBoard.update(data);
             dumpToDebug = false;
         }
-        for (int r = 0; r < data[0].length; r++) {
-            for (int c = 0; c < data[0][0].length; c++) {
-                double red = data[0][r][c];
-                double green = data[1][r][c];
-                double blue = data[2][r][c];
-                if (colourOverride) {
-                    if (red >= 0.5 || green >= 0.5 || blue >= 0.5) {
-                        red = redMax;
-                        green = greenMax;
-                        blue = blueMax;
-                    } else {
-                        red = redMin;
-                        green = greenMin;
-                        blue = blueMin;
-                    }
-                } else if (RG_ONLY) {
-                    red = red >= 0.5 ? redMax : redMin;
-                    green = green >= 0.5 ? greenMax : greenMin;
-                    blue = blueMin;
+        synchronized (lock) {
+            int i = 0;
+            for (int r = 0; r < data[0].length; r++) {
+                for (int c = 0; c < data[0][0].length; c++) {
+                    setLed(i++, ledColour(FrameBuffer.pack(data[0][r][c], data[1][r][c], data[2][r][c])));
                 }
-                if (leds[r][c] != null) {
-                    leds[r][c].setFill(Color.color(red, green, blue));
+            }
+            requestPaint();
+        }
+    }
+
+    @Override
+    public void update(FrameBuffer frame) {
+        if ( dumpToDebug ) {
+            debugBoard.update(frame);
+            dumpToDebug = false;
+        }
+        int[] pixels = frame.getPixels();
+        synchronized (lock) {
+            for ( int i=0; i<pixels.length; i++ ) {
+                setLed(i, ledColour(pixels[i]));
+            }
+            requestPaint();
+        }
+    }
+
+    @Override
+    public void update(FrameBuffer frame, Damage damage) {
+        if ( fullRepaint || dumpToDebug ) {
+            fullRepaint = false;
+            update(frame);
+            return;
+        }
+        int[] pixels = frame.getPixels();
+        synchronized (lock) {
+            for ( int r=damage.getTop(); r>=0 && r<=damage.getBottom(); r++ ) {
+                if ( damage.isRowDamaged(r) ) {
+                    for ( int c=damage.getLeft(r); c<=damage.getRight(r); c++ ) {
+                        int i = r * cols + c;
+                        setLed(i, ledColour(pixels[i]));
+                    }
                 }
             }
+            requestPaint();
         }
     }
 
-    private boolean colourOverride = false;
+    // Set when the LEDs have been recoloured and every pixel needs checking again
+    private volatile boolean fullRepaint = true;
+
+    /**
+     * The colour an LED shows for a surface pixel, after the colour override and RG limits
+     */
+    private int ledColour(int pixel) {
+        if ( colourOverride ) {
+            return FrameBuffer.isOn(pixel) ? onColour : offColour;
+        } else if ( RG_ONLY ) {
+            int red = FrameBuffer.redByte(pixel) >= FrameBuffer.ON_THRESHOLD ? 1 : 0;
+            int green = FrameBuffer.greenByte(pixel) >= FrameBuffer.ON_THRESHOLD ? 2 : 0;
+            return rgColours[red | green];
+        }
+        return pixel;
+    }
+
+    private volatile boolean colourOverride = false;
+
+    // LED colours for the current bounds - see mixColours()
+    private volatile int onColour;
+    private volatile int offColour;
+    private volatile int[] rgColours;
+
+    private void mixColours() {
+        onColour = FrameBuffer.pack(redMax, greenMax, blueMax);
+        offColour = FrameBuffer.pack(redMin, greenMin, blueMin);
+        rgColours = new int[] {
+                FrameBuffer.pack(redMin, greenMin, blueMin),
+                FrameBuffer.pack(redMax, greenMin, blueMin),
+                FrameBuffer.pack(redMin, greenMax, blueMin),
+                FrameBuffer.pack(redMax, greenMax, blueMin)
+        };
+    }
+
+
+    //////////////
+    // Painting //
+    //////////////
+
+    /**
+     * Record an LED's new colour, queueing it for the next paint if it changed. Call holding lock
+     */
+    private void setLed(int led, int colour) {
+        if ( leds[led]!=colour ) {
+            leds[led] = colour;
+            if ( !queued[led] ) {
+                queued[led] = true;
+                changed[changedCount++] = led;
+            }
+        }
+    }
+
+    /**
+     * Ask the FX thread to paint the queued LEDs, unless it has already been asked. Call holding lock
+     */
+    private void requestPaint() {
+        if ( changedCount > 0 && !paintPending ) {
+            paintPending = true;
+            Platform.runLater(this::paint);
+        }
+    }
+
+    /**
+     * Paint every LED changed since the last paint - runs on the FX thread
+     */
+    private void paint() {
+        int count;
+        synchronized (lock) {
+            count = changedCount;
+            for ( int i=0; i<count; i++ ) {
+                int led = changed[i];
+                painting[i] = led;
+                paintingColours[i] = leds[led];
+                queued[led] = false;
+            }
+            changedCount = 0;
+            paintPending = false;
+        }
+        for ( int i=0; i<count; i++ ) {
+            paintLed(painting[i], paintingColours[i]);
+        }
+    }
+
+    private void paintLed(int led, int colour) {
+        int x = ledRadius + (led % cols) * d;
+        int y = ledRadius + (led / cols) * d;
+        writer.setPixels(x, y, d, d, SPRITE_FORMAT, sprite(colour), 0, d);
+    }
+
+    /**
+     * An LED of the given colour on the black background, one cell square
+     */
+    private int[] sprite(int colour) {
+        int[] sprite = sprites.get(colour);
+        if ( sprite==null ) {
+            if ( sprites.size() >= MAX_SPRITES ) {
+                sprites.clear();
+            }
+            sprite = new int[ledMask.length];
+            for ( int i=0; i<sprite.length; i++ ) {
+                int coverage = ledMask[i];
+                int red = FrameBuffer.redByte(colour) * coverage / 0xFF;
+                int green = FrameBuffer.greenByte(colour) * coverage / 0xFF;
+                int blue = FrameBuffer.blueByte(colour) * coverage / 0xFF;
+                sprite[i] = 0xFF000000 | (red << 16) | (green << 8) | blue;
+            }
+            sprites.put(colour, sprite);
+        }
+        return sprite;
+    }
+
+    private final static int SAMPLES = 4;
+
+    /**
+     * How much of each pixel in a cell the round LED covers, 0-255, sampled on a grid for smooth edges
+     */
+    private static int[] ledMask(int size, double radius) {
+        int[] mask = new int[size * size];
+        double centre = size / 2.0;
+        for ( int y=0; y<size; y++ ) {
+            for ( int x=0; x<size; x++ ) {
+                int inside = 0;
+                for ( int sy=0; sy<SAMPLES; sy++ ) {
+                    for ( int sx=0; sx<SAMPLES; sx++ ) {
+                        double dx = x + (sx + 0.5) / SAMPLES - centre;
+                        double dy = y + (sy + 0.5) / SAMPLES - centre;
+                        if ( dx * dx + dy * dy <= radius * radius ) {
+                            inside++;
+                        }
+                    }
+                }
+                mask[y * size + x] = inside * 0xFF / (SAMPLES * SAMPLES);
+            }
+        }
+        return mask;
+    }
 
 
     /////////////////////////
@@ -309,6 +502,8 @@ public class GraphicalBoard implements LightBoard, ColourSwitcher {
             blueMin = 0.05;
             blueMax = 1.0;
         }
+        mixColours();
+        fullRepaint = true;
     }
 
     @Override
@@ -0,0 +1,349 @@
+package net.amarantha.lightboard.board.impl;
+
+import com.google.inject.Inject;
+import net.amarantha.lightboard.board.LightBoard;
+import net.amarantha.lightboard.surface.Damage;
+import net.amarantha.lightboard.surface.FrameBuffer;
+import net.amarantha.lightboard.utility.LightBoardProperties;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LightBoard that sends its frames over UDP to a NetworkReceiver, which drives the real board -
+ * so rendering can run on a bigger machine and leave the board's Pi to do nothing but scan.
+ *
+ * Each frame is sent as the runs of pixels that changed since the frame before, split into
+ * datagrams that fit in an ethernet MTU. Every so often a key frame carries the whole frame, so
+ * a receiver that starts late or loses a packet picks up again at the next one.
+ *
+ * Datagram format, big-endian: magic (short), version (byte), flags (byte, KEY), session (int),
+ * frame sequence number (int), packet index and packet count (unsigned shorts), rows and cols
+ * (shorts), then runs of (varint pixels skipped since the last run in the packet, varint length,
+ * length x 3 bytes RGB) to the end of the datagram. Delta frames apply to frame sequence-1; key
+ * frames to a blank board. The session is picked at random by init(), so a receiver can tell a
+ * restarted sender counting from 1 again from late packets.
+ */
+public class NetworkBoard implements LightBoard, Closeable {
+
+    static final short MAGIC = 0x4C42;
+    static final byte VERSION = 2;
+    static final byte KEY = 1;
+    static final int HEADER_SIZE = 20;
+
+    // Ethernet MTU less IP and UDP headers
+    static final int DEFAULT_PACKET_SIZE = 1472;
+
+    // Largest UDP payload over IPv4
+    static final int MAX_PACKET_SIZE = 65507;
+
+    private static final long DEFAULT_UPDATE_INTERVAL = 20L;
+    private static final long DEFAULT_KEY_INTERVAL = 1000L;
+
+    // Room for a run header as well as a pixel
+    private static final int MIN_RUN_SPACE = 10 + 3;
+
+    static final int MIN_PACKET_SIZE = HEADER_SIZE + MIN_RUN_SPACE;
+
+    private final InetSocketAddress address;
+    private final Long updateInterval;
+    private int packetSize = DEFAULT_PACKET_SIZE;
+    private long keyIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_KEY_INTERVAL);
+
+    private int rows;
+    private int cols;
+    private int[] last;
+    private Damage everything;
+    private FrameBuffer unpacked;
+
+    private DatagramSocket socket;
+    private final List<DatagramPacket> packets = new ArrayList<>();
+    private int packetCount;
+    private ByteBuffer out;
+    private int cursor;
+
+    private int session;
+    private int sequence;
+    private long lastKey;
+    private boolean keyDue;
+    private long framesSent;
+    private long packetsSent;
+
+    @Inject
+    public NetworkBoard(LightBoardProperties props) {
+        this(props.getNetworkBoardHost(), props.getNetworkBoardPort(), DEFAULT_UPDATE_INTERVAL);
+    }
+
+    public NetworkBoard(String host, int port, Long updateInterval) {
+        address = new InetSocketAddress(host, port);
+        this.updateInterval = updateInterval;
+    }
+
+    /**
+     * Largest datagram to send. Takes effect from the next init()
+     */
+    public NetworkBoard setPacketSize(int bytes) {
+        if ( bytes < MIN_PACKET_SIZE || bytes > MAX_PACKET_SIZE ) {
+            throw new IllegalArgumentException("Packet size must be " + MIN_PACKET_SIZE + "-" + MAX_PACKET_SIZE + ": " + bytes);
+        }
+        packetSize = bytes;
+        return this;
+    }
+
+    /**
+     * How often to send the whole frame, however little has changed
+     */
+    public NetworkBoard setKeyFrameInterval(long millis) {
+        keyIntervalNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        return this;
+    }
+
+    @Override
+    public void init(int rows, int cols) {
+        System.out.println("Starting NetworkBoard to " + address + "...");
+        close();
+        this.rows = rows;
+        this.cols = cols;
+        last = new int[rows * cols];
+        everything = new Damage(rows, cols);
+        everything.addAll();
+        unpacked = new FrameBuffer(rows, cols);
+        packets.clear();
+        keyDue = true;
+        session = new Random().nextInt();
+        sequence = 0;
+        try {
+            socket = new DatagramSocket();
+        } catch ( IOException e ) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void update(double[][][] data) {
+        for ( int r=0; r<rows; r++ ) {
+            for ( int c=0; c<cols; c++ ) {
+                unpacked.setPixel(c, r, data[0][r][c], data[1][r][c], data[2][r][c]);
+            }
+        }
+        update(unpacked, everything);
+    }
+
+    @Override
+    public void update(FrameBuffer frame) {
+        update(frame, everything);
+    }
+
+    @Override
+    public synchronized void update(FrameBuffer frame, Damage damage) {
+        if ( socket==null ) {
+            return;
+        }
+        long now = System.nanoTime();
+        boolean key = keyDue || now - lastKey >= keyIntervalNanos;
+        if ( !key && damage.isEmpty() ) {
+            return;
+        }
+
+        packetCount = 0;
+        out = null;
+        int[] pixels = frame.getPixels();
+        if ( key ) {
+            encodeKey(pixels);
+        } else {
+            encodeDelta(pixels, damage);
+            if ( packetCount==0 ) {
+                // Damaged, but redrawn the same
+                return;
+            }
+        }
+
+        sequence++;
+        try {
+            send(key);
+        } catch ( IOException e ) {
+            e.printStackTrace();
+        }
+        if ( key ) {
+            lastKey = now;
+            keyDue = false;
+        }
+        framesSent++;
+    }
+
+
+    //////////////
+    // Encoding //
+    //////////////
+
+    /**
+     * Every lit pixel - the receiver starts a key frame from blank
+     */
+    private void encodeKey(int[] pixels) {
+        int runStart = -1;
+        for ( int i=0; i<pixels.length; i++ ) {
+            if ( pixels[i]!=FrameBuffer.OFF ) {
+                if ( runStart < 0 ) {
+                    runStart = i;
+                }
+            } else if ( runStart >= 0 ) {
+                putRun(pixels, runStart, i);
+                runStart = -1;
+            }
+            last[i] = pixels[i];
+        }
+        if ( runStart >= 0 ) {
+            putRun(pixels, runStart, pixels.length);
+        }
+        if ( packetCount==0 ) {
+            // A blank board still needs a packet to say so
+            startPacket();
+        }
+    }
+
+    /**
+     * The pixels in the damaged spans that differ from the last frame sent
+     */
+    private void encodeDelta(int[] pixels, Damage damage) {
+        int runStart = -1;
+        int runEnd = -1;
+        for ( int r=damage.getTop(); r>=0 && r<=damage.getBottom(); r++ ) {
+            if ( damage.isRowDamaged(r) ) {
+                for ( int i=r*cols+damage.getLeft(r); i<=r*cols+damage.getRight(r); i++ ) {
+                    if ( pixels[i]!=last[i] ) {
+                        if ( i!=runEnd ) {
+                            if ( runStart >= 0 ) {
+                                putRun(pixels, runStart, runEnd);
+                            }
+                            runStart = i;
+                        }
+                        runEnd = i + 1;
+                    }
+                }
+            }
+        }
+        if ( runStart >= 0 ) {
+            putRun(pixels, runStart, runEnd);
+        }
+    }
+
+    /**
+     * Add a run of pixels, splitting it across packets as they fill
+     */
+    private void putRun(int[] pixels, int from, int to) {
+        while ( from < to ) {
+            if ( out==null || out.remaining() < MIN_RUN_SPACE ) {
+                startPacket();
+            }
+            int length = Math.min(to - from, (out.remaining() - 10) / 3);
+            putVarint(from - cursor);
+            putVarint(length);
+            for ( int i=from; i<from+length; i++ ) {
+                int pixel = pixels[i];
+                out.put((byte) (pixel >> 16));
+                out.put((byte) (pixel >> 8));
+                out.put((byte) pixel);
+                last[i] = pixel;
+            }
+            from += length;
+            cursor = from;
+        }
+    }
+
+    private void startPacket() {
+        finishPacket();
+        if ( packets.size()==packetCount ) {
+            packets.add(new DatagramPacket(new byte[packetSize], packetSize, address));
+        }
+        out = ByteBuffer.wrap(packets.get(packetCount++).getData());
+        out.position(HEADER_SIZE);
+        cursor = 0;
+    }
+
+    private void finishPacket() {
+        if ( out!=null ) {
+            packets.get(packetCount - 1).setLength(out.position());
+        }
+    }
+
+    private void putVarint(int value) {
+        while ( (value & ~0x7F)!=0 ) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private void send(boolean key) throws IOException {
+        finishPacket();
+        for ( int i=0; i<packetCount; i++ ) {
+            DatagramPacket packet = packets.get(i);
+            ByteBuffer header = ByteBuffer.wrap(packet.getData());
+            header.putShort(MAGIC).put(VERSION).put(key ? KEY : 0)
+                    .putInt(session).putInt(sequence)
+                    .putShort((short) i).putShort((short) packetCount)
+                    .putShort((short) rows).putShort((short) cols);
+            sendPacket(packet);
+            packetsSent++;
+        }
+    }
+
+    protected void sendPacket(DatagramPacket packet) throws IOException {
+        socket.send(packet);
+    }
+
+    @Override
+    public synchronized void close() {
+        if ( socket!=null ) {
+            socket.close();
+            socket = null;
+        }
+    }
+
+    public synchronized long getFramesSent() {
+        return framesSent;
+    }
+
+    public synchronized long getPacketsSent() {
+        return packetsSent;
+    }
+
+
+    /////////////////////////
+    // Board Specification //
+    /////////////////////////
+
+    @Override
+    public Long getUpdateInterval() {
+        return updateInterval;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public void sleep() {
+
+    }
+
+    @Override
+    public void wake() {
+
+    }
+
+}
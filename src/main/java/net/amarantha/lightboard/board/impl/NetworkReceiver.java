@@ -0,0 +1,296 @@
+package net.amarantha.lightboard.board.impl;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import net.amarantha.lightboard.board.LightBoard;
+import net.amarantha.lightboard.module.ApplicationModule;
+import net.amarantha.lightboard.surface.Damage;
+import net.amarantha.lightboard.surface.FrameBuffer;
+import net.amarantha.lightboard.utility.LightBoardProperties;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Receives frames sent by a NetworkBoard and passes them to a local board.
+ *
+ * A frame is shown once all of its packets have arrived. A delta frame whose previous frame was
+ * lost can't be shown, so nothing more is shown until the next key frame. When the sender
+ * restarts, its frames carry a new session and the receiver starts again from its first key frame.
+ *
+ * Usage: NetworkReceiver [port] - drives the boardClass from application.properties
+ */
+public class NetworkReceiver implements Closeable {
+
+    private final LightBoard board;
+    private final DatagramSocket socket;
+
+    private int rows;
+    private int cols;
+
+    // The last frame passed to the board, and the one being put together from packets
+    private FrameBuffer shown;
+    private FrameBuffer building;
+    private Damage damage;
+    private boolean hasSession;
+    private int session;
+    private boolean hasShown;
+    private int shownSequence;
+
+    private boolean isBuilding;
+    private int buildingSequence;
+    private boolean[] received;
+    private int receivedCount;
+
+    // A frame that can't be shown, so its other packets are ignored
+    private boolean isSkipping;
+    private int skippedSequence;
+
+    private volatile boolean running;
+    private long framesShown;
+    private long framesDropped;
+
+    public NetworkReceiver(LightBoard board, int port) throws SocketException {
+        this.board = board;
+        socket = new DatagramSocket(port);
+    }
+
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Receive and show frames until close()
+     */
+    public void run() {
+        running = true;
+        byte[] buffer = new byte[64 * 1024];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        while ( running ) {
+            try {
+                packet.setLength(buffer.length);
+                socket.receive(packet);
+                receive(ByteBuffer.wrap(buffer, 0, packet.getLength()));
+            } catch ( IOException e ) {
+                if ( running ) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        socket.close();
+    }
+
+
+    /////////////
+    // Packets //
+    /////////////
+
+    private synchronized void receive(ByteBuffer in) {
+        int sequence;
+        int index;
+        int count;
+        int packetSession;
+        boolean key;
+        try {
+            if ( in.getShort()!=NetworkBoard.MAGIC || in.get()!=NetworkBoard.VERSION ) {
+                return;
+            }
+            key = (in.get() & NetworkBoard.KEY)!=0;
+            packetSession = in.getInt();
+            sequence = in.getInt();
+            index = in.getShort() & 0xFFFF;
+            count = in.getShort() & 0xFFFF;
+            int packetRows = in.getShort();
+            int packetCols = in.getShort();
+            if ( shown==null || packetRows!=rows || packetCols!=cols ) {
+                start(packetRows, packetCols);
+            }
+        } catch ( BufferUnderflowException e ) {
+            return;
+        }
+        if ( index >= count ) {
+            return;
+        }
+        if ( !hasSession || packetSession!=session ) {
+            // A new sender, or one restarted - its sequence numbers mean nothing against the old
+            hasSession = true;
+            session = packetSession;
+            hasShown = false;
+            isBuilding = false;
+            isSkipping = false;
+        }
+
+        if ( isBuilding && sequence!=buildingSequence ) {
+            if ( sequence - buildingSequence < 0 ) {
+                // Late packet from a frame already given up on
+                return;
+            }
+            // A newer frame has started, so this one has lost a packet
+            isBuilding = false;
+        }
+        if ( !isBuilding ) {
+            if ( isSkipping && sequence==skippedSequence ) {
+                return;
+            }
+            if ( hasShown && sequence - shownSequence <= 0 ) {
+                return;
+            }
+            if ( !key && !(hasShown && sequence - shownSequence==1) ) {
+                isSkipping = true;
+                skippedSequence = sequence;
+                return;
+            }
+            startFrame(sequence, count, key);
+        }
+
+        if ( count!=received.length ) {
+            // Not the packet count the frame started with, so not to be trusted
+            return;
+        }
+        if ( received[index] ) {
+            return;
+        }
+        received[index] = true;
+        receivedCount++;
+        if ( !applyRuns(in) ) {
+            isBuilding = false;
+            isSkipping = true;
+            skippedSequence = sequence;
+            return;
+        }
+        if ( receivedCount==received.length ) {
+            showFrame();
+        }
+    }
+
+    private void start(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        board.init(rows, cols);
+        shown = new FrameBuffer(rows, cols);
+        building = new FrameBuffer(rows, cols);
+        damage = new Damage(rows, cols);
+        hasShown = false;
+        isBuilding = false;
+        isSkipping = false;
+    }
+
+    private void startFrame(int sequence, int count, boolean key) {
+        isBuilding = true;
+        isSkipping = false;
+        buildingSequence = sequence;
+        received = new boolean[count];
+        receivedCount = 0;
+        damage.clear();
+        if ( key ) {
+            building.clear();
+            damage.addAll();
+        } else {
+            building.copyFrom(shown);
+        }
+    }
+
+    /**
+     * @return false if the packet doesn't fit the board
+     */
+    private boolean applyRuns(ByteBuffer in) {
+        int[] pixels = building.getPixels();
+        int cursor = 0;
+        try {
+            while ( in.hasRemaining() ) {
+                cursor += getVarint(in);
+                int length = getVarint(in);
+                if ( cursor < 0 || length < 0 || cursor + length > pixels.length ) {
+                    return false;
+                }
+                for ( int i=cursor; i<cursor+length; i++ ) {
+                    pixels[i] = ((in.get() & 0xFF) << 16) | ((in.get() & 0xFF) << 8) | (in.get() & 0xFF);
+                }
+                addDamage(cursor, length);
+                cursor += length;
+            }
+        } catch ( BufferUnderflowException e ) {
+            return false;
+        }
+        return true;
+    }
+
+    private void addDamage(int from, int length) {
+        while ( length > 0 ) {
+            int c = from % cols;
+            int width = Math.min(length, cols - c);
+            damage.add(c, from / cols, width, 1);
+            from += width;
+            length -= width;
+        }
+    }
+
+    private static int getVarint(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ( (b & 0x80)!=0 && shift < 32 );
+        return value;
+    }
+
+    /**
+     * Pass the finished frame to the board, which may keep reading it until the next one
+     */
+    private void showFrame() {
+        board.update(building, damage);
+        if ( hasShown ) {
+            framesDropped += buildingSequence - shownSequence - 1;
+        }
+        FrameBuffer previous = shown;
+        shown = building;
+        building = previous;
+        hasShown = true;
+        shownSequence = buildingSequence;
+        isBuilding = false;
+        framesShown++;
+    }
+
+    public synchronized long getFramesShown() {
+        return framesShown;
+    }
+
+    /**
+     * @return Frames sent but never shown, counted when a later one is
+     */
+    public synchronized long getFramesDropped() {
+        return framesDropped;
+    }
+
+
+    //////////
+    // Main //
+    //////////
+
+    public static void main(String[] args) throws SocketException {
+
+        Injector injector = Guice.createInjector(new ApplicationModule());
+        LightBoardProperties props = injector.getInstance(LightBoardProperties.class);
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : props.getNetworkBoardPort();
+
+        LightBoard board = injector.getInstance(LightBoard.class);
+        NetworkReceiver receiver = new NetworkReceiver(board, port);
+        System.out.println("Receiving frames on port " + receiver.getPort() + " for " + board.getClass().getSimpleName());
+        receiver.run();
+
+    }
+
+}
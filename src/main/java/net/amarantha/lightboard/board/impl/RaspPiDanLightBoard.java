@@ -6,12 +6,15 @@ import com.pi4j.io.gpio.*;
 import com.pi4j.io.i2c.I2CBus;
 import net.amarantha.lightboard.board.ColourSwitcher;
 import net.amarantha.lightboard.board.LightBoard;
+import net.amarantha.lightboard.board.impl.ScanPlan.Layout;
+import net.amarantha.lightboard.board.impl.ScanPlan.Mode;
 import net.amarantha.lightboard.module.Cols;
 import net.amarantha.lightboard.module.Rows;
+import net.amarantha.lightboard.surface.Damage;
+import net.amarantha.lightboard.surface.FrameBuffer;
 
 import javax.inject.Inject;
 import java.io.IOException;
-import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -69,36 +72,60 @@ public class RaspPiDanLightBoard implements LightBoard, ColourSwitcher {
         System.out.println("Board Ready");
     }
 
-    private static final int RED_MODE = 1;
-    private static final int GREEN_MODE = 2;
-    private static final int YELLOW_MODE = 3;
-
     private boolean cycleColours = false;
-    private int colour = RED_MODE;
+    private Mode colour = Mode.RED;
 
     private long t = 0;
     private long colourChangePeriod = 30000;
 
+    private ScanPlan plan;
+    private Mode plannedMode;
+    private FrameBuffer incoming;
+
     @Override
     public void update(double[][][] data) {
-        boolean[][] boolData = new boolean[rows][cols];
-        for ( int r=0; r<rows; r++ ) {
-            for ( int c=0; c<cols; c++ ) {
-                boolData[r][c] = data[0][r][c] >= 0.5 || data[1][r][c] >= 0.5 || data[2][r][c] >= 0.5;
-            }
+        if ( incoming==null ) {
+            incoming = new FrameBuffer(rows, cols);
+        }
+        incoming.fromColourValues(data);
+        update(incoming);
+    }
+
+    @Override
+    public void update(FrameBuffer frame) {
+        preparePlan();
+        plannedMode = colour;
+        plan.build(frame, plannedMode);
+        scan();
+    }
+
+    @Override
+    public void update(FrameBuffer frame, Damage damage) {
+        preparePlan();
+        if ( plannedMode!=colour ) {
+            plannedMode = colour;
+            plan.build(frame, plannedMode);
+        } else {
+            plan.build(frame, damage, plannedMode);
         }
-        update(boolData);
+        scan();
     }
 
-    public void update(boolean[][] data) {
+    private void preparePlan() {
+        if ( plan==null ) {
+            plan = new ScanPlan(Layout.SPLIT_COLS, rows, cols, 1);
+            plannedMode = null;
+        }
         if ( cycleColours && System.currentTimeMillis()-t > colourChangePeriod) {
-            colour++;
-            if ( colour> YELLOW_MODE) colour = RED_MODE;
+            colour = colour==Mode.RED ? Mode.GREEN : colour==Mode.GREEN ? Mode.YELLOW : Mode.RED;
             t = System.currentTimeMillis();
         }
+    }
+
+    private void scan() {
         try {
-            for (int row = 0; row < data.length; row++) {
-                sendSerialString(data[row]);
+            for (int row = 0; row < plan.getScanLines(); row++) {
+                sendSerialString(plan.getLine(0, row));
                 outputPin.high();
                 decodeRowAddress(row);
                 storePin.high();
@@ -110,79 +137,52 @@ public class RaspPiDanLightBoard implements LightBoard, ColourSwitcher {
         }
     }
 
-    private void sendSerialString(boolean[] data) throws InterruptedException {
-        Boolean lastValue1 = null;
-        Boolean lastValue2 = null;
-        for (int col = (data.length/2)-1; col >= 0; col--) {
-            int parallelCol = col + (cols /2);
+    private int lastNibble = -1;
+
+    private void sendSerialString(byte[] bits) {
+        for (int clock = 0; clock < bits.length; clock++) {
+            int nibble = bits[clock];
+            int changed = nibble ^ lastNibble;
             clockPin.low();
-            if ( lastValue1==null || lastValue1!=data[col] ) {
-                lastValue1 = data[col];
-                if (data[col]) {
-                    if ( colour!= GREEN_MODE) data1PinR.high();
-                    if ( colour!= RED_MODE) data1PinG.high();
-                } else {
-                    if ( colour!= GREEN_MODE) data1PinR.low();
-                    if ( colour!= RED_MODE) data1PinG.low();
+            if ( changed!=0 ) {
+                if ( (changed & ScanPlan.RED_1)!=0 ) {
+                    data1PinR.setState((nibble & ScanPlan.RED_1)!=0);
                 }
-            }
-            if ( lastValue2==null || lastValue2!=data[parallelCol] ) {
-                lastValue2 = data[parallelCol];
-                if (data[parallelCol]) {
-                    if ( colour!= GREEN_MODE) data2PinR.high();
-                    if ( colour!= RED_MODE) data2PinG.high();
-                } else {
-                    if ( colour!= GREEN_MODE) data2PinR.low();
-                    if ( colour!= RED_MODE) data2PinG.low();
+                if ( (changed & ScanPlan.GREEN_1)!=0 ) {
+                    data1PinG.setState((nibble & ScanPlan.GREEN_1)!=0);
                 }
+                if ( (changed & ScanPlan.RED_2)!=0 ) {
+                    data2PinR.setState((nibble & ScanPlan.RED_2)!=0);
+                }
+                if ( (changed & ScanPlan.GREEN_2)!=0 ) {
+                    data2PinG.setState((nibble & ScanPlan.GREEN_2)!=0);
+                }
+                lastNibble = nibble;
             }
             clockPin.high();
         }
     }
 
     private void decodeRowAddress(int row) {
-        boolean address0 = BigInteger.valueOf(row).testBit(0);
-        boolean address1 = BigInteger.valueOf(row).testBit(1);
-        boolean address2 = BigInteger.valueOf(row).testBit(2);
-        boolean address3 = BigInteger.valueOf(row).testBit(3);
-        if (lastAddress0 ==null || address0!= lastAddress0) {
-            lastAddress0 = address0;
-            if (address0) {
-                address0Pin.high();
-            } else {
-                address0Pin.low();
+        int changed = row ^ lastAddress;
+        if ( changed!=0 ) {
+            if ( (changed & 0x1)!=0 ) {
+                address0Pin.setState((row & 0x1)!=0);
             }
-        }
-        if (lastAddress1 ==null || address1!= lastAddress1) {
-            lastAddress1 = address1;
-            if (address1) {
-                address1Pin.high();
-            } else {
-                address1Pin.low();
+            if ( (changed & 0x2)!=0 ) {
+                address1Pin.setState((row & 0x2)!=0);
             }
-        }
-        if (lastAddress2 ==null || address2!= lastAddress2) {
-            lastAddress2 = address2;
-            if (address2) {
-                address2Pin.high();
-            } else {
-                address2Pin.low();
+            if ( (changed & 0x4)!=0 ) {
+                address2Pin.setState((row & 0x4)!=0);
             }
-        }
-        if (lastAddress3 ==null || address3!= lastAddress3) {
-            lastAddress3 = address3;
-            if (address3) {
-                address3Pin.high();
-            } else {
-                address3Pin.low();
+            if ( (changed & 0x8)!=0 ) {
+                address3Pin.setState((row & 0x8)!=0);
             }
+            lastAddress = row;
         }
     }
 
-    private Boolean lastAddress0 = null;
-    private Boolean lastAddress1 = null;
-    private Boolean lastAddress2 = null;
-    private Boolean lastAddress3 = null;
+    private int lastAddress = -1;
 
     @Override
     public Long getUpdateInterval() {
@@ -230,17 +230,13 @@ public class RaspPiDanLightBoard implements LightBoard, ColourSwitcher {
     public void setColour(String colourName) {
         if (RED.equals(colourName)) {
             cycleColours = false;
-            colour = RED_MODE;
-            data1PinG.low();
-            data2PinG.low();
+            colour = Mode.RED;
         } else if (GREEN.equals(colourName)) {
             cycleColours = false;
-            colour = GREEN_MODE;
-            data1PinR.low();
-            data2PinR.low();
+            colour = Mode.GREEN;
         } else if (YELLOW.equals(colourName)) {
             cycleColours = false;
-            colour = YELLOW_MODE;
+            colour = Mode.YELLOW;
         }
     }
 
@@ -6,16 +6,22 @@ import com.pi4j.io.gpio.PinState;
 import com.pi4j.io.gpio.RaspiPin;
 import net.amarantha.lightboard.board.ColourSwitcher;
 import net.amarantha.lightboard.board.LightBoard;
+import net.amarantha.lightboard.board.impl.ScanPlan.Layout;
+import net.amarantha.lightboard.board.impl.ScanPlan.Mode;
 import net.amarantha.lightboard.module.Cols;
 import net.amarantha.lightboard.module.Rows;
+import net.amarantha.lightboard.surface.Damage;
+import net.amarantha.lightboard.surface.FrameBuffer;
+import net.amarantha.lightboard.surface.FrameExchange;
+import net.amarantha.lightboard.utility.LightBoardProperties;
 
 import javax.inject.Inject;
-import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 
 import static com.pi4j.wiringpi.Gpio.digitalWrite;
 import static net.amarantha.lightboard.entity.Colour.*;
+import static net.amarantha.lightboard.surface.FrameBuffer.WHITE;
 
 /**
  * Second implementation using RaspPi - this one for the Greenpeace field at Glastonbury 2015
@@ -38,21 +44,26 @@ public class RaspPiGlastoLightBoard implements LightBoard, ColourSwitcher {
     private int addr2 = 23;
     private int addr3 = 24;
 
-    private double[][][] currentFrame;
-    private double[][][] nextFrame;
+    @Inject private LightBoardProperties props;
+
+    // Frames go from update() on the Sync thread to the scan thread without locking or allocation
+    private FrameExchange frames;
+    private FrameBuffer incoming;
+    private Damage everything;
 
     private void pushTestPattern() {
-        currentFrame = new double[3][rows][cols];
-        nextFrame = currentFrame;
+        frames = new FrameExchange(rows, cols);
+        incoming = new FrameBuffer(rows, cols);
+        everything = new Damage(rows, cols);
+        everything.addAll();
         for ( int r=0; r<rows; r++ ) {
             for ( int c=0; c<cols; c++ ) {
                 if ( c%4==0 || r%4==0 ) {
-                    currentFrame[0][r][c] = 1.0;
-                    currentFrame[1][r][c] = 1.0;
-                    currentFrame[2][r][c] = 1.0;
+                    incoming.setPixel(c, r, WHITE);
                 }
             }
         }
+        frames.publish(incoming, everything);
     }
 
     @Override
@@ -63,6 +74,11 @@ public class RaspPiGlastoLightBoard implements LightBoard, ColourSwitcher {
         this.cols = cols;
         pushTestPattern();
 
+        if ( props!=null ) {
+            setBitDepth(props.getBcmBitDepth());
+            setBcmBaseMicros(props.getBcmBaseMicros());
+        }
+
         // IMPORTANT:
         // It is necessary to set the pins up via the GpioFactory so that subsequent calls
         // via the Gpio static methods use the wiringPi pin numbers
@@ -98,125 +114,187 @@ public class RaspPiGlastoLightBoard implements LightBoard, ColourSwitcher {
         System.out.println("Board Ready");
     }
 
-    private static final int MULTI_MODE = 0;
-    private static final int RED_MODE = 1;
-    private static final int GREEN_MODE = 2;
-    private static final int YELLOW_MODE = 3;
-
-    private int colour = MULTI_MODE;
+    private volatile Mode colour = Mode.MULTI;
 
-    private boolean sleeping = false;
+    private volatile boolean sleeping = false;
 
     @Override
     public void update(double[][][] data) {
-        nextFrame = new double[3][rows][cols];
-        for ( int r=0; r<rows; r++ ) {
-            for ( int c=0; c<cols; c++ ) {
-                nextFrame[0][r][c] = data[0][r][c];
-                nextFrame[1][r][c] = data[1][r][c];
-                nextFrame[2][r][c] = data[2][r][c];
-            }
+        incoming.fromColourValues(data);
+        frames.publish(incoming, everything);
+    }
+
+    @Override
+    public void update(FrameBuffer frame) {
+        frames.publish(frame, everything);
+    }
+
+    @Override
+    public void update(FrameBuffer frame, Damage damage) {
+        // The scan thread keeps showing the last frame, so there is nothing to hand over
+        if ( !damage.isEmpty() ) {
+            frames.publish(frame, damage);
         }
     }
 
     public void push() {
-        currentFrame = nextFrame;
+        FrameBuffer frame = frames.acquire();
         try {
-            for (int row = 0; row < rows/2; row++) {
-                double[][] redFrame = currentFrame[0];
-                double[][] greenFrame = currentFrame[1];
-                sendSerialString(redFrame[row], greenFrame[row], redFrame[row+rows/2], greenFrame[row+rows/2]);
+            if ( plan==null || plan.getDepth()!=bitDepth ) {
+                plan = new ScanPlan(Layout.SPLIT_ROWS, rows, cols, bitDepth);
+                plannedFrame = null;
+            }
+            if ( plannedFrame==null || colour!=plannedMode ) {
+                plannedMode = colour;
+                plan.build(frame, plannedMode);
+                plannedFrame = frame;
+            } else if ( frame!=plannedFrame ) {
+                plan.build(frame, frames.getChanges(), plannedMode);
+                plannedFrame = frame;
+            }
+            scanBitPlanes();
+            framesScanned++;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+
+    ////////////////////////////
+    // Binary Code Modulation //
+    ////////////////////////////
+
+    // Bits of brightness per channel - 1 is plain on/off
+    private volatile int bitDepth = 1;
+
+    // Minimum on-time of the least significant plane; 0 lets the shift time set the pace
+    private volatile long bcmBaseNanos = 0;
+
+    private ScanPlan plan;
+    private FrameBuffer plannedFrame;
+    private Mode plannedMode;
+
+    // Running average of how long it takes to clock out one row of one plane
+    private long shiftNanos = 0;
+
+    private boolean lit = false;
+    private boolean earlyBlank = false;
+    private long blankAt = 0;
+
+    private int lastNibble = -1;
+
+    private volatile long framesScanned = 0;
+
+    /**
+     * Each scan row is shown once per bit plane, most significant first, and each plane is lit
+     * for half as long as the one before. The next plane is clocked out while the current one
+     * is showing; planes shorter than a shift are blanked part way through it
+     */
+    private void scanBitPlanes() {
+        int depth = plan.getDepth();
+        for ( int row=0; row<rows/2; row++ ) {
+            for ( int plane=depth-1; plane>=0; plane-- ) {
+                long start = System.nanoTime();
+                shiftPlane(plan.getLine(plane, row));
+                shiftNanos += (System.nanoTime() - start - shiftNanos) / 8;
+                while ( lit && System.nanoTime() < blankAt ) {
+                    // hold the previous plane for its full weight
+                }
                 digitalWrite(output, true);
                 decodeRowAddress(row);
                 digitalWrite(store, false);
                 digitalWrite(store, true);
                 digitalWrite(output, false);
+                long onTime = onTime(plane, depth);
+                lit = true;
+                earlyBlank = onTime < shiftNanos;
+                blankAt = System.nanoTime() + onTime;
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
     }
 
-    private Boolean lastRed1 = null;
-    private Boolean lastGreen1 = null;
-    private Boolean lastRed2 = null;
-    private Boolean lastGreen2 = null;
+    private long onTime(int plane, int depth) {
+        long msbNanos = Math.max(shiftNanos, bcmBaseNanos << (depth - 1));
+        return msbNanos >> (depth - 1 - plane);
+    }
 
-    private void sendSerialString(double[] red1, double[] green1, double[] red2, double[] green2) throws InterruptedException {
-        for (int col = 0; col < cols ; col++) {
+    private void shiftPlane(byte[] bits) {
+        for ( int col=0; col<cols; col++ ) {
+            if ( earlyBlank && lit && System.nanoTime() >= blankAt ) {
+                digitalWrite(output, true);
+                lit = false;
+            }
+            int nibble = bits[col];
+            int changed = nibble ^ lastNibble;
             digitalWrite(clock, false);
-            if ( colour==MULTI_MODE) {
-                if ( lastRed1==null || lastRed1!=red1[col]<0.5 ) {
-                    digitalWrite(data1R, lastRed1=red1[col]<0.5 );
-                }
-                if ( lastGreen1==null || lastGreen1!=green1[col]<0.5 ) {
-                    digitalWrite(data1G, lastGreen1=green1[col]<0.5 );
+            if ( changed!=0 ) {
+                // Data lines are active low
+                if ( (changed & ScanPlan.RED_1)!=0 ) {
+                    digitalWrite(data1R, (nibble & ScanPlan.RED_1)==0);
                 }
-                if ( lastRed2==null || lastRed2!=red2[col]<0.5 ) {
-                    digitalWrite(data2R, lastRed2=red2[col]<0.5 );
+                if ( (changed & ScanPlan.GREEN_1)!=0 ) {
+                    digitalWrite(data1G, (nibble & ScanPlan.GREEN_1)==0);
                 }
-                if ( lastGreen2==null || lastGreen2!=green2[col]<0.5 ) {
-                    digitalWrite(data2G, lastGreen2=green2[col]<0.5 );
+                if ( (changed & ScanPlan.RED_2)!=0 ) {
+                    digitalWrite(data2R, (nibble & ScanPlan.RED_2)==0);
                 }
-            } else {
-                if ( red1[col] >= 0.5 || green1[col] >= 0.5) {
-                    if ( colour==GREEN_MODE || colour==YELLOW_MODE) {
-                        digitalWrite(data1G, false);
-                    }
-                    if ( colour==RED_MODE || colour==YELLOW_MODE) {
-                        digitalWrite(data1R, false);
-                    }
-                } else {
-                    if ( colour==GREEN_MODE || colour==YELLOW_MODE) {
-                        digitalWrite(data1G, true);
-                    }
-                    if ( colour==RED_MODE || colour==YELLOW_MODE) {
-                        digitalWrite(data1R, true);
-                    }
-                }
-                if ( red2[col] >= 0.5 || green2[col] >= 0.5) {
-                    if ( colour==GREEN_MODE || colour==YELLOW_MODE) {
-                        digitalWrite(data2G, false);
-                    }
-                    if ( colour==RED_MODE || colour==YELLOW_MODE) {
-                        digitalWrite(data2R, false);
-                    }
-                } else {
-                    if ( colour==GREEN_MODE || colour==YELLOW_MODE) {
-                        digitalWrite(data2G, true);
-                    }
-                    if ( colour==RED_MODE || colour==YELLOW_MODE) {
-                        digitalWrite(data2R, true);
-                    }
+                if ( (changed & ScanPlan.GREEN_2)!=0 ) {
+                    digitalWrite(data2G, (nibble & ScanPlan.GREEN_2)==0);
                 }
+                lastNibble = nibble;
             }
             digitalWrite(clock, true);
         }
     }
 
-    private void decodeRowAddress(int row) {
-        boolean address0 = BigInteger.valueOf(row).testBit(0);
-        boolean address1 = BigInteger.valueOf(row).testBit(1);
-        boolean address2 = BigInteger.valueOf(row).testBit(2);
-        boolean address3 = BigInteger.valueOf(row).testBit(3);
-        if (lastAddress0 ==null || address0!= lastAddress0) {
-            digitalWrite(addr0, lastAddress0 = address0);
-        }
-        if (lastAddress1 ==null || address1!= lastAddress1) {
-            digitalWrite(addr1, lastAddress1 = address1);
-        }
-        if (lastAddress2 ==null || address2!= lastAddress2) {
-            digitalWrite(addr2, lastAddress2 = address2);
+    public void setBitDepth(int bitDepth) {
+        if ( bitDepth < 1 || bitDepth > ScanPlan.MAX_DEPTH ) {
+            throw new IllegalArgumentException("Bit depth must be 1-" + ScanPlan.MAX_DEPTH + ": " + bitDepth);
         }
-        if (lastAddress3 ==null || address3!= lastAddress3) {
-            digitalWrite(addr3, lastAddress3 = address3);
+        this.bitDepth = bitDepth;
+    }
+
+    public int getBitDepth() {
+        return bitDepth;
+    }
+
+    public void setBcmBaseMicros(long micros) {
+        bcmBaseNanos = micros * 1000;
+    }
+
+    public long getShiftMicros() {
+        return shiftNanos / 1000;
+    }
+
+    public long getFramesScanned() {
+        return framesScanned;
+    }
+
+
+    /////////////////
+    // Row Address //
+    /////////////////
+
+    private void decodeRowAddress(int row) {
+        int changed = row ^ lastAddress;
+        if ( changed!=0 ) {
+            if ( (changed & 0x1)!=0 ) {
+                digitalWrite(addr0, (row & 0x1)!=0);
+            }
+            if ( (changed & 0x2)!=0 ) {
+                digitalWrite(addr1, (row & 0x2)!=0);
+            }
+            if ( (changed & 0x4)!=0 ) {
+                digitalWrite(addr2, (row & 0x4)!=0);
+            }
+            if ( (changed & 0x8)!=0 ) {
+                digitalWrite(addr3, (row & 0x8)!=0);
+            }
+            lastAddress = row;
         }
     }
 
-    private Boolean lastAddress0 = null;
-    private Boolean lastAddress1 = null;
-    private Boolean lastAddress2 = null;
-    private Boolean lastAddress3 = null;
+    private int lastAddress = -1;
 
     @Override
     public Long getUpdateInterval() {
@@ -264,17 +342,13 @@ public class RaspPiGlastoLightBoard implements LightBoard, ColourSwitcher {
     public void setColour(String colourName) {
         this.colourName = colourName;
         if (RED.equals(colourName)) {
-            colour = RED_MODE;
-            digitalWrite(data1G, true);
-            digitalWrite(data2G, true);
+            colour = Mode.RED;
         } else if (GREEN.equals(colourName)) {
-            colour = GREEN_MODE;
-            digitalWrite(data1R, true);
-            digitalWrite(data2R, true);
+            colour = Mode.GREEN;
         } else if (YELLOW.equals(colourName)) {
-            colour = YELLOW_MODE;
+            colour = Mode.YELLOW;
         } else if (MULTI.equals(colourName)) {
-            colour = MULTI_MODE;
+            colour = Mode.MULTI;
         }
     }
 
@@ -0,0 +1,275 @@
+package net.amarantha.lightboard.board.impl;
+
+import com.google.inject.Inject;
+import net.amarantha.lightboard.board.LightBoard;
+import net.amarantha.lightboard.surface.Damage;
+import net.amarantha.lightboard.surface.FrameBuffer;
+import net.amarantha.lightboard.utility.LightBoardProperties;
+import net.amarantha.lightboard.utility.Sync;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Headless LightBoard that records every frame it is sent to a log file, to be replayed later
+ * into any other board by RecordingPlayer.
+ *
+ * Each frame is stored as the runs of pixels that changed since the one before, stamped with the
+ * time since recording started, and written straight into a memory-mapped file - so recording
+ * costs little more than checking the damaged spans. A frame's tag byte is written last, so a log
+ * cut short by a crash still plays up to the last whole frame.
+ *
+ * Log format, big-endian: a header of magic, version, rows, cols (ints) and the wall-clock start
+ * time (long), then one record per frame:
+ *   FRAME tag, varint millis since the previous frame,
+ *   runs of (varint pixels skipped since the last run, varint length, length x 3 bytes RGB),
+ *   ended by a run of (0, 0)
+ * The log ends at EOF or at the first byte that isn't a FRAME tag.
+ */
+public class RecordingBoard implements LightBoard, Closeable {
+
+    static final int MAGIC = 0x4C425243;
+    static final int VERSION = 1;
+    static final byte FRAME = 1;
+
+    private static final long DEFAULT_UPDATE_INTERVAL = 40L;
+    private static final int CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private final Sync sync;
+    private final Path file;
+    private final Long updateInterval;
+
+    private int rows;
+    private int cols;
+    private int[] last;
+    private Damage everything;
+    private FrameBuffer unpacked;
+    private int maxRecord;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long mapStart;
+
+    private long startNanos;
+    private long lastMillis;
+    private int frames;
+
+    @Inject
+    public RecordingBoard(Sync sync, LightBoardProperties props) {
+        this(sync, Paths.get(props.getRecordingFile()), DEFAULT_UPDATE_INTERVAL);
+    }
+
+    public RecordingBoard(Sync sync, Path file, Long updateInterval) {
+        this.sync = sync;
+        this.file = file;
+        this.updateInterval = updateInterval;
+    }
+
+    @Override
+    public void init(int rows, int cols) {
+        System.out.println("Starting RecordingBoard to " + file.toAbsolutePath() + "...");
+        this.rows = rows;
+        this.cols = cols;
+
+        // The player starts from a black board too, so the first frame records only what's lit
+        last = new int[rows * cols];
+        everything = new Damage(rows, cols);
+        everything.addAll();
+        unpacked = new FrameBuffer(rows, cols);
+
+        // Worst case is every other pixel changing: a run header and one pixel each
+        maxRecord = 16 + rows * cols * 13;
+
+        close();
+        try {
+            channel = FileChannel.open(file, CREATE, READ, WRITE, TRUNCATE_EXISTING);
+            map(0);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(cols).putLong(System.currentTimeMillis());
+        } catch ( IOException e ) {
+            e.printStackTrace();
+            close();
+        }
+        startNanos = sync.now();
+        lastMillis = 0;
+        frames = 0;
+    }
+
+    @Override
+    public void update(double[][][] data) {
+        for ( int r=0; r<rows; r++ ) {
+            for ( int c=0; c<cols; c++ ) {
+                unpacked.setPixel(c, r, data[0][r][c], data[1][r][c], data[2][r][c]);
+            }
+        }
+        update(unpacked, everything);
+    }
+
+    @Override
+    public void update(FrameBuffer frame) {
+        update(frame, everything);
+    }
+
+    @Override
+    public synchronized void update(FrameBuffer frame, Damage damage) {
+        if ( buffer==null || damage.isEmpty() ) {
+            return;
+        }
+        try {
+            ensureSpace();
+        } catch ( IOException e ) {
+            e.printStackTrace();
+            close();
+            return;
+        }
+
+        int start = buffer.position();
+        long millis = (sync.now() - startNanos) / 1_000_000;
+        buffer.put((byte) 0);
+        putVarint(millis - lastMillis);
+
+        int[] pixels = frame.getPixels();
+        int cursor = 0;
+        int runStart = -1;
+        int runEnd = -1;
+        for ( int r=damage.getTop(); r>=0 && r<=damage.getBottom(); r++ ) {
+            if ( damage.isRowDamaged(r) ) {
+                for ( int i=r*cols+damage.getLeft(r); i<=r*cols+damage.getRight(r); i++ ) {
+                    if ( pixels[i]!=last[i] ) {
+                        if ( i!=runEnd ) {
+                            if ( runStart >= 0 ) {
+                                cursor = putRun(pixels, cursor, runStart, runEnd);
+                            }
+                            runStart = i;
+                        }
+                        runEnd = i + 1;
+                    }
+                }
+            }
+        }
+        if ( runStart < 0 ) {
+            // Damaged, but redrawn the same
+            buffer.position(start);
+            return;
+        }
+        putRun(pixels, cursor, runStart, runEnd);
+        putVarint(0);
+        putVarint(0);
+
+        buffer.put(start, FRAME);
+        lastMillis = millis;
+        frames++;
+    }
+
+    private int putRun(int[] pixels, int cursor, int from, int to) {
+        putVarint(from - cursor);
+        putVarint(to - from);
+        for ( int i=from; i<to; i++ ) {
+            int pixel = pixels[i];
+            buffer.put((byte) (pixel >> 16));
+            buffer.put((byte) (pixel >> 8));
+            buffer.put((byte) pixel);
+            last[i] = pixel;
+        }
+        return to;
+    }
+
+    private void putVarint(long value) {
+        while ( (value & ~0x7FL)!=0 ) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+
+    /////////////
+    // Mapping //
+    /////////////
+
+    private void ensureSpace() throws IOException {
+        if ( buffer.remaining() < maxRecord ) {
+            map(mapStart + buffer.position());
+        }
+    }
+
+    private void map(long position) throws IOException {
+        if ( buffer!=null ) {
+            buffer.force();
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(CHUNK_SIZE, maxRecord));
+        mapStart = position;
+    }
+
+    /**
+     * Finish the log, trimming the file to what was written. Frames already recorded are safe
+     * without this, it just saves the unused end of the mapping
+     */
+    @Override
+    public synchronized void close() {
+        if ( channel==null ) {
+            return;
+        }
+        try {
+            if ( buffer!=null ) {
+                buffer.force();
+                channel.truncate(mapStart + buffer.position());
+            }
+            channel.close();
+        } catch ( IOException e ) {
+            e.printStackTrace();
+        }
+        channel = null;
+        buffer = null;
+    }
+
+    /**
+     * @return How many frames have been recorded since init()
+     */
+    public synchronized int getFramesRecorded() {
+        return frames;
+    }
+
+    /**
+     * @return Size of the log so far, including the header
+     */
+    public synchronized long getBytesRecorded() {
+        return buffer==null ? 0 : mapStart + buffer.position();
+    }
+
+
+    /////////////////////////
+    // Board Specification //
+    /////////////////////////
+
+    @Override
+    public Long getUpdateInterval() {
+        return updateInterval;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public void sleep() {
+
+    }
+
+    @Override
+    public void wake() {
+
+    }
+
+}
@@ -0,0 +1,234 @@
+package net.amarantha.lightboard.board.impl;
+
+import com.google.inject.Guice;
+import net.amarantha.lightboard.board.LightBoard;
+import net.amarantha.lightboard.module.ApplicationModule;
+import net.amarantha.lightboard.surface.Damage;
+import net.amarantha.lightboard.surface.FrameBuffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a log written by RecordingBoard, a frame at a time or in real time into any LightBoard.
+ *
+ * Usage: RecordingPlayer file [boardClass] [speed]
+ */
+public class RecordingPlayer implements Closeable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private final int rows;
+    private final int cols;
+    private final long startMillis;
+
+    private final FrameBuffer frame;
+    private final Damage damage;
+    private long timestamp;
+
+    public RecordingPlayer(Path file) throws IOException {
+        channel = FileChannel.open(file);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        try {
+            if ( buffer.getInt()!=RecordingBoard.MAGIC ) {
+                throw new IOException("Not a LightBoard recording: " + file);
+            }
+            int version = buffer.getInt();
+            if ( version!=RecordingBoard.VERSION ) {
+                throw new IOException("Unsupported recording version " + version + ": " + file);
+            }
+            rows = buffer.getInt();
+            cols = buffer.getInt();
+            startMillis = buffer.getLong();
+        } catch ( BufferUnderflowException e ) {
+            channel.close();
+            throw new IOException("Not a LightBoard recording: " + file);
+        } catch ( IOException e ) {
+            channel.close();
+            throw e;
+        }
+        frame = new FrameBuffer(rows, cols);
+        damage = new Damage(rows, cols);
+    }
+
+    /**
+     * Move on to the next frame
+     * @return false at the end of the recording
+     */
+    public boolean next() {
+        damage.clear();
+        if ( !buffer.hasRemaining() || buffer.get(buffer.position())!=RecordingBoard.FRAME ) {
+            return false;
+        }
+        // Check the whole record is there before applying any of it - a torn last frame is left out
+        int start = buffer.position();
+        boolean whole = skipFrame();
+        buffer.position(start);
+        if ( !whole ) {
+            return false;
+        }
+        buffer.get();
+        timestamp += getVarint();
+        int[] pixels = frame.getPixels();
+        int cursor = 0;
+        while ( true ) {
+            cursor += (int) getVarint();
+            int length = (int) getVarint();
+            if ( length==0 ) {
+                return true;
+            }
+            for ( int i=cursor; i<cursor+length; i++ ) {
+                pixels[i] = ((buffer.get() & 0xFF) << 16) | ((buffer.get() & 0xFF) << 8) | (buffer.get() & 0xFF);
+            }
+            addDamage(cursor, length);
+            cursor += length;
+        }
+    }
+
+    /**
+     * Read past a frame record without applying it
+     * @return false if the record is cut short or doesn't fit the board
+     */
+    private boolean skipFrame() {
+        try {
+            buffer.get();
+            getVarint();
+            long cursor = 0;
+            while ( true ) {
+                cursor += getVarint();
+                long length = getVarint();
+                if ( length==0 ) {
+                    return true;
+                }
+                if ( cursor + length > rows * cols ) {
+                    return false;
+                }
+                buffer.position(buffer.position() + (int) length * 3);
+                cursor += length;
+            }
+        } catch ( BufferUnderflowException | IllegalArgumentException e ) {
+            return false;
+        }
+    }
+
+    private void addDamage(int from, int length) {
+        while ( length > 0 ) {
+            int r = from / cols;
+            int c = from % cols;
+            int width = Math.min(length, cols - c);
+            damage.add(c, r, width, 1);
+            from += width;
+            length -= width;
+        }
+    }
+
+    private long getVarint() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ( (b & 0x80)!=0 );
+        return value;
+    }
+
+    /**
+     * Play the rest of the recording into the board, keeping its original timing
+     * @param speed 2.0 plays twice as fast, 0 as fast as the board will take it
+     */
+    public void play(LightBoard board, double speed) throws InterruptedException {
+        board.init(rows, cols);
+        long begin = System.nanoTime();
+        long from = timestamp;
+        while ( next() ) {
+            if ( speed > 0 ) {
+                long due = begin + (long) ((timestamp - from) * 1_000_000 / speed);
+                long wait = due - System.nanoTime();
+                if ( wait > 0 ) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+            board.update(frame, damage);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+
+    /////////////
+    // Getters //
+    /////////////
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * @return Wall-clock time the recording started
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * @return The current frame - updated in place by next()
+     */
+    public FrameBuffer getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return What the current frame changed from the one before
+     */
+    public Damage getDamage() {
+        return damage;
+    }
+
+    /**
+     * @return When the current frame was recorded, in milliseconds from the start
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+
+    //////////
+    // Main //
+    //////////
+
+    public static void main(String[] args) throws Exception {
+
+        if ( args.length < 1 ) {
+            System.out.println("Usage: RecordingPlayer file [boardClass] [speed]");
+            System.exit(1);
+        }
+
+        Class<? extends LightBoard> boardClass = args.length > 1 ? Class.forName(args[1]).asSubclass(LightBoard.class) : TextBoard.class;
+        double speed = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+
+        LightBoard board = Guice.createInjector(new ApplicationModule()).getInstance(boardClass);
+        try ( RecordingPlayer player = new RecordingPlayer(Paths.get(args[0])) ) {
+            player.play(board, speed);
+        }
+
+        System.exit(0);
+
+    }
+
+}
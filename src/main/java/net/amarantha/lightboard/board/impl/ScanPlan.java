@@ -0,0 +1,183 @@
+package net.amarantha.lightboard.board.impl;
+
+import net.amarantha.lightboard.surface.Damage;
+import net.amarantha.lightboard.surface.FrameBuffer;
+
+import static net.amarantha.lightboard.surface.FrameBuffer.blueByte;
+import static net.amarantha.lightboard.surface.FrameBuffer.greenByte;
+import static net.amarantha.lightboard.surface.FrameBuffer.redByte;
+
+/**
+ * A frame converted once into exactly what a shift-register board clocks out, so the scan loop
+ * only has to walk bits and toggle pins.
+ *
+ * Both Pi boards shift two halves of the display in parallel, each with a red and a green data
+ * line. For every scan line the plan holds one nibble per clock - the logical levels of the four
+ * data lines, already in shift order and already adjusted for the colour mode.
+ *
+ * The plan is split into Binary Code Modulation bit planes: plane n holds bit n of the top
+ * 'depth' bits of each channel. A depth of 1 is the plain on/off threshold at 0.5.
+ */
+public class ScanPlan {
+
+    public static final int RED_1 = 0x1;
+    public static final int GREEN_1 = 0x2;
+    public static final int RED_2 = 0x4;
+    public static final int GREEN_2 = 0x8;
+
+    public static final int MAX_DEPTH = 8;
+
+    /**
+     * How the two data line pairs map onto the display
+     */
+    public enum Layout {
+
+        /** Line 1 drives row n and line 2 drives row n + rows/2, clocked left to right */
+        SPLIT_ROWS,
+
+        /** Line 1 drives the left half of row n and line 2 the right half, clocked right to left */
+        SPLIT_COLS
+
+    }
+
+    /**
+     * MULTI drives red and green from their own channels; the others light their colour(s)
+     * wherever any channel is lit
+     */
+    public enum Mode { MULTI, RED, GREEN, YELLOW }
+
+    private final Layout layout;
+    private final int depth;
+    private final int rows;
+    private final int cols;
+    private final int scanLines;
+    private final int clocks;
+
+    // [plane][scan line][clock]
+    private final byte[][][] planes;
+
+    public ScanPlan(Layout layout, int rows, int cols, int depth) {
+        if ( depth < 1 || depth > MAX_DEPTH ) {
+            throw new IllegalArgumentException("Bit depth must be 1-" + MAX_DEPTH + ": " + depth);
+        }
+        this.layout = layout;
+        this.depth = depth;
+        this.rows = rows;
+        this.cols = cols;
+        if ( layout==Layout.SPLIT_ROWS ) {
+            scanLines = rows / 2;
+            clocks = cols;
+        } else {
+            scanLines = rows;
+            clocks = cols / 2;
+        }
+        planes = new byte[depth][scanLines][clocks];
+    }
+
+
+    //////////////
+    // Building //
+    //////////////
+
+    public void build(FrameBuffer frame, Mode mode) {
+        for ( int line=0; line<scanLines; line++ ) {
+            buildLine(frame.getPixels(), line, mode);
+        }
+    }
+
+    /**
+     * Rebuild only the scan lines that cover damaged rows
+     */
+    public void build(FrameBuffer frame, Damage damage, Mode mode) {
+        for ( int line=0; line<scanLines; line++ ) {
+            boolean damaged;
+            if ( layout==Layout.SPLIT_ROWS ) {
+                damaged = damage.isRowDamaged(line) || damage.isRowDamaged(line + scanLines);
+            } else {
+                damaged = damage.isRowDamaged(line);
+            }
+            if ( damaged ) {
+                buildLine(frame.getPixels(), line, mode);
+            }
+        }
+    }
+
+    private void buildLine(int[] pixels, int line, Mode mode) {
+        int first;
+        int second;
+        int step;
+        if ( layout==Layout.SPLIT_ROWS ) {
+            first = line * cols;
+            second = (line + scanLines) * cols;
+            step = 1;
+        } else {
+            first = line * cols + clocks - 1;
+            second = first + clocks;
+            step = -1;
+        }
+        int drop = 8 - depth;
+        for ( int clock=0; clock<clocks; clock++ ) {
+            int offset = clock * step;
+            int level1 = levels(pixels[first + offset], mode, drop);
+            int level2 = levels(pixels[second + offset], mode, drop);
+            for ( int plane=0; plane<depth; plane++ ) {
+                int red1 = (level1 >> plane) & 1;
+                int green1 = (level1 >> (plane + 8)) & 1;
+                int red2 = (level2 >> plane) & 1;
+                int green2 = (level2 >> (plane + 8)) & 1;
+                planes[plane][line][clock] = (byte) (red1 | green1 << 1 | red2 << 2 | green2 << 3);
+            }
+        }
+    }
+
+    /**
+     * @return Red level in the low byte, green level in the next, each reduced to 'depth' bits
+     */
+    private static int levels(int pixel, Mode mode, int drop) {
+        int red;
+        int green;
+        if ( mode==Mode.MULTI ) {
+            red = redByte(pixel);
+            green = greenByte(pixel);
+        } else {
+            int level = Math.max(redByte(pixel), Math.max(greenByte(pixel), blueByte(pixel)));
+            red = mode==Mode.GREEN ? 0 : level;
+            green = mode==Mode.RED ? 0 : level;
+        }
+        return (red >> drop) | (green >> drop) << 8;
+    }
+
+
+    ///////////
+    // Query //
+    ///////////
+
+    public byte[] getLine(int plane, int scanLine) {
+        return planes[plane][scanLine];
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getScanLines() {
+        return scanLines;
+    }
+
+    public int getClocks() {
+        return clocks;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+}
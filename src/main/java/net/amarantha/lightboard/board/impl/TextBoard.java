@@ -3,6 +3,7 @@ package net.amarantha.lightboard.board.impl;
 import net.amarantha.lightboard.board.LightBoard;
 import net.amarantha.lightboard.module.Cols;
 import net.amarantha.lightboard.module.Rows;
+import net.amarantha.lightboard.surface.FrameBuffer;
 
 import javax.inject.Inject;
 import java.io.PrintStream;
@@ -45,6 +46,20 @@ public class TextBoard implements LightBoard {
         out.println(sb.toString());
     }
 
+    @Override
+    public void update(FrameBuffer frame) {
+        StringBuilder sb = new StringBuilder();
+        for ( int r=0; r<rows; r++ ) {
+            sb.append((r < 10 ? "0" : "") + r + ":");
+            for ( int c=0; c<cols; c++ ) {
+                sb.append(frame.isOn(c, r) ? "#" : "-");
+            }
+            sb.append("\n");
+        }
+        sb.append("\n");
+        out.println(sb.toString());
+    }
+
     @Override
     public Long getUpdateInterval() {
         return 250L;
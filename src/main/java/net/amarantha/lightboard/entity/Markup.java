@@ -0,0 +1,181 @@
+package net.amarantha.lightboard.entity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Message text with its markup parsed once, into a stream of runs of plain text, pen colour
+ * changes and line breaks, ready for Font to measure and render without looking at tags again.
+ *
+ * Tags are written in braces. {red}, {green} and {yellow} change the pen colour; any other tag
+ * switches to pen mode without changing colour, as does a tag left open at the end.
+ */
+public class Markup {
+
+    public static final char NL = '\n';
+    public static final char OPEN_TAG = '{';
+    public static final char CLOSE_TAG = '}';
+
+    public static final Colour WHITE_PEN = new Colour(1.0, 1.0, 1.0);
+    public static final Colour RED_PEN = new Colour(1.0, 0.0, 0.0);
+    public static final Colour GREEN_PEN = new Colour(0.0, 1.0, 0.0);
+    public static final Colour YELLOW_PEN = new Colour(1.0, 1.0, 0.0);
+
+    public enum Type { TEXT, PEN, LINE }
+
+    public static final class Token {
+
+        private final Type type;
+        private final String text;
+        private final Colour pen;
+
+        private Token(Type type, String text, Colour pen) {
+            this.type = type;
+            this.text = text;
+            this.pen = pen;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * @return The characters of a TEXT token
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return The colour a PEN token switches to, or null to keep the current one
+         */
+        public Colour getPen() {
+            return pen;
+        }
+
+    }
+
+    private static final Token LINE = new Token(Type.LINE, null, null);
+    private static final Token KEEP_PEN = new Token(Type.PEN, null, null);
+    private static final Token RED = new Token(Type.PEN, null, RED_PEN);
+    private static final Token GREEN = new Token(Type.PEN, null, GREEN_PEN);
+    private static final Token YELLOW = new Token(Type.PEN, null, YELLOW_PEN);
+
+    private final String text;
+    private final List<Token> tokens;
+    private final int lines;
+    private final int renderedLines;
+
+    public Markup(String text) {
+        this.text = text;
+        List<Token> result = new ArrayList<>();
+        int line = 0;
+        int lastUsedLine = -1;
+        if ( text!=null ) {
+            int runStart = 0;
+            int tagStart = -1;
+            for ( int i=0; i<text.length(); i++ ) {
+                char c = text.charAt(i);
+                if ( tagStart>=0 ) {
+                    if ( c==CLOSE_TAG ) {
+                        result.add(penFor(text.substring(tagStart, i)));
+                        tagStart = -1;
+                        runStart = i + 1;
+                    }
+                } else if ( c==NL ) {
+                    addRun(result, text, runStart, i);
+                    result.add(LINE);
+                    runStart = i + 1;
+                    line++;
+                } else if ( c==OPEN_TAG ) {
+                    addRun(result, text, runStart, i);
+                    tagStart = i + 1;
+                }
+                if ( c!=NL || tagStart>=0 ) {
+                    lastUsedLine = line;
+                }
+            }
+            if ( tagStart>=0 ) {
+                result.add(KEEP_PEN);
+            } else {
+                addRun(result, text, runStart, text.length());
+            }
+        }
+        tokens = Collections.unmodifiableList(result);
+        lines = line + 1;
+        renderedLines = lastUsedLine + 1;
+    }
+
+    private static void addRun(List<Token> tokens, String text, int start, int end) {
+        if ( end > start ) {
+            tokens.add(new Token(Type.TEXT, text.substring(start, end), null));
+        }
+    }
+
+    private static Token penFor(String tag) {
+        switch ( tag ) {
+            case "red":
+                return RED;
+            case "green":
+                return GREEN;
+            case "yellow":
+                return YELLOW;
+            default:
+                return KEEP_PEN;
+        }
+    }
+
+    /**
+     * @return The original text, markup and all
+     */
+    public String getText() {
+        return text;
+    }
+
+    public boolean isEmpty() {
+        return text==null || text.isEmpty();
+    }
+
+    public List<Token> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Lines in the text - always one more than the number of line breaks
+     */
+    public int getLineCount() {
+        return lines;
+    }
+
+    /**
+     * Lines up to the last that has anything in it - trailing empty lines take no part in
+     * layout when rendering
+     */
+    public int getRenderedLineCount() {
+        return renderedLines;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if ( this==o ) {
+            return true;
+        }
+        if ( !(o instanceof Markup) ) {
+            return false;
+        }
+        Markup that = (Markup) o;
+        return text!=null ? text.equals(that.text) : that.text==null;
+    }
+
+    @Override
+    public int hashCode() {
+        return text!=null ? text.hashCode() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+}
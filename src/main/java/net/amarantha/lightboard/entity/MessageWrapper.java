@@ -7,6 +7,7 @@ import static net.amarantha.lightboard.entity.Edge.NO_SCROLL;
 public class MessageWrapper {
 
     private String message;
+    private Markup markup;
     private Edge scrollFrom;
     private Edge scrollTo;
     private AlignH alignH;
@@ -19,6 +20,7 @@ public class MessageWrapper {
 
     public MessageWrapper(String message, Edge scrollFrom, Edge scrollTo, AlignH alignH, AlignV alignV, int restDuration) {
         this.message = message;
+        this.markup = new Markup(message);
         this.scrollFrom = scrollFrom;
         this.scrollTo = scrollTo;
         this.alignH = alignH;
@@ -30,6 +32,13 @@ public class MessageWrapper {
         return message;
     }
 
+    /**
+     * The message with its markup already parsed, for rendering
+     */
+    public Markup getMarkup() {
+        return markup;
+    }
+
     public Edge getScrollFrom() {
         return scrollFrom;
     }
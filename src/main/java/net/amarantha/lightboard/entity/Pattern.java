@@ -1,125 +1,273 @@
 package net.amarantha.lightboard.entity;
 
+import net.amarantha.lightboard.surface.FrameBuffer;
+
+import java.util.Arrays;
+
 /**
- * A pattern of dots represented as both binary (boolean) and colour data
+ * An immutable pattern of dots, each with a binary (on/off) value and a colour.
+ *
+ * The binary values are held as one bit per dot. Colours are only stored when the pattern has
+ * some of its own - otherwise lit dots are white and the rest are off. A pattern with few colours,
+ * such as coloured text, keeps a palette and a byte per dot; anything else, such as a photo, keeps
+ * packed RGB bytes. Use a PatternBuilder to draw a pattern dot by dot.
  */
 public class Pattern {
 
-    private boolean[][] binaryValues;
-    private double[][][] colourValues;
+    private static final int MAX_PALETTE = 256;
 
-    private Colour penColour = new Colour(1.0, 1.0, 1.0);
+    private final int rows;
+    private final int cols;
+    private final long[] bits;
+    private final int[] palette;
+    private final byte[] indexes;
+    private final byte[] rgb;
 
     public Pattern(int rows, int cols) {
-        binaryValues = new boolean[rows][cols];
-        colourValues = new double[3][rows][cols];
+        this.rows = rows;
+        this.cols = cols;
+        bits = new long[words(rows * cols)];
+        palette = null;
+        indexes = null;
+        rgb = null;
     }
 
     public Pattern(int cols, String data) {
-        int rows = data.length()/cols;
-        binaryValues = new boolean[rows][cols];
-        colourValues = new double[3][rows][cols];
-        int i = 0;
-        for ( int r=0; r<rows; r++ ) {
-            for (int c = 0; c < cols; c++) {
-                binaryValues[r][c] = data.charAt(i) == '#';
-                double value = binaryValues[r][c] ? 1.0 : 0.0;
-                colourValues[0][r][c] = value;
-                colourValues[1][r][c] = value;
-                colourValues[2][r][c] = value;
-                i++;
+        this(data.length()/cols, cols);
+        for ( int i=0; i<rows*cols; i++ ) {
+            if ( data.charAt(i)=='#' ) {
+                bits[i >> 6] |= 1L << i;
             }
         }
     }
 
     public Pattern(boolean[][] binaryValues) {
-        this.binaryValues = binaryValues;
-        colourValues = new double[3][binaryValues.length][binaryValues[0].length];
-        for ( int r=0; r<binaryValues.length; r++ ) {
-            for ( int c=0; c<binaryValues[0].length; c++ ) {
-                double value = binaryValues[r][c] ? 1.0 : 0.0;
-                colourValues[0][r][c] = value;
-                colourValues[1][r][c] = value;
-                colourValues[2][r][c] = value;
+        this(binaryValues.length, binaryValues[0].length);
+        for ( int r=0; r<rows; r++ ) {
+            for ( int c=0; c<cols; c++ ) {
+                if ( binaryValues[r][c] ) {
+                    int i = r * cols + c;
+                    bits[i >> 6] |= 1L << i;
+                }
             }
         }
     }
 
     public Pattern(Colour[][] colourPoints) {
-        colourValues = new double[3][colourPoints.length][colourPoints[0].length];
+        this(fromColours(colourPoints));
+    }
+
+    public Pattern(double[][][] colourValues) {
+        this(fromColourValues(colourValues));
+    }
+
+    Pattern(PatternBuilder builder) {
+        rows = builder.getRows();
+        cols = builder.getCols();
+        bits = builder.bits.clone();
+        int[] pixels = builder.pixels;
+        boolean monochrome = true;
+        for ( int i=0; i<pixels.length && monochrome; i++ ) {
+            monochrome = pixels[i]==(isSet(i) ? FrameBuffer.WHITE : FrameBuffer.OFF);
+        }
+        byte[] paletteIndexes = monochrome ? null : new byte[pixels.length];
+        int[] colours = monochrome ? null : paletteOf(pixels, paletteIndexes);
+        if ( monochrome ) {
+            palette = null;
+            indexes = null;
+            rgb = null;
+        } else if ( colours!=null ) {
+            palette = colours;
+            indexes = paletteIndexes;
+            rgb = null;
+        } else {
+            palette = null;
+            indexes = null;
+            rgb = new byte[pixels.length * 3];
+            for ( int i=0, j=0; i<pixels.length; i++ ) {
+                rgb[j++] = (byte) FrameBuffer.redByte(pixels[i]);
+                rgb[j++] = (byte) FrameBuffer.greenByte(pixels[i]);
+                rgb[j++] = (byte) FrameBuffer.blueByte(pixels[i]);
+            }
+        }
+    }
+
+    /**
+     * Fill in each pixel's index into a palette of the distinct colours, in order of first use
+     * @return The palette, or null if there are too many colours for one
+     */
+    private static int[] paletteOf(int[] pixels, byte[] indexes) {
+        int[] colours = new int[MAX_PALETTE];
+        int count = 0;
+        int last = -1;
+        int lastIndex = 0;
+        for ( int i=0; i<pixels.length; i++ ) {
+            int pixel = pixels[i];
+            if ( pixel!=last ) {
+                int found = 0;
+                while ( found<count && colours[found]!=pixel ) {
+                    found++;
+                }
+                if ( found==count ) {
+                    if ( count==MAX_PALETTE ) {
+                        return null;
+                    }
+                    colours[count++] = pixel;
+                }
+                last = pixel;
+                lastIndex = found;
+            }
+            indexes[i] = (byte) lastIndex;
+        }
+        return Arrays.copyOf(colours, count);
+    }
+
+    private static PatternBuilder fromColours(Colour[][] colourPoints) {
+        PatternBuilder builder = new PatternBuilder(colourPoints.length, colourPoints[0].length);
         for ( int r=0; r<colourPoints.length; r++ ) {
             for ( int c=0; c<colourPoints[0].length; c++ ) {
-                colourValues[0][r][c] = colourPoints[r][c].getRed();
-                colourValues[1][r][c] = colourPoints[r][c].getGreen();
-                colourValues[2][r][c] = colourPoints[r][c].getBlue();
-                binaryValues[r][c] = ( colourValues[0][r][c]>=0.5 || colourValues[1][r][c]>=0.5 || colourValues[2][r][c]>=0.5 );
+                builder.drawPoint(r, c, colourPoints[r][c]);
             }
         }
+        return builder;
     }
 
-    public Pattern(double[][][] colourValues) {
-        this.colourValues = colourValues;
-        binaryValues = new boolean[colourValues[0].length][colourValues[0][0].length];
+    private static PatternBuilder fromColourValues(double[][][] colourValues) {
+        PatternBuilder builder = new PatternBuilder(colourValues[0].length, colourValues[0][0].length);
         for ( int r=0; r<colourValues[0].length; r++ ) {
-            for (int c = 0; c < colourValues[0][0].length; c++) {
-                binaryValues[r][c] = ( colourValues[0][r][c]>=0.5 || colourValues[1][r][c]>=0.5 || colourValues[2][r][c]>=0.5 );
+            for ( int c=0; c<colourValues[0][0].length; c++ ) {
+                builder.drawPoint(r, c, colourValues[0][r][c], colourValues[1][r][c], colourValues[2][r][c]);
             }
         }
+        return builder;
     }
 
-    public void setPenColour(Colour penColour) {
-        this.penColour = penColour;
+    static int words(int dots) {
+        return (dots + 63) / 64;
     }
 
-    public void drawPoint(int row, int col, boolean value) {
-        if ( row < getRows() && col < getCols() ) {
-            binaryValues[row][col] = value;
-            colourValues[0][row][col] = (value ? penColour.getRed() : 0);
-            colourValues[1][row][col] = (value ? penColour.getGreen() : 0);
-            colourValues[2][row][col] = (value ? penColour.getBlue() : 0);
-        }
+    private boolean isSet(int i) {
+        return (bits[i >> 6] & (1L << i))!=0;
     }
 
-    public void drawPoint(int row, int col, Colour colour) {
-        if ( row < getRows() && col < getCols() ) {
-            binaryValues[row][col] = (colour.getRed()>=0.5 || colour.getGreen()>=0.5 || colour.getBlue()>=0.5);
-            colourValues[0][row][col] = colour.getRed();
-            colourValues[1][row][col] = colour.getGreen();
-            colourValues[2][row][col] = colour.getBlue();
-        }
-    }
+
+    //////////
+    // Dots //
+    //////////
 
     public boolean getBinaryPoint(int row, int col) {
-        return binaryValues[row][col];
+        return isSet(row * cols + col);
+    }
+
+    /**
+     * @return The dot's colour packed as 0x00RRGGBB, as a FrameBuffer holds it
+     */
+    public int getPixel(int row, int col) {
+        int i = row * cols + col;
+        if ( palette!=null ) {
+            return palette[indexes[i] & 0xFF];
+        }
+        if ( rgb==null ) {
+            return isSet(i) ? FrameBuffer.WHITE : FrameBuffer.OFF;
+        }
+        int j = i * 3;
+        return ((rgb[j] & 0xFF) << 16) | ((rgb[j+1] & 0xFF) << 8) | (rgb[j+2] & 0xFF);
     }
 
     public Colour getColourPoint(int row, int col) {
-        return new Colour(colourValues[0][row][col], colourValues[1][row][col], colourValues[2][row][col]);
+        int pixel = getPixel(row, col);
+        return new Colour(FrameBuffer.red(pixel), FrameBuffer.green(pixel), FrameBuffer.blue(pixel));
+    }
+
+    /**
+     * @return Whether every lit dot is white and every other dot is off
+     */
+    public boolean isMonochrome() {
+        return palette==null && rgb==null;
     }
 
     public int getRows() {
-        return binaryValues.length;
+        return rows;
     }
 
     public int getCols() {
-        return binaryValues[0].length;
+        return cols;
     }
 
+    /**
+     * @return A new array of the binary values, built on each call
+     */
     public boolean[][] getBinaryValues() {
-        return binaryValues;
+        boolean[][] result = new boolean[rows][cols];
+        for ( int r=0; r<rows; r++ ) {
+            for ( int c=0; c<cols; c++ ) {
+                result[r][c] = getBinaryPoint(r, c);
+            }
+        }
+        return result;
     }
 
+    /**
+     * @return A new array indexed [colour(0=R,1=G,2=B)][row][col], built on each call
+     */
     public double[][][] getColourValues() {
-        return colourValues;
+        double[][][] result = new double[3][rows][cols];
+        for ( int r=0; r<rows; r++ ) {
+            for ( int c=0; c<cols; c++ ) {
+                int pixel = getPixel(r, c);
+                result[0][r][c] = FrameBuffer.red(pixel);
+                result[1][r][c] = FrameBuffer.green(pixel);
+                result[2][r][c] = FrameBuffer.blue(pixel);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Rough heap footprint of the pattern
+     */
+    public long getBytes() {
+        long bytes = 64 + bits.length * 8L;
+        if ( palette!=null ) {
+            bytes += 32 + palette.length * 4L + indexes.length;
+        }
+        if ( rgb!=null ) {
+            bytes += 16 + rgb.length;
+        }
+        return bytes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if ( this==o ) {
+            return true;
+        }
+        if ( !(o instanceof Pattern) ) {
+            return false;
+        }
+        Pattern that = (Pattern) o;
+        return rows==that.rows && cols==that.cols
+                && Arrays.equals(bits, that.bits)
+                && Arrays.equals(palette, that.palette)
+                && Arrays.equals(indexes, that.indexes)
+                && Arrays.equals(rgb, that.rgb);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 31 * rows + cols;
+        hash = 31 * hash + Arrays.hashCode(bits);
+        hash = 31 * hash + Arrays.hashCode(indexes);
+        return 31 * hash + Arrays.hashCode(rgb);
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        for ( int r=0; r<binaryValues.length; r++ ) {
+        for ( int r=0; r<rows; r++ ) {
             sb.append("\n");
-            for ( int c=0; c<binaryValues[0].length; c++ ) {
-                sb.append(binaryValues[r][c] ? "#" : "-" );
+            for ( int c=0; c<cols; c++ ) {
+                sb.append(getBinaryPoint(r, c) ? "#" : "-" );
             }
         }
 
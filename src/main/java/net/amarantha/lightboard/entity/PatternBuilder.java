@@ -0,0 +1,96 @@
+package net.amarantha.lightboard.entity;
+
+import net.amarantha.lightboard.surface.FrameBuffer;
+
+/**
+ * Draws a Pattern dot by dot. The builder holds a full colour for every dot while drawing;
+ * build() packs it down into a compact, immutable Pattern.
+ */
+public class PatternBuilder {
+
+    private final int rows;
+    private final int cols;
+
+    final long[] bits;
+    final int[] pixels;
+
+    private int pen = FrameBuffer.WHITE;
+
+    public PatternBuilder(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        bits = new long[Pattern.words(rows * cols)];
+        pixels = new int[rows * cols];
+    }
+
+    /**
+     * Start from a copy of an existing pattern
+     */
+    public PatternBuilder(Pattern pattern) {
+        this(pattern.getRows(), pattern.getCols());
+        for ( int r=0; r<rows; r++ ) {
+            for ( int c=0; c<cols; c++ ) {
+                setPoint(r, c, pattern.getBinaryPoint(r, c), pattern.getPixel(r, c));
+            }
+        }
+    }
+
+    /**
+     * Colour for dots drawn as binary values
+     */
+    public PatternBuilder setPenColour(Colour penColour) {
+        pen = FrameBuffer.pack(penColour.getRed(), penColour.getGreen(), penColour.getBlue());
+        return this;
+    }
+
+    /**
+     * Switch a dot on in the pen colour, or off. Dots outside the pattern are ignored
+     */
+    public PatternBuilder drawPoint(int row, int col, boolean value) {
+        if ( row < rows && col < cols ) {
+            setPoint(row, col, value, value ? pen : FrameBuffer.OFF);
+        }
+        return this;
+    }
+
+    /**
+     * Colour a dot, which is on if any channel is at least half bright. Dots outside the pattern
+     * are ignored
+     */
+    public PatternBuilder drawPoint(int row, int col, Colour colour) {
+        return drawPoint(row, col, colour.getRed(), colour.getGreen(), colour.getBlue());
+    }
+
+    public PatternBuilder drawPoint(int row, int col, double red, double green, double blue) {
+        if ( row < rows && col < cols ) {
+            setPoint(row, col, red>=0.5 || green>=0.5 || blue>=0.5, FrameBuffer.pack(red, green, blue));
+        }
+        return this;
+    }
+
+    /**
+     * Set a dot's binary value and packed 0x00RRGGBB colour directly, without bounds checks
+     */
+    public void setPoint(int row, int col, boolean on, int pixel) {
+        int i = row * cols + col;
+        if ( on ) {
+            bits[i >> 6] |= 1L << i;
+        } else {
+            bits[i >> 6] &= ~(1L << i);
+        }
+        pixels[i] = pixel;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public Pattern build() {
+        return new Pattern(this);
+    }
+
+}
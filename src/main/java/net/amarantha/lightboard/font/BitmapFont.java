@@ -0,0 +1,376 @@
+package net.amarantha.lightboard.font;
+
+import net.amarantha.lightboard.entity.Pattern;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A font read from a standard bitmap font file - BDF, or PC Screen Font (PSF1 or PSF2).
+ *
+ * Loading only maps the file and indexes where each character's glyph is. Glyphs are decoded
+ * into the atlas the first time some text uses them, so a large Unicode font costs next to
+ * nothing for the characters that are never shown. Characters outside the Basic Multilingual
+ * Plane are skipped.
+ *
+ * BDF glyphs are placed on a common baseline in cells the height of the font's bounding box,
+ * one column narrower than their advance to allow for the gap Font puts between characters.
+ * PSF glyphs are used as they are.
+ */
+public class BitmapFont extends Font {
+
+    private enum Format { BDF, PSF1, PSF2 }
+
+    private static final int PSF1_MAGIC = 0x0436;
+    private static final int PSF1_MODE_512 = 0x01;
+    private static final int PSF1_MODE_TABLE = 0x02;
+    private static final int PSF1_SEPARATOR = 0xFFFF;
+    private static final int PSF1_SEQUENCE = 0xFFFE;
+
+    private static final int PSF2_MAGIC = 0x864AB572;
+    private static final int PSF2_FLAG_TABLE = 0x01;
+    private static final int PSF2_SEPARATOR = 0xFF;
+    private static final int PSF2_SEQUENCE = 0xFE;
+
+    private final ByteBuffer data;
+    private final Format format;
+
+    // Sorted (character << 32 | location): a byte offset for BDF, a glyph number for PSF
+    private long[] index = new long[256];
+    private int indexed;
+
+    // PSF layout, or the BDF bounding box
+    private int glyphBase;
+    private int bytesPerGlyph;
+    private int cellWidth;
+    private int cellHeight;
+    private int ascent;
+
+    private int loaded;
+
+    private BitmapFont(ByteBuffer data) throws IOException {
+        super(true);
+        this.data = data;
+        ByteBuffer header = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if ( header.remaining() >= 4 && header.getInt(0)==PSF2_MAGIC ) {
+            format = Format.PSF2;
+            indexPsf2();
+        } else if ( header.remaining() >= 2 && (header.getShort(0) & 0xFFFF)==PSF1_MAGIC ) {
+            format = Format.PSF1;
+            indexPsf1();
+        } else if ( startsWith(0, "STARTFONT") ) {
+            format = Format.BDF;
+            indexBdf();
+        } else {
+            throw new IOException("Not a BDF or PSF font");
+        }
+        index = Arrays.copyOf(index, indexed);
+        Arrays.sort(index);
+    }
+
+    public static BitmapFont load(String path) throws IOException {
+        return load(Paths.get(path));
+    }
+
+    public static BitmapFont load(Path path) throws IOException {
+        try ( FileChannel channel = FileChannel.open(path, StandardOpenOption.READ) ) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new BitmapFont(data);
+        }
+    }
+
+    /**
+     * @return How many characters the file has glyphs for
+     */
+    public int getGlyphCount() {
+        return index.length;
+    }
+
+    /**
+     * @return How many glyphs have been decoded so far
+     */
+    public synchronized int getLoadedCount() {
+        return loaded;
+    }
+
+    @Override
+    protected synchronized Pattern loadGlyph(char key) {
+        int found = find(key);
+        if ( found < 0 ) {
+            return null;
+        }
+        Pattern pattern = format==Format.BDF ? decodeBdf(found) : decodePsf(found);
+        if ( pattern!=null ) {
+            loaded++;
+        }
+        return pattern;
+    }
+
+
+    ///////////
+    // Index //
+    ///////////
+
+    private void addToIndex(int character, int location) {
+        if ( character < 0 || character > Character.MAX_VALUE ) {
+            return;
+        }
+        if ( indexed==index.length ) {
+            index = Arrays.copyOf(index, indexed * 2);
+        }
+        index[indexed++] = ((long) character << 32) | (location & 0xFFFFFFFFL);
+    }
+
+    private int find(char key) {
+        int low = 0;
+        int high = index.length - 1;
+        while ( low <= high ) {
+            int mid = (low + high) >>> 1;
+            int character = (int) (index[mid] >>> 32);
+            if ( character < key ) {
+                low = mid + 1;
+            } else if ( character > key ) {
+                high = mid - 1;
+            } else {
+                return (int) index[mid];
+            }
+        }
+        return -1;
+    }
+
+
+    /////////
+    // PSF //
+    /////////
+
+    private void indexPsf1() throws IOException {
+        int mode = data.get(2) & 0xFF;
+        int glyphs = (mode & PSF1_MODE_512)!=0 ? 512 : 256;
+        cellWidth = 8;
+        cellHeight = data.get(3) & 0xFF;
+        bytesPerGlyph = cellHeight;
+        glyphBase = 4;
+        int table = glyphBase + glyphs * bytesPerGlyph;
+        checkSize(table);
+        if ( (mode & PSF1_MODE_TABLE)==0 ) {
+            indexByPosition(glyphs);
+            return;
+        }
+        ByteBuffer buffer = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(table);
+        for ( int glyph=0; glyph<glyphs && buffer.remaining() >= 2; glyph++ ) {
+            boolean sequence = false;
+            while ( buffer.remaining() >= 2 ) {
+                int value = buffer.getShort() & 0xFFFF;
+                if ( value==PSF1_SEPARATOR ) {
+                    break;
+                } else if ( value==PSF1_SEQUENCE ) {
+                    sequence = true;
+                } else if ( !sequence ) {
+                    addToIndex(value, glyph);
+                }
+            }
+        }
+    }
+
+    private void indexPsf2() throws IOException {
+        ByteBuffer header = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        checkSize(32);
+        glyphBase = header.getInt(8);
+        int flags = header.getInt(12);
+        int glyphs = header.getInt(16);
+        bytesPerGlyph = header.getInt(20);
+        cellHeight = header.getInt(24);
+        cellWidth = header.getInt(28);
+        int table = glyphBase + glyphs * bytesPerGlyph;
+        checkSize(table);
+        if ( (flags & PSF2_FLAG_TABLE)==0 ) {
+            indexByPosition(glyphs);
+            return;
+        }
+        int position = table;
+        int limit = data.limit();
+        for ( int glyph=0; glyph<glyphs && position<limit; glyph++ ) {
+            boolean sequence = false;
+            while ( position < limit ) {
+                int b = data.get(position) & 0xFF;
+                if ( b==PSF2_SEPARATOR ) {
+                    position++;
+                    break;
+                } else if ( b==PSF2_SEQUENCE ) {
+                    sequence = true;
+                    position++;
+                } else {
+                    int length = b < 0x80 ? 1 : b < 0xE0 ? 2 : b < 0xF0 ? 3 : 4;
+                    if ( !sequence && position + length <= limit ) {
+                        byte[] utf8 = new byte[length];
+                        for ( int i=0; i<length; i++ ) {
+                            utf8[i] = data.get(position + i);
+                        }
+                        addToIndex(new String(utf8, StandardCharsets.UTF_8).codePointAt(0), glyph);
+                    }
+                    position += length;
+                }
+            }
+        }
+    }
+
+    private void indexByPosition(int glyphs) {
+        for ( int glyph=0; glyph<glyphs; glyph++ ) {
+            addToIndex(glyph, glyph);
+        }
+    }
+
+    private Pattern decodePsf(int glyph) {
+        int rowBytes = (cellWidth + 7) / 8;
+        int start = glyphBase + glyph * bytesPerGlyph;
+        boolean[][] bits = new boolean[cellHeight][cellWidth];
+        for ( int r=0; r<cellHeight; r++ ) {
+            for ( int c=0; c<cellWidth; c++ ) {
+                int b = data.get(start + r * rowBytes + c / 8);
+                bits[r][c] = (b & (0x80 >> (c % 8)))!=0;
+            }
+        }
+        return new Pattern(bits);
+    }
+
+
+    /////////
+    // BDF //
+    /////////
+
+    private void indexBdf() throws IOException {
+        int position = 0;
+        int limit = data.limit();
+        int charStart = -1;
+        boolean boundingBox = false;
+        while ( position < limit ) {
+            int end = lineEnd(position);
+            if ( startsWith(position, "STARTCHAR") ) {
+                charStart = position;
+            } else if ( startsWith(position, "ENCODING") && charStart>=0 ) {
+                int[] values = numbers(position, end, 1);
+                addToIndex(values[0], charStart);
+                charStart = -1;
+            } else if ( startsWith(position, "FONTBOUNDINGBOX") ) {
+                int[] values = numbers(position, end, 4);
+                cellHeight = values[1];
+                ascent = values[1] + values[3];
+                boundingBox = true;
+            }
+            position = end + 1;
+        }
+        if ( !boundingBox ) {
+            throw new IOException("BDF font has no FONTBOUNDINGBOX");
+        }
+    }
+
+    private Pattern decodeBdf(int position) {
+        int advance = 0;
+        int[] box = null;
+        int limit = data.limit();
+        while ( position < limit ) {
+            int end = lineEnd(position);
+            if ( startsWith(position, "DWIDTH") ) {
+                advance = numbers(position, end, 1)[0];
+            } else if ( startsWith(position, "BBX") ) {
+                box = numbers(position, end, 4);
+            } else if ( startsWith(position, "BITMAP") ) {
+                position = end + 1;
+                break;
+            } else if ( startsWith(position, "ENDCHAR") ) {
+                return null;
+            }
+            position = end + 1;
+        }
+        if ( box==null ) {
+            return null;
+        }
+        int width = box[0];
+        int height = box[1];
+        int left = Math.max(0, box[2]);
+        int top = ascent - (height + box[3]);
+        boolean[][] bits = new boolean[Math.max(1, cellHeight)][Math.max(1, Math.max(advance - 1, left + width))];
+        for ( int r=0; r<height && position<limit; r++ ) {
+            int end = lineEnd(position);
+            int row = top + r;
+            if ( row>=0 && row<bits.length ) {
+                for ( int c=0; c<width; c++ ) {
+                    int digit = position + c / 4;
+                    if ( digit < end && (Character.digit(data.get(digit), 16) & (0x8 >> (c % 4)))!=0 ) {
+                        bits[row][left + c] = true;
+                    }
+                }
+            }
+            position = end + 1;
+        }
+        return new Pattern(bits);
+    }
+
+
+    ///////////
+    // Bytes //
+    ///////////
+
+    private void checkSize(int size) throws IOException {
+        if ( size > data.limit() ) {
+            throw new IOException("PSF font is truncated");
+        }
+    }
+
+    private int lineEnd(int position) {
+        int limit = data.limit();
+        while ( position < limit && data.get(position)!='\n' ) {
+            position++;
+        }
+        return position;
+    }
+
+    private boolean startsWith(int position, String keyword) {
+        if ( position + keyword.length() > data.limit() ) {
+            return false;
+        }
+        for ( int i=0; i<keyword.length(); i++ ) {
+            if ( data.get(position + i)!=keyword.charAt(i) ) {
+                return false;
+            }
+        }
+        int next = position + keyword.length();
+        return next==data.limit() || data.get(next)<=' ';
+    }
+
+    /**
+     * The first count whitespace-separated integers after the keyword on the line
+     */
+    private int[] numbers(int position, int end, int count) {
+        int[] result = new int[count];
+        while ( position < end && data.get(position) > ' ' ) {
+            position++;
+        }
+        for ( int n=0; n<count; n++ ) {
+            while ( position < end && data.get(position) <= ' ' ) {
+                position++;
+            }
+            boolean negative = position < end && data.get(position)=='-';
+            if ( negative ) {
+                position++;
+            }
+            int value = 0;
+            while ( position < end && data.get(position) >= '0' && data.get(position) <= '9' ) {
+                value = value * 10 + (data.get(position) - '0');
+                position++;
+            }
+            result[n] = negative ? -value : value;
+        }
+        return result;
+    }
+
+}
@@ -2,184 +2,399 @@ package net.amarantha.lightboard.font;
 
 import net.amarantha.lightboard.entity.AlignH;
 import net.amarantha.lightboard.entity.Colour;
+import net.amarantha.lightboard.entity.Markup;
+import net.amarantha.lightboard.entity.Markup.Token;
+import net.amarantha.lightboard.entity.Markup.Type;
 import net.amarantha.lightboard.entity.Pattern;
+import net.amarantha.lightboard.entity.PatternBuilder;
 
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import static net.amarantha.lightboard.entity.AlignH.*;
 
 public class Font {
 
-    public final static char NL = '\n';
-    public final static char OPEN_TAG = '{';
-    public final static char CLOSE_TAG = '}';
+    public final static char NL = Markup.NL;
+    public final static char OPEN_TAG = Markup.OPEN_TAG;
+    public final static char CLOSE_TAG = Markup.CLOSE_TAG;
 
     private Map<Character, Pattern> chars = new HashMap<>();
 
+    private final boolean lazy;
+    private BitSet tried;
+
+    public Font() {
+        this(false);
+    }
+
+    /**
+     * @param lazy Ask loadGlyph() for any character that hasn't been registered, the first time
+     *             some text needs it
+     */
+    protected Font(boolean lazy) {
+        this.lazy = lazy;
+    }
+
     public final void registerPattern(char key, boolean[][] bits) {
         registerPattern(key, new Pattern(bits));
     }
 
-    public final void registerPattern(char key, Pattern pattern) {
+    public final synchronized void registerPattern(char key, Pattern pattern) {
+        addGlyph(key, pattern);
+        face = null;
+    }
+
+    private void addGlyph(char key, Pattern pattern) {
         chars.put(key, pattern);
+        if ( atlas!=null ) {
+            atlas = atlas.append(key, pattern);
+        }
     }
 
     public final Pattern getPattern(char key) {
-        return chars.get(key);
+        loadGlyph(getAtlas(), key);
+        synchronized (this) {
+            return chars.get(key);
+        }
     }
 
     public final int getHeight(char key) {
-        Pattern c = getPattern(key);
-        if ( c!=null ) {
-            return c.getRows();
+        loadGlyph(getAtlas(), key);
+        GlyphAtlas glyphs = getAtlas();
+        int glyph = glyphs.getGlyph(key);
+        if ( glyph>=0 ) {
+            return glyphs.getHeight(glyph);
         }
         return 0;
     }
 
     public final int getWidth(char key) {
-        Pattern c = getPattern(key);
-        if ( c!=null ) {
-            return c.getCols();
+        loadGlyph(getAtlas(), key);
+        GlyphAtlas glyphs = getAtlas();
+        int glyph = glyphs.getGlyph(key);
+        if ( glyph>=0 ) {
+            return glyphs.getWidth(glyph);
         }
         return 0;
     }
 
     public final int getStringWidth(String str) {
+        return getStringWidth(new Markup(str));
+    }
+
+    public final int getStringHeight(String str) {
+        return getStringHeight(new Markup(str));
+    }
+
+    /**
+     * Every character takes its width plus a one column gap, except the very last character of
+     * the text, so a line that ends in a line break keeps its trailing gap
+     */
+    public final int getStringWidth(Markup markup) {
+        loadGlyphs(markup);
+        GlyphAtlas glyphs = getAtlas();
         int width = 0;
         int rowWidth = 0;
-        boolean inTag = false;
-        if ( str!=null ) {
-            for (int i = 0; i < str.length(); i++) {
-                char c = str.charAt(i);
-                if (inTag) {
-                    if (c == CLOSE_TAG) {
-                        inTag = false;
-                    }
-                } else {
-                    if (c == OPEN_TAG) {
-                        inTag = true;
-                    } else {
-                        if (i == str.length() - 1) {
-                            rowWidth += getWidth(c);
-                            width = Math.max(rowWidth, width);
-                        } else if (c == NL) {
-                            width = Math.max(rowWidth, width);
-                            rowWidth = 0;
-                        } else {
-                            rowWidth += getWidth(c) + 1;
-                        }
-                    }
-                }
+        for ( Token token : markup.getTokens() ) {
+            if ( token.getType()==Type.TEXT ) {
+                rowWidth += getAdvance(glyphs, token.getText());
+            } else if ( token.getType()==Type.LINE ) {
+                width = Math.max(width, rowWidth);
+                rowWidth = 0;
             }
         }
-        return width;
+        return Math.max(width, lastLineWidth(rowWidth));
     }
 
-    public final int getStringHeight(String str) {
+    public final int getStringHeight(Markup markup) {
+        loadGlyphs(markup);
+        GlyphAtlas glyphs = getAtlas();
         int height = 0;
         int rowHeight = 0;
-        boolean inTag = false;
-        if ( str!=null ) {
-            for (int i = 0; i < str.length(); i++) {
-                char c = str.charAt(i);
-                if (inTag) {
-                    if (c == CLOSE_TAG) {
-                        inTag = false;
-                    }
-                } else {
-                    if (c == OPEN_TAG) {
-                        inTag = true;
-                    } else {
-                        rowHeight = Math.max(rowHeight, getHeight(c));
-                        if (i == str.length() - 1) {
-                            height += rowHeight;
-                        } else if (c == NL) {
-                            height += rowHeight;
-                            rowHeight = 0;
-                        }
-                    }
-                }
+        for ( Token token : markup.getTokens() ) {
+            if ( token.getType()==Type.TEXT ) {
+                rowHeight = Math.max(rowHeight, getHeight(glyphs, token.getText()));
+            } else if ( token.getType()==Type.LINE ) {
+                height += rowHeight;
+                rowHeight = 0;
+            }
+        }
+        return height + rowHeight;
+    }
+
+    private static int getAdvance(GlyphAtlas glyphs, String text) {
+        int advance = 0;
+        for ( int i=0; i<text.length(); i++ ) {
+            int glyph = glyphs.getGlyph(text.charAt(i));
+            advance += ( glyph>=0 ? glyphs.getWidth(glyph) : 0 ) + 1;
+        }
+        return advance;
+    }
+
+    private static int getHeight(GlyphAtlas glyphs, String text) {
+        int height = 0;
+        for ( int i=0; i<text.length(); i++ ) {
+            int glyph = glyphs.getGlyph(text.charAt(i));
+            if ( glyph>=0 ) {
+                height = Math.max(height, glyphs.getHeight(glyph));
             }
         }
         return height;
     }
 
+    private static int lastLineWidth(int advance) {
+        return advance > 0 ? advance - 1 : 0;
+    }
+
     public final Pattern renderString(String str) {
         return renderString(str, LEFT);
     }
 
     public final Pattern renderString(String str, AlignH align) {
-        if ( str==null || str.isEmpty() ) {
+        return renderString(new Markup(str), align);
+    }
+
+    /**
+     * Render the text, with each line aligned within the widest. Pen colours last until the end of
+     * the line; until a line's first tag its glyphs are drawn in their own colours
+     */
+    public final Pattern renderString(Markup markup, AlignH align) {
+        if ( markup.isEmpty() ) {
             return new Pattern(1,1);
         }
-        int cols = getStringWidth(str);
-        int rows = getStringHeight(str);
-        Pattern result = new Pattern(rows, cols);
-        String[] lines = str.split("\n");
-        if ( lines.length==1 ) {
-            int cursorX = 0;
-            boolean inTag = false;
-            boolean penMode = false;
-            String tag = "";
-            for ( int c=0; c<str.length(); c++ ) {
-                char chr = str.charAt(c);
-                if ( inTag ) {
-                    if ( chr==CLOSE_TAG ) {
-                        if ( "red".equals(tag) ) {
-                            result.setPenColour(new Colour(1.0,0.0,0.0));
-                        } else if ( "green".equals(tag) ) {
-                            result.setPenColour(new Colour(0.0,1.0,0.0));
-                        } else if ( "yellow".equals(tag) ) {
-                            result.setPenColour(new Colour(1.0,1.0,0.0));
+        loadGlyphs(markup);
+        GlyphAtlas glyphs = getAtlas();
+
+        // Measure every line in one pass
+        int[] advances = new int[markup.getLineCount()];
+        int[] heights = new int[markup.getLineCount()];
+        int line = 0;
+        for ( Token token : markup.getTokens() ) {
+            if ( token.getType()==Type.TEXT ) {
+                advances[line] += getAdvance(glyphs, token.getText());
+                heights[line] = Math.max(heights[line], getHeight(glyphs, token.getText()));
+            } else if ( token.getType()==Type.LINE ) {
+                line++;
+            }
+        }
+        int last = advances.length - 1;
+        int cols = lastLineWidth(advances[last]);
+        int rows = 0;
+        for ( int l=0; l<=last; l++ ) {
+            if ( l < last ) {
+                cols = Math.max(cols, advances[l]);
+            }
+            rows += heights[l];
+        }
+
+        int lines = markup.getRenderedLineCount();
+        if ( lines==0 ) {
+            return new Pattern(rows, cols);
+        }
+        PatternBuilder result = new PatternBuilder(rows, cols);
+        line = 0;
+        int cursorY = 0;
+        int left = getLineLeft(align, lines, cols, advances[0]);
+        int cursorX = left;
+        Colour pen = null;
+        for ( Token token : markup.getTokens() ) {
+            switch ( token.getType() ) {
+                case TEXT:
+                    int clipRight = Math.min(cols, left + lastLineWidth(advances[line]));
+                    int clipBottom = Math.min(rows, cursorY + heights[line]);
+                    String text = token.getText();
+                    for ( int i=0; i<text.length(); i++ ) {
+                        int glyph = glyphs.getGlyph(text.charAt(i));
+                        if ( glyph>=0 ) {
+                            glyphs.draw(glyph, result, cursorX, cursorY, clipRight, clipBottom, pen);
+                            cursorX += glyphs.getWidth(glyph) + 1;
                         }
-                        tag = "";
-                        inTag = false;
-                    } else {
-                        tag += chr;
                     }
-                } else {
-                    if ( chr==OPEN_TAG ) {
-                        inTag = true;
-                        penMode = true;
-                    } else {
-                        Pattern pattern = getPattern(chr);
-                        if (pattern != null) {
-                            for (int row = 0; row < pattern.getRows(); row++) {
-                                for (int col = 0; col < pattern.getCols(); col++) {
-                                    if ( penMode ) {
-                                        result.drawPoint(row, col + cursorX, pattern.getBinaryPoint(row, col));
-                                    } else {
-                                        result.drawPoint(row, col + cursorX, pattern.getColourPoint(row, col));
-                                    }
-                                }
-                            }
-                            cursorX += getWidth(chr) + 1;
-                        }
+                    break;
+                case PEN:
+                    if ( token.getPen()!=null ) {
+                        pen = token.getPen();
+                    } else if ( pen==null ) {
+                        pen = Markup.WHITE_PEN;
+                    }
+                    break;
+                case LINE:
+                    cursorY += heights[line];
+                    line++;
+                    if ( line==lines ) {
+                        return result.build();
+                    }
+                    left = getLineLeft(align, lines, cols, advances[line]);
+                    cursorX = left;
+                    pen = null;
+                    break;
+            }
+        }
+        return result.build();
+    }
+
+    /**
+     * A single line is never aligned, even if a line break after it has made the text wider
+     */
+    private static int getLineLeft(AlignH align, int lines, int cols, int advance) {
+        if ( lines==1 ) {
+            return 0;
+        }
+        if ( align==RIGHT ) {
+            return cols - lastLineWidth(advance);
+        } else if ( align==CENTRE ) {
+            return ( cols - lastLineWidth(advance) ) / 2;
+        }
+        return 0;
+    }
+
+
+    ///////////
+    // Atlas //
+    ///////////
+
+    private volatile GlyphAtlas atlas;
+
+    /**
+     * The glyphs rasterised into one bitmap - built on first use, then added to as glyphs are
+     * registered
+     */
+    public final GlyphAtlas getAtlas() {
+        GlyphAtlas result = atlas;
+        if ( result==null ) {
+            synchronized (this) {
+                result = atlas;
+                if ( result==null ) {
+                    result = new GlyphAtlas(chars);
+                    atlas = result;
+                }
+            }
+        }
+        return result;
+    }
+
+
+    //////////
+    // Face //
+    //////////
+
+    // Every face in use, so that fonts with the same glyphs find the same one
+    private static final Map<Face, WeakReference<Face>> FACES = new WeakHashMap<>();
+
+    private volatile Object face;
+
+    /**
+     * What the font draws, as one object compared by reference - the same for every font of the
+     * same class given the same glyphs, and replaced whenever a glyph is registered. Glyphs a
+     * lazy font loads for itself don't change it, as they never change how any other text looks
+     */
+    public final Object getFace() {
+        Object result = face;
+        if ( result==null ) {
+            synchronized (this) {
+                result = face;
+                if ( result==null ) {
+                    result = lazy ? new Object() : intern(new Face(getClass(), new HashMap<>(chars)));
+                    face = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Face intern(Face face) {
+        synchronized (FACES) {
+            WeakReference<Face> existing = FACES.get(face);
+            Face found = existing==null ? null : existing.get();
+            if ( found!=null ) {
+                return found;
+            }
+            FACES.put(face, new WeakReference<>(face));
+            return face;
+        }
+    }
+
+    private static class Face {
+
+        private final Class<?> type;
+        private final Map<Character, Pattern> glyphs;
+        private final int hash;
+
+        private Face(Class<?> type, Map<Character, Pattern> glyphs) {
+            this.type = type;
+            this.glyphs = glyphs;
+            hash = 31 * type.hashCode() + glyphs.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if ( this==o ) {
+                return true;
+            }
+            if ( !(o instanceof Face) ) {
+                return false;
+            }
+            Face that = (Face) o;
+            return hash==that.hash && type==that.type && glyphs.equals(that.glyphs);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+
+    /////////////////
+    // Lazy Glyphs //
+    /////////////////
+
+    /**
+     * Lazy fonts override this to supply glyphs as they are first needed. It is asked at most
+     * once for each character
+     * @return The glyph for the character, or null if the font doesn't have one
+     */
+    protected Pattern loadGlyph(char key) {
+        return null;
+    }
+
+    /**
+     * Make sure every glyph in the text that the font can supply is in the atlas
+     */
+    private void loadGlyphs(Markup markup) {
+        if ( lazy ) {
+            GlyphAtlas glyphs = getAtlas();
+            for ( Token token : markup.getTokens() ) {
+                if ( token.getType()==Type.TEXT ) {
+                    String text = token.getText();
+                    for ( int i=0; i<text.length(); i++ ) {
+                        loadGlyph(glyphs, text.charAt(i));
                     }
                 }
             }
-        } else {
-            int cursorY = 0;
-            for (int l = 0; l < lines.length; l++) {
-                String line = lines[l];
-                int cursorX = 0;
-                if ( align== RIGHT ) {
-                    cursorX = cols - getStringWidth(line);
-                } else if ( align==CENTRE ) {
-                    cursorX = ( cols - getStringWidth(line) ) / 2;
+        }
+    }
+
+    private void loadGlyph(GlyphAtlas glyphs, char key) {
+        if ( lazy && glyphs.getGlyph(key) < 0 ) {
+            synchronized (this) {
+                if ( tried==null ) {
+                    tried = new BitSet();
                 }
-                int lineHeight = getStringHeight(line);
-                Pattern pattern = renderString(line);
-                for ( int row=0; row<pattern.getRows(); row++ ) {
-                    for ( int col=0; col<pattern.getCols(); col++ ) {
-                        result.drawPoint(row + cursorY, col + cursorX, pattern.getColourPoint(row, col));
+                if ( !tried.get(key) && !chars.containsKey(key) ) {
+                    tried.set(key);
+                    Pattern pattern = loadGlyph(key);
+                    if ( pattern!=null ) {
+                        addGlyph(key, pattern);
                     }
                 }
-                cursorY += lineHeight;
             }
         }
-        return result;
     }
 
 }
@@ -0,0 +1,207 @@
+package net.amarantha.lightboard.font;
+
+import net.amarantha.lightboard.entity.Colour;
+import net.amarantha.lightboard.entity.Pattern;
+import net.amarantha.lightboard.entity.PatternBuilder;
+import net.amarantha.lightboard.surface.FrameBuffer;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Every glyph of a Font rasterised once into a single packed bitmap, each glyph's rows one after
+ * another, with tables of where each glyph sits and how big it is.
+ *
+ * Drawing a glyph is then a walk over its bits straight into the target pattern, with no lookups
+ * or allocation per pixel. Glyphs that carry colour of their own, rather than plain on and off,
+ * are copied from their Pattern instead.
+ *
+ * Glyphs added later are appended: the new atlas shares the tables and bitmap of the one before,
+ * which never looks past its own glyphs, so only the new glyph is rasterised. Characters are
+ * found through a two level index, so a few glyphs high in Unicode only need the pages they are on.
+ */
+public class GlyphAtlas {
+
+    private static final int NONE = -1;
+
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGES = (Character.MAX_VALUE >> PAGE_BITS) + 1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    // Each entry is the glyph number plus one, so that zero - and a page not yet seen - is none
+    private int[][] pages;
+
+    private int count;
+    private int[] offsets;
+    private int[] widths;
+    private int[] heights;
+    private Pattern[] coloured;
+
+    private int used;
+    private long[] bits;
+
+    private boolean appended;
+
+    GlyphAtlas(Map<Character, Pattern> chars) {
+        pages = new int[PAGES][];
+        int capacity = Math.max(MIN_CAPACITY, chars.size());
+        offsets = new int[capacity];
+        widths = new int[capacity];
+        heights = new int[capacity];
+        coloured = new Pattern[capacity];
+        int area = 0;
+        for ( Pattern pattern : chars.values() ) {
+            area += pattern.getRows() * pattern.getCols();
+        }
+        bits = new long[Math.max(1, (area + 63) / 64)];
+        for ( Map.Entry<Character, Pattern> entry : chars.entrySet() ) {
+            add(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private GlyphAtlas(GlyphAtlas previous) {
+        pages = previous.pages;
+        count = previous.count;
+        offsets = previous.offsets;
+        widths = previous.widths;
+        heights = previous.heights;
+        coloured = previous.coloured;
+        used = previous.used;
+        bits = previous.bits;
+    }
+
+    /**
+     * @return A new atlas with the glyph added, replacing any the character already had. This
+     * atlas is left exactly as it was
+     */
+    GlyphAtlas append(char key, Pattern pattern) {
+        GlyphAtlas result = new GlyphAtlas(this);
+        if ( appended || getGlyph(key)!=NONE ) {
+            // Whatever is past our glyphs, or the character's entry, is in use by another atlas
+            result.copyTables();
+        }
+        appended = true;
+        result.add(key, pattern);
+        return result;
+    }
+
+    private void add(char key, Pattern pattern) {
+        int rows = pattern.getRows();
+        int cols = pattern.getCols();
+        if ( count==offsets.length ) {
+            int capacity = count * 2;
+            offsets = Arrays.copyOf(offsets, capacity);
+            widths = Arrays.copyOf(widths, capacity);
+            heights = Arrays.copyOf(heights, capacity);
+            coloured = Arrays.copyOf(coloured, capacity);
+        }
+        int needed = (used + rows * cols + 63) / 64;
+        if ( needed > bits.length ) {
+            bits = Arrays.copyOf(bits, Math.max(needed, bits.length * 2));
+        }
+
+        int glyph = count;
+        offsets[glyph] = used;
+        widths[glyph] = cols;
+        heights[glyph] = rows;
+        coloured[glyph] = pattern.isMonochrome() ? null : pattern;
+        for ( int row=0; row<rows; row++ ) {
+            for ( int col=0; col<cols; col++ ) {
+                if ( pattern.getBinaryPoint(row, col) ) {
+                    int bit = used + row * cols + col;
+                    bits[bit >> 6] |= 1L << bit;
+                }
+            }
+        }
+        used += rows * cols;
+
+        int page = key >> PAGE_BITS;
+        if ( pages[page]==null ) {
+            pages[page] = new int[PAGE_SIZE];
+        }
+        pages[page][key & (PAGE_SIZE - 1)] = glyph + 1;
+        count++;
+    }
+
+    private void copyTables() {
+        pages = pages.clone();
+        for ( int page=0; page<PAGES; page++ ) {
+            if ( pages[page]!=null ) {
+                pages[page] = pages[page].clone();
+            }
+        }
+        offsets = offsets.clone();
+        widths = widths.clone();
+        heights = heights.clone();
+        coloured = coloured.clone();
+        bits = bits.clone();
+    }
+
+
+    ////////////
+    // Glyphs //
+    ////////////
+
+    /**
+     * @return Index of the glyph for the character, or -1 if the font doesn't have one
+     */
+    public int getGlyph(char key) {
+        int[] page = pages[key >> PAGE_BITS];
+        if ( page==null ) {
+            return NONE;
+        }
+        // Anything newer belongs to a later atlas
+        int glyph = page[key & (PAGE_SIZE - 1)] - 1;
+        return glyph < count ? glyph : NONE;
+    }
+
+    public int getGlyphCount() {
+        return count;
+    }
+
+    public int getWidth(int glyph) {
+        return widths[glyph];
+    }
+
+    public int getHeight(int glyph) {
+        return heights[glyph];
+    }
+
+    public boolean isOn(int glyph, int row, int col) {
+        int bit = offsets[glyph] + row * widths[glyph] + col;
+        return (bits[bit >> 6] & (1L << bit))!=0;
+    }
+
+    /**
+     * Draw the glyph with its top-left corner at (left, top), every pixel of it, but nothing at or
+     * beyond the clip column and row
+     * @param pen Colour for lit pixels, or null to draw the glyph's own colours
+     */
+    void draw(int glyph, PatternBuilder target, int left, int top, int clipRight, int clipBottom, Colour pen) {
+        int rows = Math.min(heights[glyph], clipBottom - top);
+        int cols = Math.min(widths[glyph], clipRight - left);
+        Pattern source = pen==null ? coloured[glyph] : null;
+        int penPixel = pen==null ? FrameBuffer.WHITE : FrameBuffer.pack(pen.getRed(), pen.getGreen(), pen.getBlue());
+        for ( int row=0; row<rows; row++ ) {
+            int y = top + row;
+            if ( source!=null ) {
+                for ( int col=0; col<cols; col++ ) {
+                    int pixel = source.getPixel(row, col);
+                    target.setPoint(y, left + col, FrameBuffer.isOn(pixel), pixel);
+                }
+                continue;
+            }
+            int bit = offsets[glyph] + row * widths[glyph];
+            for ( int col=0; col<cols; col++, bit++ ) {
+                if ( (bits[bit >> 6] & (1L << bit))!=0 ) {
+                    target.setPoint(y, left + col, true, penPixel);
+                } else {
+                    target.setPoint(y, left + col, false, FrameBuffer.OFF);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+package net.amarantha.lightboard.font;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import net.amarantha.lightboard.entity.AlignH;
+import net.amarantha.lightboard.entity.Markup;
+import net.amarantha.lightboard.utility.LightBoardProperties;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Rendered text shared by every zone in the process, keyed by font, text and alignment, and
+ * bounded by an estimate of the memory it holds - the least recently used text goes first.
+ *
+ * Fonts are matched by their face rather than by instance, so the many separate copies of the
+ * same font that zones create all share the same entries, and a lazy font loading more glyphs
+ * leaves what it has already rendered in place.
+ */
+@Singleton
+public class RenderCache {
+
+    private static final long KILOBYTE = 1024;
+
+    private final long maxBytes;
+    private final Map<Key, RenderedText> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    @Inject
+    public RenderCache(LightBoardProperties props) {
+        this(props.getRenderCacheKilobytes() * KILOBYTE);
+    }
+
+    public RenderCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Text rendered exactly as Font.renderString would, from the cache where possible - the
+     * markup is only parsed if the text has to be rendered
+     */
+    public RenderedText render(Font font, String text, AlignH align) {
+        return render(font, text, null, align);
+    }
+
+    public RenderedText render(Font font, Markup markup, AlignH align) {
+        return render(font, markup.getText(), markup, align);
+    }
+
+    private RenderedText render(Font font, String text, Markup markup, AlignH align) {
+        Key key = new Key(font.getFace(), text, align);
+        synchronized (this) {
+            RenderedText cached = entries.get(key);
+            if ( cached!=null ) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        RenderedText rendered = new RenderedText(font, markup!=null ? markup : new Markup(text), align);
+        long size = rendered.getBytes();
+        if ( size > maxBytes ) {
+            return rendered;
+        }
+        synchronized (this) {
+            RenderedText previous = entries.put(key, rendered);
+            if ( previous!=null ) {
+                bytes -= previous.getBytes();
+            }
+            bytes += size;
+            Iterator<RenderedText> oldest = entries.values().iterator();
+            while ( bytes > maxBytes ) {
+                bytes -= oldest.next().getBytes();
+                oldest.remove();
+                evictions++;
+            }
+        }
+        return rendered;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+
+    ///////////
+    // Stats //
+    ///////////
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private static class Key {
+
+        private final Object face;
+        private final String text;
+        private final AlignH align;
+        private final int hash;
+
+        private Key(Object face, String text, AlignH align) {
+            this.face = face;
+            this.text = text;
+            this.align = align;
+            hash = Objects.hash(System.identityHashCode(face), text, align);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if ( this==o ) {
+                return true;
+            }
+            if ( !(o instanceof Key) ) {
+                return false;
+            }
+            Key that = (Key) o;
+            return hash==that.hash && align==that.align && face==that.face && Objects.equals(text, that.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+}
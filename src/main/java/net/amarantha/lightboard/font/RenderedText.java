@@ -0,0 +1,61 @@
+package net.amarantha.lightboard.font;
+
+import net.amarantha.lightboard.entity.AlignH;
+import net.amarantha.lightboard.entity.Markup;
+import net.amarantha.lightboard.entity.Pattern;
+import net.amarantha.lightboard.surface.FrameBuffer;
+
+/**
+ * A string rendered in a font, with its measurements, as held by the RenderCache.
+ *
+ * The same instance is handed to every zone showing that text, so neither the pattern nor the
+ * frame may be drawn into.
+ */
+public class RenderedText {
+
+    private final Pattern pattern;
+    private final FrameBuffer frame;
+    private final int width;
+    private final int height;
+
+    RenderedText(Font font, Markup markup, AlignH align) {
+        pattern = font.renderString(markup, align);
+        frame = pattern.getRows() > 0 ? FrameBuffer.fromPattern(pattern) : null;
+        width = font.getStringWidth(markup);
+        height = font.getStringHeight(markup);
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return The rendered text packed ready to blit, or null if nothing in it can be seen
+     */
+    public FrameBuffer getFrame() {
+        return frame;
+    }
+
+    /**
+     * Width of the text as measured by Font.getStringWidth
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Height of the text as measured by Font.getStringHeight
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Rough heap footprint of the rendered pattern and frame
+     */
+    public long getBytes() {
+        long pixels = (long) pattern.getRows() * pattern.getCols();
+        return 64 + pattern.getBytes() + (frame==null ? 0 : pixels * 4);
+    }
+
+}
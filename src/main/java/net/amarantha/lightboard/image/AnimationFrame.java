@@ -0,0 +1,29 @@
+package net.amarantha.lightboard.image;
+
+import net.amarantha.lightboard.entity.Pattern;
+
+/**
+ * One frame of an animation, scaled for the board, and how long to show it for
+ */
+public class AnimationFrame {
+
+    private final Pattern pattern;
+    private final int delay;
+
+    public AnimationFrame(Pattern pattern, int delay) {
+        this.pattern = pattern;
+        this.delay = delay;
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return Milliseconds to show the frame for
+     */
+    public int getDelay() {
+        return delay;
+    }
+
+}
@@ -0,0 +1,40 @@
+package net.amarantha.lightboard.image;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The frames of an animation, read one at a time from the first onwards, at their own size
+ */
+public interface AnimationSource extends Closeable {
+
+    /**
+     * @return The next frame, or null after the last. The image may be reused by the next call
+     */
+    BufferedImage next() throws IOException;
+
+    /**
+     * @return How long the frame last returned should be shown, in milliseconds
+     */
+    int getDelay();
+
+    /**
+     * Go back to the first frame
+     */
+    void restart() throws IOException;
+
+    /**
+     * @param path An animated GIF, or a numbered image sequence as a format pattern such as
+     *             "frames/walk%03d.png" - numbered from 0 or 1
+     * @param sequenceDelay Milliseconds to show each image of a sequence for
+     */
+    static AnimationSource open(String path, int sequenceDelay) throws IOException {
+        if ( path.contains("%") ) {
+            return new SequenceSource(path, sequenceDelay);
+        }
+        return new GifSource(new File(path));
+    }
+
+}
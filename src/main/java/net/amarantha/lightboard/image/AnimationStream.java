@@ -0,0 +1,221 @@
+package net.amarantha.lightboard.image;
+
+import net.amarantha.lightboard.entity.Pattern;
+import net.amarantha.lightboard.entity.PatternBuilder;
+import net.amarantha.lightboard.surface.FrameBuffer;
+import org.imgscalr.Scalr;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import static org.imgscalr.Scalr.Mode;
+
+/**
+ * An animation played in a loop, decoded a fixed number of frames ahead of whoever is showing it.
+ *
+ * Frames are decoded in the background, scaled to fit once, and kept as compact Patterns in a
+ * ring the size of the window. Decoding stops while the ring is full and picks up again as frames
+ * are taken, so however long the animation runs, no more than the window is ever held. An
+ * animation that fits in the window whole is kept after the first pass, and never decoded again.
+ */
+public class AnimationStream implements Closeable {
+
+    private final AnimationSource source;
+    private final int width;
+    private final int height;
+    private final Executor decoder;
+
+    private final AnimationFrame[] ring;
+    private int head;
+    private int count;
+
+    private int decodedThisPass;
+    private boolean firstPass = true;
+    private int kept;
+
+    private boolean decoding;
+    private boolean closed;
+    private boolean sourceClosed;
+    private Exception error;
+
+    /**
+     * @param window How many frames to decode ahead
+     */
+    public AnimationStream(AnimationSource source, int width, int height, int window, Executor decoder) {
+        this.source = source;
+        this.width = width;
+        this.height = height;
+        this.decoder = decoder;
+        ring = new AnimationFrame[window];
+        synchronized (this) {
+            decodeAhead();
+        }
+    }
+
+    /**
+     * @return The next frame in the loop, or null if it hasn't been decoded yet
+     */
+    public synchronized AnimationFrame poll() {
+        if ( kept > 0 ) {
+            AnimationFrame frame = ring[head];
+            head = (head + 1) % kept;
+            return frame;
+        }
+        if ( count==0 ) {
+            decodeAhead();
+            return null;
+        }
+        AnimationFrame frame = ring[head];
+        if ( !firstPass ) {
+            ring[head] = null;
+        }
+        head = (head + 1) % ring.length;
+        count--;
+        decodeAhead();
+        return frame;
+    }
+
+    /**
+     * @return Whether every frame is held, so nothing more will be decoded
+     */
+    public synchronized boolean isComplete() {
+        return kept > 0;
+    }
+
+    /**
+     * @return How many frames are decoded and waiting
+     */
+    public synchronized int getBuffered() {
+        return kept > 0 ? kept : count;
+    }
+
+    /**
+     * @return Why decoding stopped, or null if it hasn't
+     */
+    public synchronized Exception getError() {
+        return error;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if ( !decoding ) {
+            closeSource();
+        }
+    }
+
+
+    //////////////
+    // Decoding //
+    //////////////
+
+    private void decodeAhead() {
+        if ( !decoding && !closed && kept==0 && error==null && count < ring.length ) {
+            decoding = true;
+            decoder.execute(this::decode);
+        }
+    }
+
+    private void decode() {
+        while ( true ) {
+            synchronized (this) {
+                if ( closed ) {
+                    decoding = false;
+                    closeSource();
+                    return;
+                }
+                if ( count==ring.length ) {
+                    decoding = false;
+                    return;
+                }
+            }
+            try {
+                BufferedImage image = source.next();
+                if ( image==null ) {
+                    if ( endOfPass() ) {
+                        return;
+                    }
+                    source.restart();
+                    continue;
+                }
+                AnimationFrame frame = new AnimationFrame(scale(image), source.getDelay());
+                synchronized (this) {
+                    ring[(head + count) % ring.length] = frame;
+                    count++;
+                    decodedThisPass++;
+                }
+            } catch ( IOException | RuntimeException e ) {
+                synchronized (this) {
+                    error = e;
+                    decoding = false;
+                    closeSource();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return Whether decoding is finished for good - the whole animation fitted in the ring, or
+     *         there was nothing to show
+     */
+    private synchronized boolean endOfPass() throws IOException {
+        if ( decodedThisPass==0 ) {
+            throw new IOException("Animation has no frames");
+        }
+        if ( firstPass && decodedThisPass <= ring.length ) {
+            kept = decodedThisPass;
+            head %= kept;
+            decoding = false;
+            closeSource();
+            return true;
+        }
+        firstPass = false;
+        decodedThisPass = 0;
+        return false;
+    }
+
+    private Pattern scale(BufferedImage image) {
+        BufferedImage scaled = Scalr.resize(image, Mode.FIT_TO_WIDTH, width, height);
+        int rows = scaled.getHeight();
+        int cols = scaled.getWidth();
+        int[] argb = scaled.getRGB(0, 0, cols, rows, null, 0, cols);
+        PatternBuilder builder = new PatternBuilder(rows, cols);
+        for ( int r=0; r<rows; r++ ) {
+            for ( int c=0; c<cols; c++ ) {
+                int pixel = overBlack(argb[r * cols + c]);
+                builder.setPoint(r, c, FrameBuffer.isOn(pixel), pixel);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Transparent parts of a frame show the board's black background
+     */
+    private static int overBlack(int argb) {
+        int alpha = argb >>> 24;
+        if ( alpha==0xFF ) {
+            return argb & 0xFFFFFF;
+        }
+        int red = ((argb >> 16) & 0xFF) * alpha / 0xFF;
+        int green = ((argb >> 8) & 0xFF) * alpha / 0xFF;
+        int blue = (argb & 0xFF) * alpha / 0xFF;
+        return (red << 16) | (green << 8) | blue;
+    }
+
+    private void closeSource() {
+        if ( sourceClosed ) {
+            return;
+        }
+        sourceClosed = true;
+        try {
+            source.close();
+        } catch ( IOException e ) {
+            e.printStackTrace();
+        }
+    }
+
+}
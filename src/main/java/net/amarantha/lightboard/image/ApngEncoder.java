@@ -0,0 +1,92 @@
+package net.amarantha.lightboard.image;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Animated PNG that loops forever, in full colour. After the first, each frame only stores the
+ * area that changed, drawn over the frame before. Viewers without APNG support show the first frame
+ */
+public class ApngEncoder implements FrameEncoder {
+
+    private static final byte DISPOSE_NONE = 0;
+    private static final byte BLEND_SOURCE = 0;
+
+    private final PngWriter png;
+    private final Deflater deflater = new Deflater();
+    private final int width;
+    private final int height;
+
+    // The frame count goes in the animation control chunk near the start, filled in on close()
+    private final long animationControl;
+    private int frames;
+    private int sequence;
+
+    public ApngEncoder(Path file, int width, int height) throws IOException {
+        this.width = width;
+        this.height = height;
+        png = new PngWriter(file);
+        png.writeChunk("IHDR", PngWriter.header(width, height));
+        animationControl = png.writeChunk("acTL", animationControl(0));
+    }
+
+    private static byte[] animationControl(int frames) {
+        // Frame count, then play count where 0 is forever
+        return ByteBuffer.allocate(8).putInt(frames).putInt(0).array();
+    }
+
+    @Override
+    public void writeFrame(BufferedImage image, Rectangle changed, int delay) throws IOException {
+        Rectangle area = frames==0 ? new Rectangle(0, 0, width, height) : changed;
+        png.writeChunk("fcTL", frameControl(area, delay));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater);
+        png.startImage(area.width);
+        png.writeRows(image, area, out);
+        out.finish();
+        deflater.reset();
+
+        if ( frames==0 ) {
+            png.writeChunk("IDAT", bytes.toByteArray());
+        } else {
+            ByteBuffer data = ByteBuffer.allocate(bytes.size() + 4);
+            data.putInt(sequence++);
+            data.put(bytes.toByteArray());
+            png.writeChunk("fdAT", data.array());
+        }
+        frames++;
+    }
+
+    private byte[] frameControl(Rectangle area, int delay) {
+        // Delay is a fraction - use the finest that fits in 16 bits
+        int numerator = delay;
+        int denominator = 1000;
+        while ( numerator > 0xFFFF && denominator > 1 ) {
+            numerator /= 10;
+            denominator /= 10;
+        }
+        return ByteBuffer.allocate(26)
+                .putInt(sequence++)
+                .putInt(area.width).putInt(area.height)
+                .putInt(area.x).putInt(area.y)
+                .putShort((short) Math.min(numerator, 0xFFFF)).putShort((short) denominator)
+                .put(DISPOSE_NONE).put(BLEND_SOURCE)
+                .array();
+    }
+
+    @Override
+    public void close() throws IOException {
+        png.rewriteChunk(animationControl, "acTL", animationControl(frames));
+        png.writeChunk("IEND", new byte[0]);
+        png.close();
+        deflater.end();
+    }
+
+}
@@ -0,0 +1,39 @@
+package net.amarantha.lightboard.image;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Writes the frames of an animation to a file one at a time as they are made, rather than
+ * collecting them all first
+ */
+public interface FrameEncoder extends Closeable {
+
+    /**
+     * @param image   The whole frame - the encoder only needs to read the changed area, and must
+     *                not hold on to the image after returning
+     * @param changed The part of the frame that differs from the one before
+     * @param delay   Milliseconds to show the frame for
+     */
+    void writeFrame(BufferedImage image, Rectangle changed, int delay) throws IOException;
+
+    /**
+     * Choose an encoder from the file extension: ".gif" and ".apng" for animations, ".png" for
+     * a strip with each frame below the one before
+     */
+    static FrameEncoder open(Path file, int width, int height) throws IOException {
+        String name = file.getFileName().toString().toLowerCase();
+        if ( name.endsWith(".gif") ) {
+            return new GifEncoder(file, width, height);
+        } else if ( name.endsWith(".apng") ) {
+            return new ApngEncoder(file, width, height);
+        } else if ( name.endsWith(".png") ) {
+            return new PngStripEncoder(file, width, height);
+        }
+        throw new IOException("Unknown animation format: " + file);
+    }
+
+}
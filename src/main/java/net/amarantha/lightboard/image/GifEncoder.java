@@ -0,0 +1,180 @@
+package net.amarantha.lightboard.image;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Animated GIF that loops forever. After the first, each frame only stores the area that changed,
+ * drawn over the frame before.
+ *
+ * LED frames rarely use more than 256 colours, so they're indexed exactly here; only frames with
+ * more are left to ImageIO to quantise, which is many times slower
+ */
+public class GifEncoder implements FrameEncoder {
+
+    private static final String FORMAT = "javax_imageio_gif_image_1.0";
+    private static final int MAX_COLOURS = 256;
+
+    private final ImageWriter writer;
+    private final ImageOutputStream output;
+    private final int width;
+    private final int height;
+
+    private boolean first = true;
+
+    // GIF delays are in hundredths, so carry the rounding on to the next frame rather than drift
+    private int owed;
+
+    // Open-addressed colour to palette index, sized to stay sparse at MAX_COLOURS
+    private final int[] colours = new int[MAX_COLOURS * 4];
+    private final int[] indexes = new int[MAX_COLOURS * 4];
+    private final int[] palette = new int[MAX_COLOURS];
+    private int[] pixels = new int[0];
+
+    public GifEncoder(Path file, int width, int height) throws IOException {
+        this.width = width;
+        this.height = height;
+        Files.deleteIfExists(file);
+        writer = ImageIO.getImageWritersByFormatName("gif").next();
+        output = ImageIO.createImageOutputStream(file.toFile());
+        writer.setOutput(output);
+        writer.prepareWriteSequence(null);
+    }
+
+    @Override
+    public void writeFrame(BufferedImage image, Rectangle changed, int delay) throws IOException {
+        Rectangle area = first ? new Rectangle(0, 0, width, height) : changed;
+        BufferedImage frame = indexed(image, area);
+        if ( frame==null ) {
+            frame = image.getSubimage(area.x, area.y, area.width, area.height);
+        }
+
+        int total = delay + owed;
+        int hundredths = Math.max(1, (total + 5) / 10);
+        owed = total - hundredths * 10;
+
+        IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(frame), null);
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(FORMAT);
+        IIOMetadataNode control = child(root, "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("transparentColorIndex", "0");
+        control.setAttribute("delayTime", Integer.toString(hundredths));
+        IIOMetadataNode descriptor = child(root, "ImageDescriptor");
+        descriptor.setAttribute("imageLeftPosition", Integer.toString(area.x));
+        descriptor.setAttribute("imageTopPosition", Integer.toString(area.y));
+        descriptor.setAttribute("interlaceFlag", "FALSE");
+        if ( frame.getColorModel() instanceof IndexColorModel ) {
+            // Otherwise the writer pairs the indexes with its default global palette
+            root.appendChild(colourTable((IndexColorModel) frame.getColorModel()));
+        }
+        if ( first ) {
+            IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            loop.setUserObject(new byte[] { 1, 0, 0 });
+            child(root, "ApplicationExtensions").appendChild(loop);
+        }
+        metadata.setFromTree(FORMAT, root);
+
+        writer.writeToSequence(new IIOImage(frame, null, metadata), null);
+        first = false;
+    }
+
+    /**
+     * @return The area as an indexed image with an exact palette, or null if it has too many colours
+     */
+    private BufferedImage indexed(BufferedImage image, Rectangle area) {
+        int count = area.width * area.height;
+        if ( pixels.length < count ) {
+            pixels = new int[count];
+        }
+        image.getRGB(area.x, area.y, area.width, area.height, pixels, 0, area.width);
+
+        Arrays.fill(colours, -1);
+        byte[] data = new byte[count];
+        int size = 0;
+        int lastColour = -1;
+        int lastIndex = 0;
+        for ( int i=0; i<count; i++ ) {
+            int colour = pixels[i] & 0xFFFFFF;
+            if ( colour!=lastColour ) {
+                int slot = (colour * 0x9E3779B1) >>> 22;
+                while ( colours[slot]!=-1 && colours[slot]!=colour ) {
+                    slot = (slot + 1) & (colours.length - 1);
+                }
+                if ( colours[slot]==-1 ) {
+                    if ( size==MAX_COLOURS ) {
+                        return null;
+                    }
+                    colours[slot] = colour;
+                    indexes[slot] = size;
+                    palette[size++] = colour;
+                }
+                lastColour = colour;
+                lastIndex = indexes[slot];
+            }
+            data[i] = (byte) lastIndex;
+        }
+
+        // GIF colour tables come in powers of two
+        int bits = 1;
+        while ( (1 << bits) < size ) {
+            bits++;
+        }
+        IndexColorModel model = new IndexColorModel(bits, 1 << bits, palette, 0, false, -1, DataBufferByte.TYPE_BYTE);
+        BufferedImage result = new BufferedImage(area.width, area.height, BufferedImage.TYPE_BYTE_INDEXED, model);
+        System.arraycopy(data, 0, ((DataBufferByte) result.getRaster().getDataBuffer()).getData(), 0, count);
+        return result;
+    }
+
+    private static IIOMetadataNode colourTable(IndexColorModel model) {
+        IIOMetadataNode table = new IIOMetadataNode("LocalColorTable");
+        table.setAttribute("sizeOfLocalColorTable", Integer.toString(model.getMapSize()));
+        table.setAttribute("sortFlag", "FALSE");
+        for ( int i=0; i<model.getMapSize(); i++ ) {
+            IIOMetadataNode entry = new IIOMetadataNode("ColorTableEntry");
+            entry.setAttribute("index", Integer.toString(i));
+            entry.setAttribute("red", Integer.toString(model.getRed(i)));
+            entry.setAttribute("green", Integer.toString(model.getGreen(i)));
+            entry.setAttribute("blue", Integer.toString(model.getBlue(i)));
+            table.appendChild(entry);
+        }
+        return table;
+    }
+
+    private static IIOMetadataNode child(IIOMetadataNode parent, String name) {
+        for ( int i=0; i<parent.getLength(); i++ ) {
+            if ( parent.item(i).getNodeName().equals(name) ) {
+                return (IIOMetadataNode) parent.item(i);
+            }
+        }
+        IIOMetadataNode node = new IIOMetadataNode(name);
+        parent.appendChild(node);
+        return node;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if ( !first ) {
+            writer.endWriteSequence();
+        }
+        output.close();
+        writer.dispose();
+    }
+
+}
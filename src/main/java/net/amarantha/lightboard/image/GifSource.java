@@ -0,0 +1,174 @@
+package net.amarantha.lightboard.image;
+
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * The frames of an animated GIF, each composited over the ones before it as the file's disposal
+ * methods say, so every frame comes out whole
+ */
+public class GifSource implements AnimationSource {
+
+    private static final String STREAM_FORMAT = "javax_imageio_gif_stream_1.0";
+    private static final String IMAGE_FORMAT = "javax_imageio_gif_image_1.0";
+
+    // Browsers show frames with no delay, or 10ms, at this rate instead
+    private static final int DEFAULT_DELAY = 100;
+
+    private final File file;
+
+    private ImageInputStream input;
+    private ImageReader reader;
+    private int index;
+    private int delay;
+
+    private BufferedImage canvas;
+    private BufferedImage saved;
+    private String disposal;
+    private int left;
+    private int top;
+    private int width;
+    private int height;
+
+    public GifSource(File file) throws IOException {
+        this.file = file;
+        open();
+    }
+
+    private void open() throws IOException {
+        input = ImageIO.createImageInputStream(file);
+        if ( input==null ) {
+            throw new IOException("Can't read " + file);
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("gif");
+        if ( !readers.hasNext() ) {
+            input.close();
+            throw new IOException("No GIF reader available");
+        }
+        reader = readers.next();
+        reader.setInput(input, false);
+        index = 0;
+        canvas = null;
+        saved = null;
+        disposal = null;
+    }
+
+    @Override
+    public BufferedImage next() throws IOException {
+        BufferedImage frame;
+        try {
+            frame = reader.read(index);
+        } catch ( IndexOutOfBoundsException e ) {
+            return null;
+        }
+        IIOMetadata metadata = reader.getImageMetadata(index);
+        Node root = metadata.getAsTree(IMAGE_FORMAT);
+        if ( canvas==null ) {
+            canvas = createCanvas(frame);
+        }
+        dispose();
+
+        Node descriptor = child(root, "ImageDescriptor");
+        left = attribute(descriptor, "imageLeftPosition", 0);
+        top = attribute(descriptor, "imageTopPosition", 0);
+        width = frame.getWidth();
+        height = frame.getHeight();
+
+        Node control = child(root, "GraphicControlExtension");
+        disposal = control==null ? "none" : control.getAttributes().getNamedItem("disposalMethod").getNodeValue();
+        int hundredths = attribute(control, "delayTime", 0);
+        delay = hundredths <= 1 ? DEFAULT_DELAY : hundredths * 10;
+
+        if ( "restoreToPrevious".equals(disposal) ) {
+            saved = copy(canvas);
+        }
+        Graphics2D g = canvas.createGraphics();
+        g.drawImage(frame, left, top, null);
+        g.dispose();
+
+        index++;
+        return canvas;
+    }
+
+    /**
+     * Clear up after the previous frame, as it asked
+     */
+    private void dispose() {
+        if ( "restoreToBackgroundColor".equals(disposal) ) {
+            Graphics2D g = canvas.createGraphics();
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(left, top, width, height);
+            g.dispose();
+        } else if ( "restoreToPrevious".equals(disposal) && saved!=null ) {
+            canvas = saved;
+            saved = null;
+        }
+    }
+
+    private BufferedImage createCanvas(BufferedImage first) throws IOException {
+        int canvasWidth = first.getWidth();
+        int canvasHeight = first.getHeight();
+        IIOMetadata metadata = reader.getStreamMetadata();
+        if ( metadata!=null ) {
+            Node screen = child(metadata.getAsTree(STREAM_FORMAT), "LogicalScreenDescriptor");
+            canvasWidth = Math.max(canvasWidth, attribute(screen, "logicalScreenWidth", 0));
+            canvasHeight = Math.max(canvasHeight, attribute(screen, "logicalScreenHeight", 0));
+        }
+        return new BufferedImage(canvasWidth, canvasHeight, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private static BufferedImage copy(BufferedImage image) {
+        BufferedImage result = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = result.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return result;
+    }
+
+    private static Node child(Node parent, String name) {
+        if ( parent!=null ) {
+            for ( Node node = parent.getFirstChild(); node!=null; node = node.getNextSibling() ) {
+                if ( name.equals(node.getNodeName()) ) {
+                    return node;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int attribute(Node node, String name, int fallback) {
+        if ( node==null ) {
+            return fallback;
+        }
+        Node value = node.getAttributes().getNamedItem(name);
+        return value==null ? fallback : Integer.parseInt(value.getNodeValue());
+    }
+
+    @Override
+    public int getDelay() {
+        return delay;
+    }
+
+    @Override
+    public void restart() throws IOException {
+        close();
+        open();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        input.close();
+    }
+
+}
@@ -0,0 +1,225 @@
+package net.amarantha.lightboard.image;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import net.amarantha.lightboard.surface.FrameBuffer;
+import net.amarantha.lightboard.utility.LightBoardProperties;
+import org.imgscalr.Scalr;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import static org.imgscalr.Scalr.Mode;
+
+/**
+ * Images decoded and scaled to fit a zone, ready to blit, shared by every zone in the process.
+ *
+ * Decoding happens on a background thread, so loading an image never holds up the caller. Images
+ * are keyed by file, modification time and the size they were scaled to, so an edited file is
+ * picked up again, and the cache is bounded by the memory it holds - the least recently used
+ * image goes first.
+ */
+@Singleton
+public class ImageCache {
+
+    private static final long KILOBYTE = 1024;
+
+    private final long maxBytes;
+    private final Executor executor;
+
+    private final Map<Key, FrameBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Key, CompletableFuture<FrameBuffer>> loading = new HashMap<>();
+
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    @Inject
+    public ImageCache(LightBoardProperties props) {
+        this(props.getImageCacheKilobytes() * KILOBYTE, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Image Decoder");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }));
+    }
+
+    public ImageCache(long maxBytes, Executor executor) {
+        this.maxBytes = maxBytes;
+        this.executor = executor;
+    }
+
+    /**
+     * The image scaled to the width, and no taller than the height, with a blank pixel around its
+     * edge - decoded in the background unless it's already cached or on its way
+     * @return The image, or an IOException if it can't be read
+     */
+    public CompletableFuture<FrameBuffer> load(String filename, int width, int height) {
+        File file = new File(filename).getAbsoluteFile();
+        Key key = new Key(file.getPath(), file.lastModified(), width, height);
+        CompletableFuture<FrameBuffer> result;
+        synchronized (this) {
+            FrameBuffer cached = entries.get(key);
+            if ( cached!=null ) {
+                hits++;
+                return CompletableFuture.completedFuture(cached);
+            }
+            result = loading.get(key);
+            if ( result!=null ) {
+                hits++;
+                return result;
+            }
+            misses++;
+            result = new CompletableFuture<>();
+            loading.put(key, result);
+        }
+        CompletableFuture<FrameBuffer> future = result;
+        executor.execute(() -> {
+            try {
+                FrameBuffer frame = decode(file, width, height);
+                store(key, frame);
+                future.complete(frame);
+            } catch ( IOException | RuntimeException e ) {
+                synchronized (this) {
+                    loading.remove(key);
+                }
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private synchronized void store(Key key, FrameBuffer frame) {
+        loading.remove(key);
+        long size = getBytes(frame);
+        if ( size > maxBytes ) {
+            return;
+        }
+        FrameBuffer previous = entries.put(key, frame);
+        if ( previous!=null ) {
+            bytes -= getBytes(previous);
+        }
+        bytes += size;
+        Iterator<FrameBuffer> oldest = entries.values().iterator();
+        while ( bytes > maxBytes ) {
+            bytes -= getBytes(oldest.next());
+            oldest.remove();
+            evictions++;
+        }
+    }
+
+    private static long getBytes(FrameBuffer frame) {
+        return 64 + frame.getRows() * (long) frame.getCols() * 4;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * The background thread images are decoded on, for other decoding work to share
+     */
+    public Executor getDecoder() {
+        return executor;
+    }
+
+
+    //////////////
+    // Decoding //
+    //////////////
+
+    private static FrameBuffer decode(File file, int width, int height) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        if ( image==null ) {
+            throw new IOException("Not a readable image: " + file);
+        }
+        BufferedImage scaled = Scalr.resize(image, Mode.FIT_TO_WIDTH, width, height);
+        int rows = scaled.getHeight();
+        int cols = scaled.getWidth();
+        int[] argb = scaled.getRGB(0, 0, cols, rows, null, 0, cols);
+        FrameBuffer frame = new FrameBuffer(rows, cols);
+        int[] pixels = frame.getPixels();
+        for ( int row=1; row<rows-1; row++ ) {
+            for ( int col=1; col<cols-1; col++ ) {
+                // the outermost pixels are left blank to put space around the image
+                pixels[row * cols + col] = argb[row * cols + col] & 0xFFFFFF;
+            }
+        }
+        return frame;
+    }
+
+
+    ///////////
+    // Stats //
+    ///////////
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private static class Key {
+
+        private final String path;
+        private final long modified;
+        private final int width;
+        private final int height;
+
+        private Key(String path, long modified, int width, int height) {
+            this.path = path;
+            this.modified = modified;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if ( this==o ) {
+                return true;
+            }
+            if ( !(o instanceof Key) ) {
+                return false;
+            }
+            Key that = (Key) o;
+            return modified==that.modified && width==that.width && height==that.height && path.equals(that.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, modified, width, height);
+        }
+
+    }
+
+}
@@ -0,0 +1,136 @@
+package net.amarantha.lightboard.image;
+
+import net.amarantha.lightboard.surface.Damage;
+import net.amarantha.lightboard.surface.FrameBuffer;
+import net.amarantha.lightboard.surface.Region;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Draws board frames as they'd look on the LEDs - each pixel a dot in a square cell, with unlit
+ * ones showing faintly. Square LEDs as wide as their cell draw plain pixels
+ */
+public class LedRenderer {
+
+    private static final int SAMPLES = 4;
+
+    private int pitch = 4;
+    private int dotSize = 3;
+    private boolean round = true;
+    private int offColour = 0x0D0D0D;
+
+    private int[] mask;
+
+    /**
+     * Size of each LED's cell in image pixels
+     */
+    public LedRenderer setPitch(int pixels) {
+        pitch = pixels;
+        mask = null;
+        return this;
+    }
+
+    /**
+     * Width of each LED within its cell
+     */
+    public LedRenderer setDotSize(int pixels) {
+        dotSize = pixels;
+        mask = null;
+        return this;
+    }
+
+    /**
+     * Round LEDs, or square ones
+     */
+    public LedRenderer setRound(boolean round) {
+        this.round = round;
+        mask = null;
+        return this;
+    }
+
+    /**
+     * Colour of an unlit LED
+     */
+    public LedRenderer setOffColour(int pixel) {
+        offColour = pixel;
+        return this;
+    }
+
+    public int getPitch() {
+        return pitch;
+    }
+
+    public BufferedImage createImage(int rows, int cols) {
+        return new BufferedImage(cols * pitch, rows * pitch, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /**
+     * Draw the damaged LEDs of a frame into an image from createImage()
+     * @return The area of the image drawn, or null if there was no damage
+     */
+    public Rectangle render(FrameBuffer frame, Damage damage, BufferedImage image) {
+        Region bounds = damage.getBounds();
+        if ( bounds==null ) {
+            return null;
+        }
+        if ( mask==null ) {
+            mask = mask();
+        }
+        int[] out = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int width = image.getWidth();
+        int[] pixels = frame.getPixels();
+        int cols = frame.getCols();
+        for ( int r=damage.getTop(); r<=damage.getBottom(); r++ ) {
+            if ( damage.isRowDamaged(r) ) {
+                for ( int c=damage.getLeft(r); c<=damage.getRight(r); c++ ) {
+                    drawLed(out, width, r, c, pixels[r * cols + c]);
+                }
+            }
+        }
+        return new Rectangle(bounds.left * pitch, bounds.top * pitch, bounds.width * pitch, bounds.height * pitch);
+    }
+
+    private void drawLed(int[] out, int width, int row, int col, int pixel) {
+        int colour = pixel==FrameBuffer.OFF ? offColour : pixel;
+        int red = FrameBuffer.redByte(colour);
+        int green = FrameBuffer.greenByte(colour);
+        int blue = FrameBuffer.blueByte(colour);
+        int m = 0;
+        for ( int y=0; y<pitch; y++ ) {
+            int i = (row * pitch + y) * width + col * pitch;
+            for ( int x=0; x<pitch; x++ ) {
+                int coverage = mask[m++];
+                out[i++] = ((red * coverage / 0xFF) << 16) | ((green * coverage / 0xFF) << 8) | (blue * coverage / 0xFF);
+            }
+        }
+    }
+
+    /**
+     * How much of each pixel in a cell the LED covers, 0-255, sampled on a grid for smooth edges
+     */
+    private int[] mask() {
+        int[] result = new int[pitch * pitch];
+        double centre = pitch / 2.0;
+        double radius = dotSize / 2.0;
+        for ( int y=0; y<pitch; y++ ) {
+            for ( int x=0; x<pitch; x++ ) {
+                int inside = 0;
+                for ( int sy=0; sy<SAMPLES; sy++ ) {
+                    for ( int sx=0; sx<SAMPLES; sx++ ) {
+                        double dx = x + (sx + 0.5) / SAMPLES - centre;
+                        double dy = y + (sy + 0.5) / SAMPLES - centre;
+                        boolean lit = round ? dx * dx + dy * dy <= radius * radius : Math.abs(dx) <= radius && Math.abs(dy) <= radius;
+                        if ( lit ) {
+                            inside++;
+                        }
+                    }
+                }
+                result[y * pitch + x] = inside * 0xFF / (SAMPLES * SAMPLES);
+            }
+        }
+        return result;
+    }
+
+}
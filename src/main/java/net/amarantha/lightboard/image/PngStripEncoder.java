@@ -0,0 +1,91 @@
+package net.amarantha.lightboard.image;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Still PNG with every frame below the one before, for looking through an animation at a glance.
+ * Each frame appears once however long it was shown for. Rows are compressed and written as they
+ * come, and the height filled in on close()
+ */
+public class PngStripEncoder implements FrameEncoder {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final PngWriter png;
+    private final Deflater deflater = new Deflater();
+    private final DataChunks chunks = new DataChunks();
+    private final DeflaterOutputStream out = new DeflaterOutputStream(chunks, deflater);
+    private final int width;
+    private final int height;
+
+    private final long header;
+    private int frames;
+
+    public PngStripEncoder(Path file, int width, int height) throws IOException {
+        this.width = width;
+        this.height = height;
+        png = new PngWriter(file);
+        header = png.writeChunk("IHDR", PngWriter.header(width, height));
+        png.startImage(width);
+    }
+
+    @Override
+    public void writeFrame(BufferedImage image, Rectangle changed, int delay) throws IOException {
+        png.writeRows(image, new Rectangle(0, 0, width, height), out);
+        frames++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.finish();
+        chunks.flush();
+        png.rewriteChunk(header, "IHDR", PngWriter.header(width, height * Math.max(1, frames)));
+        png.writeChunk("IEND", new byte[0]);
+        png.close();
+        deflater.end();
+    }
+
+    /**
+     * Compressed image data, written out as IDAT chunks each time enough has built up
+     */
+    private class DataChunks extends OutputStream {
+
+        private final byte[] pending = new byte[CHUNK_SIZE];
+        private int count;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while ( len > 0 ) {
+                int n = Math.min(len, pending.length - count);
+                System.arraycopy(b, off, pending, count, n);
+                count += n;
+                off += n;
+                len -= n;
+                if ( count==pending.length ) {
+                    flush();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if ( count > 0 ) {
+                png.writeChunk("IDAT", pending, count);
+                count = 0;
+            }
+        }
+
+    }
+
+}
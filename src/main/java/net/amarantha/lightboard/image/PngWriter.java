@@ -0,0 +1,132 @@
+package net.amarantha.lightboard.image;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * The chunks and scanlines shared by the PNG encoders - 8-bit RGB, every row Up-filtered, which
+ * suits LED images where most rows repeat the one above
+ */
+class PngWriter implements Closeable {
+
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final byte FILTER_UP = 2;
+
+    private final FileChannel channel;
+    private final CRC32 crc = new CRC32();
+
+    private int[] pixels = new int[0];
+    private byte[] previous = new byte[0];
+    private byte[] row = new byte[0];
+
+    PngWriter(Path file) throws IOException {
+        channel = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING);
+        write(ByteBuffer.wrap(SIGNATURE));
+    }
+
+    static byte[] header(int width, int height) {
+        return ByteBuffer.allocate(13).putInt(width).putInt(height)
+                .put((byte) 8).put((byte) 2).put((byte) 0).put((byte) 0).put((byte) 0)
+                .array();
+    }
+
+
+    ////////////
+    // Chunks //
+    ////////////
+
+    /**
+     * @return Where the chunk starts, to rewrite it later
+     */
+    long writeChunk(String type, byte[] data) throws IOException {
+        return writeChunk(type, data, data.length);
+    }
+
+    long writeChunk(String type, byte[] data, int length) throws IOException {
+        long position = channel.position();
+        write(chunk(type, data, length));
+        return position;
+    }
+
+    /**
+     * Replace a chunk already written with one of the same size
+     */
+    void rewriteChunk(long position, String type, byte[] data) throws IOException {
+        ByteBuffer chunk = chunk(type, data, data.length);
+        while ( chunk.hasRemaining() ) {
+            position += channel.write(chunk, position);
+        }
+    }
+
+    private ByteBuffer chunk(String type, byte[] data, int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(length + 12);
+        buffer.putInt(length);
+        buffer.put(type.getBytes(StandardCharsets.US_ASCII));
+        buffer.put(data, 0, length);
+        crc.reset();
+        crc.update(buffer.array(), 4, length + 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while ( buffer.hasRemaining() ) {
+            channel.write(buffer);
+        }
+    }
+
+
+    ///////////////
+    // Scanlines //
+    ///////////////
+
+    /**
+     * Begin an image, whose first row has nothing above it
+     */
+    void startImage(int width) {
+        pixels = new int[width];
+        previous = new byte[width * 3];
+        row = new byte[width * 3 + 1];
+        row[0] = FILTER_UP;
+    }
+
+    /**
+     * Filter the rows of an area and write them out, continuing the image from the last row written
+     */
+    void writeRows(BufferedImage image, Rectangle area, OutputStream out) throws IOException {
+        for ( int y=area.y; y<area.y+area.height; y++ ) {
+            image.getRGB(area.x, y, area.width, 1, pixels, 0, area.width);
+            int i = 0;
+            for ( int x=0; x<area.width; x++ ) {
+                int pixel = pixels[x];
+                i = filter(i, pixel >> 16);
+                i = filter(i, pixel >> 8);
+                i = filter(i, pixel);
+            }
+            out.write(row);
+        }
+    }
+
+    private int filter(int i, int value) {
+        row[i + 1] = (byte) (value - previous[i]);
+        previous[i] = (byte) value;
+        return i + 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -0,0 +1,62 @@
+package net.amarantha.lightboard.image;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Numbered still images played one after another - "walk%03d.png" reads walk000.png (or
+ * walk001.png if there's no 0), walk001.png and so on until a number is missing
+ */
+public class SequenceSource implements AnimationSource {
+
+    private final String pattern;
+    private final int delay;
+    private final int first;
+
+    private int index;
+
+    public SequenceSource(String pattern, int delay) throws IOException {
+        this.pattern = pattern;
+        this.delay = delay;
+        first = file(0).exists() ? 0 : 1;
+        if ( !file(first).exists() ) {
+            throw new IOException("No images match " + pattern);
+        }
+        index = first;
+    }
+
+    private File file(int number) {
+        return new File(String.format(pattern, number));
+    }
+
+    @Override
+    public BufferedImage next() throws IOException {
+        File file = file(index);
+        if ( !file.exists() ) {
+            return null;
+        }
+        BufferedImage image = ImageIO.read(file);
+        if ( image==null ) {
+            throw new IOException("Not a readable image: " + file);
+        }
+        index++;
+        return image;
+    }
+
+    @Override
+    public int getDelay() {
+        return delay;
+    }
+
+    @Override
+    public void restart() {
+        index = first;
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
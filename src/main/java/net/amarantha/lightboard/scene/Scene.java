@@ -20,6 +20,7 @@ public abstract class Scene {
 
     private Integer sceneDuration = 10000;
     private boolean includeInCycle = true;
+    private boolean stopped = false;
 
     private String name;
 
@@ -30,6 +31,7 @@ public abstract class Scene {
     public abstract void build();
 
     public void start() {
+        stopped = false;
         zones.forEach(LightBoardZone::start);
         zones.forEach(LightBoardZone::render);
         updaters.forEach(Updater::start);
@@ -41,7 +43,20 @@ public abstract class Scene {
         updaters.forEach(Updater::pause);
     }
 
+    /**
+     * Pause the scene and release the tick tasks of all its zones - resume() starts them again
+     */
+    public void stop() {
+        pause();
+        zones.forEach(LightBoardZone::stop);
+        stopped = true;
+    }
+
     public void resume() {
+        if ( stopped ) {
+            zones.forEach(LightBoardZone::start);
+            stopped = false;
+        }
         zones.forEach(LightBoardZone::resume);
         zones.forEach(LightBoardZone::resetScroll);
         zones.forEach(LightBoardZone::render);
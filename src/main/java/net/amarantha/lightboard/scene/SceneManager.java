@@ -6,6 +6,7 @@ import net.amarantha.lightboard.board.LightBoard;
 import net.amarantha.lightboard.surface.LightBoardSurface;
 import net.amarantha.lightboard.utility.Now;
 import net.amarantha.lightboard.utility.PropertyManager;
+import net.amarantha.lightboard.utility.Sync;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -18,6 +19,7 @@ public class SceneManager {
 
     @Inject private Now now;
     @Inject private PropertyManager props;
+    @Inject private Sync sync;
 
     @Inject private LightBoardSurface surface;
     @Inject private LightBoard board;
@@ -82,7 +84,8 @@ public class SceneManager {
                 advanceScene();
             } else {
                 if (currentScene != null) {
-                    currentScene.pause();
+                    // Only the scene on show keeps its tasks
+                    currentScene.stop();
                 }
                 currentScene = newScene;
                 currentScene.resume();
@@ -93,7 +96,7 @@ public class SceneManager {
                         }
                     }
                 }
-                sceneLoaded = System.currentTimeMillis();
+                sceneLoaded = now.millis();
                 return true;
             }
         }
@@ -109,7 +112,7 @@ public class SceneManager {
         loadTimes();
         for ( Scene scene : scenes.values() ) {
             scene.start();
-            scene.pause();
+            scene.stop();
         }
         advanceScene();
     }
@@ -140,8 +143,7 @@ public class SceneManager {
 
     public void cycleScenes() {
         cycleMode = true;
-        Timer timer = new Timer();
-        timer.schedule(new TimerTask() {
+        sync.startTimerTask(new TimerTask() {
             @Override
             public void run() {
                 if ( !sleeping && sleep!=null && timeOnly(sleep).equals(now.time()) ) {
@@ -150,13 +152,13 @@ public class SceneManager {
                 if ( sleeping && wake!=null && timeOnly(wake).equals(now.time()) ) {
                     wake();
                 }
-                long now = System.currentTimeMillis();
+                long millis = now.millis();
                 if (currentScene != null && currentScene.getSceneDuration() != null
-                        && now - sceneLoaded >= currentScene.getSceneDuration() && !sleeping) {
+                        && millis - sceneLoaded >= currentScene.getSceneDuration() && !sleeping) {
                     advanceScene();
                 }
             }
-        }, 0, 5000);
+        }, 5000L);
     }
 
     private boolean sleeping = false;
@@ -4,6 +4,7 @@ import com.google.inject.Inject;
 import net.amarantha.lightboard.scene.Scene;
 import net.amarantha.lightboard.scene.SceneManager;
 import net.amarantha.lightboard.utility.PropertyManager;
+import net.amarantha.lightboard.zone.impl.ClockZone;
 import net.amarantha.lightboard.zone.impl.ImageZone;
 
 public class ImageBanner extends Scene {
@@ -14,6 +15,8 @@ public class ImageBanner extends Scene {
 
     @Inject private ImageZone zone;
 
+    @Inject private ClockZone clock;
+
     @Inject private PropertyManager props;
 
     @Inject
@@ -33,5 +36,12 @@ public class ImageBanner extends Scene {
 
         registerZones(zone);
 
+        if ( props.getString("bannerClock", "false").equals("true") ) {
+            // On a layer of its own, so the clock and the scrolling image never wipe each other
+            clock.setRegion(getCols() - clock.getContentWidth(), 0, clock.getContentWidth(), clock.getContentHeight());
+            clock.onLayer(1);
+            registerZones(clock);
+        }
+
     }
 }
@@ -0,0 +1,193 @@
+package net.amarantha.lightboard.surface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The parts of a FrameBuffer that have changed since it was last pushed to the board.
+ * Tracked as one dirty column span per row, which keeps marking a pixel O(1) and lets
+ * boards skip clean rows outright; getRegions() coalesces the spans into rectangles.
+ */
+public class Damage {
+
+    private static final int CLEAN = -1;
+
+    private final int rows;
+    private final int cols;
+
+    private final int[] left;
+    private final int[] right;
+
+    private int top;
+    private int bottom;
+
+    public Damage(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        left = new int[rows];
+        right = new int[rows];
+        for ( int r=0; r<rows; r++ ) {
+            left[r] = CLEAN;
+        }
+        top = rows;
+        bottom = -1;
+    }
+
+
+    /////////////
+    // Marking //
+    /////////////
+
+    public void addPoint(int x, int y) {
+        if ( left[y]==CLEAN ) {
+            left[y] = x;
+            right[y] = x;
+        } else if ( x < left[y] ) {
+            left[y] = x;
+        } else if ( x > right[y] ) {
+            right[y] = x;
+        }
+        if ( y < top ) {
+            top = y;
+        }
+        if ( y > bottom ) {
+            bottom = y;
+        }
+    }
+
+    public void addRegion(Region r) {
+        add(r.left, r.top, r.width, r.height);
+    }
+
+    public void add(int x, int y, int width, int height) {
+        int x1 = Math.max(x, 0);
+        int y1 = Math.max(y, 0);
+        int x2 = Math.min(x + width, cols) - 1;
+        int y2 = Math.min(y + height, rows) - 1;
+        if ( x1 > x2 || y1 > y2 ) {
+            return;
+        }
+        for ( int r=y1; r<=y2; r++ ) {
+            if ( left[r]==CLEAN ) {
+                left[r] = x1;
+                right[r] = x2;
+            } else {
+                left[r] = Math.min(left[r], x1);
+                right[r] = Math.max(right[r], x2);
+            }
+        }
+        top = Math.min(top, y1);
+        bottom = Math.max(bottom, y2);
+    }
+
+    public void addAll() {
+        add(0, 0, cols, rows);
+    }
+
+    public void add(Damage other) {
+        for ( int r=other.top; r<=other.bottom; r++ ) {
+            if ( other.left[r]!=CLEAN ) {
+                add(other.left[r], r, other.right[r] - other.left[r] + 1, 1);
+            }
+        }
+    }
+
+    public void clear() {
+        for ( int r=top; r<=bottom; r++ ) {
+            left[r] = CLEAN;
+        }
+        top = rows;
+        bottom = -1;
+    }
+
+
+    ///////////
+    // Query //
+    ///////////
+
+    public boolean isEmpty() {
+        return bottom < top;
+    }
+
+    public boolean isRowDamaged(int row) {
+        return left[row]!=CLEAN;
+    }
+
+    /**
+     * @return Leftmost damaged column in the row, or -1 if the row is clean
+     */
+    public int getLeft(int row) {
+        return left[row];
+    }
+
+    /**
+     * @return Rightmost damaged column in the row, or -1 if the row is clean
+     */
+    public int getRight(int row) {
+        return left[row]==CLEAN ? CLEAN : right[row];
+    }
+
+    public int getTop() {
+        return isEmpty() ? CLEAN : top;
+    }
+
+    public int getBottom() {
+        return bottom;
+    }
+
+    /**
+     * @return Smallest Region containing all the damage, or null if nothing is damaged
+     */
+    public Region getBounds() {
+        if ( isEmpty() ) {
+            return null;
+        }
+        int minLeft = cols;
+        int maxRight = -1;
+        for ( int r=top; r<=bottom; r++ ) {
+            if ( left[r]!=CLEAN ) {
+                minLeft = Math.min(minLeft, left[r]);
+                maxRight = Math.max(maxRight, right[r]);
+            }
+        }
+        return new Region(minLeft, top, maxRight - minLeft + 1, bottom - top + 1);
+    }
+
+    /**
+     * Coalesce the damaged spans into rectangles - adjacent rows whose spans overlap or touch
+     * are merged into the same Region
+     */
+    public List<Region> getRegions() {
+        List<Region> result = new ArrayList<>();
+        int groupTop = CLEAN;
+        int groupLeft = 0;
+        int groupRight = 0;
+        for ( int r=top; r<=bottom+1; r++ ) {
+            boolean damaged = r<=bottom && left[r]!=CLEAN;
+            if ( groupTop!=CLEAN ) {
+                if ( damaged && left[r] <= groupRight+1 && right[r] >= groupLeft-1 ) {
+                    groupLeft = Math.min(groupLeft, left[r]);
+                    groupRight = Math.max(groupRight, right[r]);
+                    continue;
+                }
+                result.add(new Region(groupLeft, groupTop, groupRight - groupLeft + 1, r - groupTop));
+                groupTop = CLEAN;
+            }
+            if ( damaged ) {
+                groupTop = r;
+                groupLeft = left[r];
+                groupRight = right[r];
+            }
+        }
+        return result;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+}
@@ -0,0 +1,316 @@
+package net.amarantha.lightboard.surface;
+
+import net.amarantha.lightboard.entity.Pattern;
+
+/**
+ * A FrameBuffer to draw into, with the Damage it has taken since it was last consumed.
+ * LightBoardSurface draws the board itself; a Layer draws over it and is composited in.
+ */
+public class DrawingSurface {
+
+    protected int rows;
+    protected int cols;
+
+    protected FrameBuffer frame;
+    protected Damage damage;
+
+    protected Region boardRegion;
+
+    protected void allocate(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        frame = new FrameBuffer(rows, cols);
+        damage = new Damage(rows, cols);
+        damage.addAll();
+        boardRegion = safeRegion(0, 0, cols, rows);
+    }
+
+    /**
+     * Mark the whole surface as changed
+     */
+    public synchronized void invalidate() {
+        damage.addAll();
+    }
+
+    public boolean isOn(int x, int y) {
+        return pointInRegion(x, y, boardRegion) && frame.isOn(x, y);
+    }
+
+    public boolean drawPoint(int x, int y) {
+        return drawPoint(x, y, 1.0, 1.0, 1.0, boardRegion);
+    }
+
+    public boolean clearPoint(int x, int y) {
+        return drawPoint(x, y, 0.0, 0.0, 0.0, boardRegion);
+    }
+
+    public boolean drawPoint(int x, int y, Region r) {
+        return drawPoint(x, y, 1.0, 1.0, 1.0, r);
+    }
+
+    public boolean clearPoint(int x, int y, Region r) {
+        return drawPoint(x, y, 0.0, 0.0, 0.0, r);
+    }
+
+    public synchronized boolean drawPoint(int x, int y, double red, double green, double blue, Region r) {
+        if ( pointInRegion(x, y, r) ) {
+            int pixel = FrameBuffer.pack(red, green, blue);
+            if ( frame.getPixel(x, y)!=pixel ) {
+                frame.setPixel(x, y, pixel);
+                damage.addPoint(x, y);
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public synchronized boolean drawPattern(int xPos, int yPos, Pattern pattern) {
+        return drawPattern(xPos, yPos, pattern, boardRegion);
+    }
+    public synchronized boolean drawPattern(int xPos, int yPos, Pattern pattern, Region r) {
+        return drawPattern(xPos, yPos, pattern, false, r);
+    }
+
+    /**
+     * Draw the pattern with its top-left corner at (xPos, yPos), clipped to the region.
+     * Only the rectangle where the pattern, the region and the board overlap is visited.
+     * @param clearBackground Draw every pixel of the pattern (opaque); otherwise only pixels lit
+     *                        in all three channels are drawn (transparent)
+     * @return Whether any pixel was drawn
+     */
+    public synchronized boolean drawPattern(int xPos, int yPos, Pattern pattern, boolean clearBackground, Region r) {
+        if ( pattern.getRows()==0 || pattern.getCols()==0 ) {
+            return false;
+        }
+        if ( r==null ) {
+            r = boardRegion;
+        }
+        int left = Math.max(Math.max(r.left, 0), xPos);
+        int top = Math.max(Math.max(r.top, 0), yPos);
+        int right = Math.min(Math.min(r.right, cols - 1), xPos + pattern.getCols() - 1);
+        int bottom = Math.min(Math.min(r.bottom, rows - 1), yPos + pattern.getRows() - 1);
+        if ( left > right || top > bottom ) {
+            return false;
+        }
+        if ( clearBackground ) {
+            drawOpaque(xPos, yPos, pattern, left, top, right, bottom);
+            return true;
+        }
+        return drawTransparent(xPos, yPos, pattern, left, top, right, bottom);
+    }
+
+    private void drawOpaque(int xPos, int yPos, Pattern pattern, int left, int top, int right, int bottom) {
+        int[] pixels = frame.getPixels();
+        for ( int y=top; y<=bottom; y++ ) {
+            int first = -1;
+            int last = -1;
+            int i = y * cols + left;
+            for ( int x=left; x<=right; x++, i++ ) {
+                int pixel = pattern.getPixel(y - yPos, x - xPos);
+                if ( pixels[i]!=pixel ) {
+                    pixels[i] = pixel;
+                    if ( first < 0 ) {
+                        first = x;
+                    }
+                    last = x;
+                }
+            }
+            if ( first >= 0 ) {
+                damage.add(first, y, last - first + 1, 1);
+            }
+        }
+    }
+
+    private boolean drawTransparent(int xPos, int yPos, Pattern pattern, int left, int top, int right, int bottom) {
+        boolean drawn = false;
+        int[] pixels = frame.getPixels();
+        for ( int y=top; y<=bottom; y++ ) {
+            int first = -1;
+            int last = -1;
+            int i = y * cols + left;
+            for ( int x=left; x<=right; x++, i++ ) {
+                int pixel = pattern.getPixel(y - yPos, x - xPos);
+                if ( FrameBuffer.redByte(pixel)>0 && FrameBuffer.greenByte(pixel)>0 && FrameBuffer.blueByte(pixel)>0 ) {
+                    drawn = true;
+                    if ( pixels[i]!=pixel ) {
+                        pixels[i] = pixel;
+                        if ( first < 0 ) {
+                            first = x;
+                        }
+                        last = x;
+                    }
+                }
+            }
+            if ( first >= 0 ) {
+                damage.add(first, y, last - first + 1, 1);
+            }
+        }
+        return drawn;
+    }
+
+    /**
+     * Copy a pre-rendered buffer onto the surface with its top-left corner at (xPos, yPos),
+     * clipped to the region. With clearBackground the rest of the region is cleared in the same
+     * pass, so a scrolling zone can redraw itself without clearing first.
+     * Only pixels that actually change are written and marked as damaged.
+     * @return Whether any of the content falls within the region
+     */
+    public synchronized boolean blit(int xPos, int yPos, FrameBuffer content, boolean clearBackground, Region r) {
+        int contentRight = xPos + content.getCols() - 1;
+        int contentBottom = yPos + content.getRows() - 1;
+        int left = Math.max(r.left, 0);
+        int top = Math.max(r.top, 0);
+        int right = Math.min(r.right, cols - 1);
+        int bottom = Math.min(r.bottom, rows - 1);
+        boolean drawn = xPos <= right && contentRight >= left && yPos <= bottom && contentBottom >= top;
+        if ( !clearBackground ) {
+            left = Math.max(left, xPos);
+            top = Math.max(top, yPos);
+            right = Math.min(right, contentRight);
+            bottom = Math.min(bottom, contentBottom);
+        }
+        int[] source = content.getPixels();
+        int[] dest = frame.getPixels();
+        int contentCols = content.getCols();
+        for ( int y=top; y<=bottom; y++ ) {
+            int sourceRow = y - yPos;
+            boolean rowInContent = sourceRow >= 0 && sourceRow < content.getRows();
+            int first = -1;
+            int last = -1;
+            int i = y * cols + left;
+            for ( int x=left; x<=right; x++, i++ ) {
+                int sourceCol = x - xPos;
+                int pixel = rowInContent && sourceCol >= 0 && sourceCol < contentCols
+                        ? source[sourceRow * contentCols + sourceCol] : FrameBuffer.OFF;
+                if ( dest[i]!=pixel ) {
+                    dest[i] = pixel;
+                    if ( first < 0 ) {
+                        first = x;
+                    }
+                    last = x;
+                }
+            }
+            if ( first >= 0 ) {
+                damage.add(first, y, last - first + 1, 1);
+            }
+        }
+        return drawn;
+    }
+
+    public synchronized boolean clearPattern(int xPos, int yPos, boolean[][] chr) {
+        return clearPattern(xPos, yPos, chr, boardRegion);
+    }
+
+    public synchronized boolean clearPattern(int xPos, int yPos, boolean[][] chr, Region r) {
+        boolean changed = false;
+        if ( chr.length>0 && chr[0].length> 0 ) {
+            for (int x = 0; x < chr[0].length; x++) {
+                for (int y = 0; y < chr.length; y++) {
+                    if (chr[y][x]) {
+                        changed |= clearPoint(x + xPos, y + yPos, r);
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    public synchronized boolean clearSurface() {
+        return clearRegion(boardRegion);
+    }
+
+    public synchronized boolean clearRegion(Region r) {
+        boolean changed = false;
+        for ( int x=0; x<r.width; x++ ) {
+            for ( int y=0; y<r.height; y++ ) {
+                changed |= clearPoint(r.left+x, r.top+y);
+            }
+        }
+        return changed;
+    }
+
+    public synchronized boolean fillRegion(Region r) {
+        boolean changed = false;
+        for ( int x=0; x<r.width; x++ ) {
+            for ( int y=0; y<r.height; y++ ) {
+                changed |= drawPoint(r.left + x, r.top + y, r);
+            }
+        }
+        return changed;
+    }
+
+    public synchronized boolean invertRegion(Region r) {
+        boolean changed = false;
+        for ( int x=0; x<r.width; x++ ) {
+            for ( int y=0; y<r.height; y++ ) {
+                int actualX = r.left+x;
+                int actualY = r.top+y;
+                if ( isOn(actualX, actualY) ) {
+                    changed |= clearPoint(actualX, actualY, r);
+                } else {
+                    changed |= drawPoint(actualX, actualY, r);
+                }
+            }
+        }
+        return changed;
+    }
+
+    public synchronized boolean outlineRegion(Region r) {
+        boolean changed = false;
+        for ( int x=0; x<r.width; x++ ) {
+            if ( x==0 || x==r.width-1 ) {
+                for ( int y=0; y<r.height; y++ ) {
+                    changed |= drawPoint(r.left+x, r.top+y, r);
+                }
+            } else {
+                changed |= drawPoint(r.left+x, r.top, r);
+                changed |= drawPoint(r.left+x, r.bottom, r);
+            }
+        }
+        return changed;
+    }
+
+
+    ////////////
+    // Region //
+    ////////////
+
+    public Region safeRegion(int left, int top, int width, int height) {
+        if ( left<0 ) {
+            width += left;
+        }
+        if ( top<0 ) {
+            height += top;
+        }
+        int safeLeft = left<0 ? 0 : left>=getCols() ? getCols()-1 : left;
+        int safeTop = top<0 ? 0 : top>=getRows() ? getRows()-1 : top;
+        int safeWidth = safeLeft+width > getCols() ? getCols()-safeLeft : width;
+        int safeHeight = safeTop+height > getRows() ? getRows()-safeTop : height;
+        return new Region(safeLeft, safeTop, safeWidth, safeHeight);
+    }
+
+    protected boolean pointInRegion(int x, int y, Region region) {
+        if ( region==null ) {
+            region = safeRegion(0, 0, getRows(), getCols());
+        }
+        return ( x>=region.left && x<=region.right && y>=region.top && y<=region.bottom );
+    }
+
+    public FrameBuffer getFrame() {
+        return frame;
+    }
+
+    public Damage getDamage() {
+        return damage;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+}
@@ -0,0 +1,201 @@
+package net.amarantha.lightboard.surface;
+
+import net.amarantha.lightboard.entity.Pattern;
+
+import java.util.Arrays;
+
+/**
+ * Board state packed as one int per pixel (0x00RRGGBB, 8 bits per channel), stored row-major
+ */
+public class FrameBuffer {
+
+    public static final int OFF = 0x000000;
+    public static final int WHITE = 0xFFFFFF;
+
+    // A channel counts as lit from 0.5 upwards, which packs to 128
+    public static final int ON_THRESHOLD = 0x80;
+
+    private final int rows;
+    private final int cols;
+    private final int[] pixels;
+
+    public FrameBuffer(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        pixels = new int[rows * cols];
+    }
+
+
+    ////////////
+    // Pixels //
+    ////////////
+
+    public int getPixel(int x, int y) {
+        return pixels[y * cols + x];
+    }
+
+    public void setPixel(int x, int y, int pixel) {
+        pixels[y * cols + x] = pixel;
+    }
+
+    public void setPixel(int x, int y, double red, double green, double blue) {
+        pixels[y * cols + x] = pack(red, green, blue);
+    }
+
+    public double getRed(int x, int y) {
+        return red(getPixel(x, y));
+    }
+
+    public double getGreen(int x, int y) {
+        return green(getPixel(x, y));
+    }
+
+    public double getBlue(int x, int y) {
+        return blue(getPixel(x, y));
+    }
+
+    public boolean isOn(int x, int y) {
+        return isOn(getPixel(x, y));
+    }
+
+    public void clear() {
+        Arrays.fill(pixels, OFF);
+    }
+
+    public void copyFrom(FrameBuffer source) {
+        System.arraycopy(source.pixels, 0, pixels, 0, pixels.length);
+    }
+
+    /**
+     * Copy only the damaged spans of the source
+     */
+    public void copyFrom(FrameBuffer source, Damage damage) {
+        for ( int r=damage.getTop(); r>=0 && r<=damage.getBottom(); r++ ) {
+            if ( damage.isRowDamaged(r) ) {
+                int start = r * cols + damage.getLeft(r);
+                System.arraycopy(source.pixels, start, pixels, start, damage.getRight(r) - damage.getLeft(r) + 1);
+            }
+        }
+    }
+
+    public FrameBuffer copy() {
+        FrameBuffer result = new FrameBuffer(rows, cols);
+        result.copyFrom(this);
+        return result;
+    }
+
+    /**
+     * Unpack into the legacy layout for boards that still take doubles
+     * @return New array indexed: [colour(0=R,1=G,2=B)][row][col]
+     */
+    public double[][][] toColourValues() {
+        double[][][] result = new double[3][rows][cols];
+        int i = 0;
+        for ( int r=0; r<rows; r++ ) {
+            for ( int c=0; c<cols; c++ ) {
+                int pixel = pixels[i++];
+                result[0][r][c] = red(pixel);
+                result[1][r][c] = green(pixel);
+                result[2][r][c] = blue(pixel);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A new buffer the size of the pattern, holding its colours
+     */
+    public static FrameBuffer fromPattern(Pattern pattern) {
+        FrameBuffer result = new FrameBuffer(pattern.getRows(), pattern.getCols());
+        result.copyFrom(pattern);
+        return result;
+    }
+
+    /**
+     * Copy the colours of a pattern the same size as the buffer
+     */
+    public void copyFrom(Pattern pattern) {
+        int i = 0;
+        for ( int r=0; r<rows; r++ ) {
+            for ( int c=0; c<cols; c++ ) {
+                pixels[i++] = pattern.getPixel(r, c);
+            }
+        }
+    }
+
+    public void fromColourValues(double[][][] data) {
+        for ( int r=0; r<rows; r++ ) {
+            for ( int c=0; c<cols; c++ ) {
+                pixels[r * cols + c] = pack(data[0][r][c], data[1][r][c], data[2][r][c]);
+            }
+        }
+    }
+
+
+    /////////////
+    // Packing //
+    /////////////
+
+    public static int pack(double red, double green, double blue) {
+        return (channel(red) << 16) | (channel(green) << 8) | channel(blue);
+    }
+
+    private static int channel(double value) {
+        if ( value <= 0.0 ) {
+            return 0;
+        }
+        if ( value >= 1.0 ) {
+            return 0xFF;
+        }
+        return (int) Math.round(value * 255);
+    }
+
+    public static int redByte(int pixel) {
+        return (pixel >> 16) & 0xFF;
+    }
+
+    public static int greenByte(int pixel) {
+        return (pixel >> 8) & 0xFF;
+    }
+
+    public static int blueByte(int pixel) {
+        return pixel & 0xFF;
+    }
+
+    public static double red(int pixel) {
+        return redByte(pixel) / 255.0;
+    }
+
+    public static double green(int pixel) {
+        return greenByte(pixel) / 255.0;
+    }
+
+    public static double blue(int pixel) {
+        return blueByte(pixel) / 255.0;
+    }
+
+    public static boolean isOn(int pixel) {
+        return redByte(pixel) >= ON_THRESHOLD || greenByte(pixel) >= ON_THRESHOLD || blueByte(pixel) >= ON_THRESHOLD;
+    }
+
+
+    /////////////
+    // Getters //
+    /////////////
+
+    /**
+     * Direct access to the packed pixels - index is (row * cols) + col
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+}
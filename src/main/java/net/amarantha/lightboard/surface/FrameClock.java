@@ -0,0 +1,299 @@
+package net.amarantha.lightboard.surface;
+
+import net.amarantha.lightboard.utility.Sync;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces rendering to a fixed frame rate.
+ *
+ * Zones register their tick tasks here rather than with Sync. Once per frame the clock runs
+ * every task that has fallen due, then publishes the surface to the board exactly once, so the
+ * board never sees a frame in which only some of the zones have moved on.
+ *
+ * Tasks with intervals shorter than the frame interval still run at their own rate: a second
+ * Sync task ticks them between frames without publishing, so a slow board shows fewer of their
+ * steps rather than slowing them down.
+ *
+ * Each frame is timed against the frame budget: a frame that takes longer than the budget is a
+ * missed deadline, and frames that never started because the one before overran are dropped.
+ */
+public class FrameClock {
+
+    private final Sync sync;
+    private final Runnable publisher;
+
+    private final List<Entry> entries = new CopyOnWriteArrayList<>();
+
+    private Sync.Task frameTask;
+
+    // Guards the tick task, which tasks added and removed on any thread retune
+    private final Object tickLock = new Object();
+    private Sync.Task tickTask;
+    private Integer tickTaskId;
+    private long budgetNanos;
+    private long lastFrameStart;
+
+    public FrameClock(Sync sync, Runnable publisher) {
+        this.sync = sync;
+        this.publisher = publisher;
+    }
+
+    /**
+     * @param frameMillis Target frame interval - null runs frames back to back
+     */
+    public void start(Long frameMillis) {
+        stop();
+        budgetNanos = frameMillis==null ? 0 : TimeUnit.MILLISECONDS.toNanos(frameMillis);
+        lastFrameStart = 0;
+        frameTask = new Sync.Task(frameMillis) {
+            @Override
+            public void runTask() {
+                frame();
+            }
+        }.setName("Frame");
+        sync.addTask(this, frameTask);
+        if ( frameMillis!=null ) {
+            Sync.Task task = new Sync.Task(frameMillis) {
+                @Override
+                public void runTask() {
+                    tick();
+                }
+            }.setName("Tick");
+            synchronized (tickLock) {
+                tickTask = task;
+                tickTaskId = sync.addTask(this, task);
+                updateTickRate();
+            }
+        }
+    }
+
+    public void stop() {
+        synchronized (tickLock) {
+            sync.releaseTasks(this);
+            tickTask = null;
+            tickTaskId = null;
+        }
+        frameTask = null;
+    }
+
+
+    ///////////
+    // Tasks //
+    ///////////
+
+    /**
+     * Run the task on the first frame at or after each of its intervals
+     */
+    public void addTask(Object owner, Sync.Task task) {
+        entries.add(new Entry(owner, task, sync.now()));
+        updateTickRate();
+    }
+
+    /**
+     * Cancel every task added by the given owner
+     * @return How many were cancelled
+     */
+    public int releaseTasks(Object owner) {
+        int count = 0;
+        for ( Entry entry : entries ) {
+            if ( entry.owner==owner ) {
+                entry.task.cancel();
+                entries.remove(entry);
+                count++;
+            }
+        }
+        updateTickRate();
+        return count;
+    }
+
+    public int countTasks() {
+        return entries.size();
+    }
+
+    /**
+     * Every task currently ticked by the frame clock
+     */
+    public List<Sync.Task> getTasks() {
+        List<Sync.Task> result = new ArrayList<>();
+        for ( Entry entry : entries ) {
+            result.add(entry.task);
+        }
+        return result;
+    }
+
+
+    ////////////
+    // Frames //
+    ////////////
+
+    /**
+     * Tick whatever is due, then publish once
+     */
+    public void frame() {
+        long start = sync.now();
+        runDueTasks(start, true);
+        publisher.run();
+        record(start, sync.now());
+        updateTickRate();
+    }
+
+    /**
+     * Between frames, run the tasks that are due more often than frames are
+     */
+    private void tick() {
+        runDueTasks(sync.now(), false);
+    }
+
+    /**
+     * @param everyFrame Whether to include tasks with no interval, which run once per frame
+     */
+    private void runDueTasks(long start, boolean everyFrame) {
+        for ( Entry entry : entries ) {
+            if ( entry.task.isCancelled() ) {
+                entries.remove(entry);
+            } else if ( start - entry.due >= 0 && (everyFrame || isTimed(entry.task)) ) {
+                if ( entry.task.isActive() ) {
+                    long taskStart = sync.now();
+                    entry.task.runTask();
+                    entry.task.recordRun(start - entry.due, sync.now() - taskStart);
+                }
+                entry.reschedule(start);
+            }
+        }
+    }
+
+    /**
+     * Run the tick task at the shortest interval of any active task quicker than the frames,
+     * and pause it when there are none. Held under the lock throughout, so a recalculation that
+     * saw an older set of tasks can't land after a newer one
+     */
+    private void updateTickRate() {
+        synchronized (tickLock) {
+            Sync.Task task = tickTask;
+            Integer id = tickTaskId;
+            if ( task==null || id==null ) {
+                return;
+            }
+            long shortest = Long.MAX_VALUE;
+            for ( Entry entry : entries ) {
+                if ( entry.task.isActive() && !entry.task.isCancelled() && isTimed(entry.task) ) {
+                    shortest = Math.min(shortest, entry.task.getInterval());
+                }
+            }
+            if ( TimeUnit.MILLISECONDS.toNanos(shortest) < budgetNanos ) {
+                task.setInterval(shortest);
+                sync.resumeTask(id);
+            } else if ( task.isActive() ) {
+                sync.pauseTask(id);
+            }
+        }
+    }
+
+    private static boolean isTimed(Sync.Task task) {
+        Long interval = task.getInterval();
+        return interval!=null && interval > 0;
+    }
+
+    private void record(long start, long end) {
+        long duration = end - start;
+        frames++;
+        totalFrameNanos += duration;
+        lastFrameNanos = duration;
+        if ( duration > maxFrameNanos ) {
+            maxFrameNanos = duration;
+        }
+        if ( budgetNanos > 0 ) {
+            if ( duration > budgetNanos ) {
+                missedDeadlines++;
+            }
+            if ( lastFrameStart!=0 ) {
+                long skipped = (start - lastFrameStart) / budgetNanos - 1;
+                if ( skipped > 0 ) {
+                    droppedFrames += skipped;
+                }
+            }
+        }
+        lastFrameStart = start;
+    }
+
+
+    ///////////
+    // Stats //
+    ///////////
+
+    private volatile long frames;
+    private volatile long missedDeadlines;
+    private volatile long droppedFrames;
+    private volatile long lastFrameNanos;
+    private volatile long maxFrameNanos;
+    private volatile long totalFrameNanos;
+
+    public void resetStats() {
+        frames = 0;
+        missedDeadlines = 0;
+        droppedFrames = 0;
+        lastFrameNanos = 0;
+        maxFrameNanos = 0;
+        totalFrameNanos = 0;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getMissedDeadlines() {
+        return missedDeadlines;
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public long getLastFrameMicros() {
+        return lastFrameNanos / 1000;
+    }
+
+    public long getMaxFrameMicros() {
+        return maxFrameNanos / 1000;
+    }
+
+    public long getAverageFrameMicros() {
+        long count = frames;
+        return count==0 ? 0 : totalFrameNanos / count / 1000;
+    }
+
+    /**
+     * @return Frame budget in microseconds, or 0 if frames run back to back
+     */
+    public long getBudgetMicros() {
+        return budgetNanos / 1000;
+    }
+
+    private static class Entry {
+
+        private final Object owner;
+        private final Sync.Task task;
+        private long due;
+
+        private Entry(Object owner, Sync.Task task, long due) {
+            this.owner = owner;
+            this.task = task;
+            this.due = due;
+        }
+
+        private void reschedule(long now) {
+            Long interval = task.getInterval();
+            long period = interval==null ? 0 : TimeUnit.MILLISECONDS.toNanos(interval);
+            due += period;
+            if ( due - now <= 0 ) {
+                due = now + period;
+            }
+        }
+
+    }
+
+}
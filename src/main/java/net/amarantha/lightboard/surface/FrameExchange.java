@@ -0,0 +1,86 @@
+package net.amarantha.lightboard.surface;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer for handing complete frames from one thread to another.
+ *
+ * The producer fills its back buffer and swaps it into the middle slot with a single atomic
+ * operation; the consumer swaps the middle slot with its front buffer when a new frame is
+ * waiting. Neither side ever sees a buffer the other is writing to, and nothing is allocated
+ * after construction. Each buffer remembers what it has missed since it was last written, so
+ * publishing only copies the damaged spans. It also carries what changed since the frame the
+ * consumer last took, so the consumer can redo only that part of its own work.
+ *
+ * There must be exactly one producer thread and one consumer thread.
+ */
+public class FrameExchange {
+
+    private static final int INDEX = 0x3;
+    private static final int FRESH = 0x4;
+
+    private final FrameBuffer[] buffers = new FrameBuffer[3];
+    private final Damage[] stale = new Damage[3];
+    private final Damage[] changes = new Damage[3];
+
+    private final AtomicInteger middle = new AtomicInteger(2);
+
+    // Owned by the producer
+    private int back = 0;
+
+    // Owned by the consumer
+    private int front = 1;
+
+    public FrameExchange(int rows, int cols) {
+        for ( int i=0; i<3; i++ ) {
+            buffers[i] = new FrameBuffer(rows, cols);
+            stale[i] = new Damage(rows, cols);
+            changes[i] = new Damage(rows, cols);
+        }
+    }
+
+    /**
+     * Producer: bring the back buffer up to date with the source and make it the latest frame
+     * @param damage What has changed in the source since the previous publish
+     */
+    public void publish(FrameBuffer source, Damage damage) {
+        for ( Damage s : stale ) {
+            s.add(damage);
+        }
+        buffers[back].copyFrom(source, stale[back]);
+        stale[back].clear();
+
+        changes[back].clear();
+        changes[back].add(damage);
+        int waiting = middle.get();
+        if ( (waiting & FRESH)!=0 ) {
+            // The consumer will skip straight past the frame it hasn't taken yet
+            changes[back].add(changes[waiting & INDEX]);
+        }
+        back = middle.getAndSet(back | FRESH) & INDEX;
+    }
+
+    /**
+     * Consumer: the most recently published frame.
+     * The returned buffer will not be written to until the next call to acquire()
+     */
+    public FrameBuffer acquire() {
+        if ( (middle.get() & FRESH)!=0 ) {
+            front = middle.getAndSet(front) & INDEX;
+        }
+        return buffers[front];
+    }
+
+    /**
+     * Consumer: what changed between the frame acquire() returned before it last switched frames
+     * and the one it returns now. May cover more than changed, never less
+     */
+    public Damage getChanges() {
+        return changes[front];
+    }
+
+    public boolean hasNewFrame() {
+        return (middle.get() & FRESH)!=0;
+    }
+
+}
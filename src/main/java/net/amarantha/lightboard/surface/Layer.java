@@ -0,0 +1,160 @@
+package net.amarantha.lightboard.surface;
+
+/**
+ * A full-size surface drawn over the LightBoardSurface, so that a zone can render over another
+ * (a clock over an image banner, say) without either redrawing the other.
+ *
+ * Pixels that are off are transparent. Lit pixels are mixed with whatever is beneath them
+ * according to the blend mode and the layer's opacity when the surface is published, and only
+ * where something has changed.
+ */
+public class Layer extends DrawingSurface {
+
+    public enum Blend {
+        /** Replace what is beneath */
+        NORMAL,
+        /** Add to what is beneath, saturating at full brightness */
+        ADD,
+        /** Keep the brighter of the two, channel by channel */
+        LIGHTEN
+    }
+
+    private final int z;
+
+    private volatile Blend blend = Blend.NORMAL;
+    private volatile int alpha = 256;
+    private volatile boolean visible = true;
+
+    Layer(int rows, int cols, int z) {
+        this.z = z;
+        allocate(rows, cols);
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+
+    /////////////
+    // Options //
+    /////////////
+
+    public synchronized Layer setBlend(Blend blend) {
+        if ( this.blend!=blend ) {
+            this.blend = blend;
+            markContent();
+        }
+        return this;
+    }
+
+    public Blend getBlend() {
+        return blend;
+    }
+
+    /**
+     * @param opacity 0 (invisible) to 1 (solid)
+     */
+    public synchronized Layer setOpacity(double opacity) {
+        int newAlpha = (int) Math.round(Math.max(0.0, Math.min(1.0, opacity)) * 256);
+        if ( alpha!=newAlpha ) {
+            alpha = newAlpha;
+            markContent();
+        }
+        return this;
+    }
+
+    public double getOpacity() {
+        return alpha / 256.0;
+    }
+
+    public synchronized Layer setVisible(boolean visible) {
+        if ( this.visible!=visible ) {
+            this.visible = visible;
+            markContent();
+        }
+        return this;
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * A change of option affects every lit pixel, and nothing else
+     */
+    private void markContent() {
+        int[] pixels = frame.getPixels();
+        for ( int y=0; y<rows; y++ ) {
+            int first = -1;
+            int last = -1;
+            int i = y * cols;
+            for ( int x=0; x<cols; x++, i++ ) {
+                if ( pixels[i]!=FrameBuffer.OFF ) {
+                    if ( first < 0 ) {
+                        first = x;
+                    }
+                    last = x;
+                }
+            }
+            if ( first >= 0 ) {
+                damage.add(first, y, last - first + 1, 1);
+            }
+        }
+    }
+
+
+    /////////////////
+    // Compositing //
+    /////////////////
+
+    /**
+     * Hand everything that has changed since the last call over to the surface's damage
+     */
+    synchronized void takeDamage(Damage into) {
+        into.add(damage);
+        damage.clear();
+    }
+
+    /**
+     * Mix the damaged spans of this layer into the target, which already holds everything beneath
+     */
+    synchronized void blendOnto(FrameBuffer target, Damage spans) {
+        if ( !visible || alpha==0 ) {
+            return;
+        }
+        int[] source = frame.getPixels();
+        int[] dest = target.getPixels();
+        for ( int y=spans.getTop(); y>=0 && y<=spans.getBottom(); y++ ) {
+            if ( spans.isRowDamaged(y) ) {
+                int end = y * cols + spans.getRight(y);
+                for ( int i = y * cols + spans.getLeft(y); i<=end; i++ ) {
+                    int pixel = source[i];
+                    if ( pixel!=FrameBuffer.OFF ) {
+                        dest[i] = blend(dest[i], pixel);
+                    }
+                }
+            }
+        }
+    }
+
+    private int blend(int below, int pixel) {
+        if ( blend==Blend.NORMAL && alpha==256 ) {
+            return pixel;
+        }
+        return (mix(below >> 16, pixel >> 16) << 16) | (mix(below >> 8, pixel >> 8) << 8) | mix(below, pixel);
+    }
+
+    private int mix(int below, int over) {
+        below &= 0xFF;
+        over &= 0xFF;
+        switch ( blend ) {
+            case ADD:
+                return Math.min(0xFF, below + ((over * alpha) >> 8));
+            case LIGHTEN:
+                over = Math.max(below, over);
+                break;
+        }
+        return below + (((over - below) * alpha) >> 8);
+    }
+
+}
@@ -1,29 +1,27 @@
 package net.amarantha.lightboard.surface;
 
 import net.amarantha.lightboard.board.LightBoard;
-import net.amarantha.lightboard.entity.Pattern;
 import net.amarantha.lightboard.utility.Sync;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Singleton
-public class LightBoardSurface {
+public class LightBoardSurface extends DrawingSurface {
 
-    private int rows;
-    private int cols;
+    private Damage publishedDamage;
 
-    private double[][][] ledState;
+    private FrameExchange frames;
 
     private final LightBoard board;
-    private final Sync sync;
-
-    protected Region boardRegion;
+    private final FrameClock frameClock;
 
     @Inject
     public LightBoardSurface(LightBoard board, Sync sync) {
         this.board = board;
-        this.sync = sync;
+        frameClock = new FrameClock(sync, this::publish);
     }
 
     ///////////////////
@@ -31,195 +29,110 @@ public class LightBoardSurface {
     ///////////////////
 
     public LightBoardSurface init(int rows, int cols) {
-        this.rows = rows;
-        this.cols = cols;
         board.init(rows, cols);
-        ledState = new double[3][rows][cols];
-
-        boardRegion = safeRegion(0, 0, cols, rows);
+        allocate(rows, cols);
+        publishedDamage = new Damage(rows, cols);
+        frames = new FrameExchange(rows, cols);
 
         System.out.println("Starting LightBoardSurface....");
-        sync.addTask(new Sync.Task(board.getUpdateInterval()) {
-            @Override
-            public void runTask() {
-                board.update(ledState);
-            }
-        });
+        frameClock.start(board.getUpdateInterval());
         System.out.println("Surface Active");
         return this;
     }
 
-    public boolean isOn(int x, int y) {
-        return pointInRegion(x, y, boardRegion)
-                && (
-                           ledState[0][y][x] >= 0.5
-                        || ledState[1][y][x] >= 0.5
-                        || ledState[2][y][x] >= 0.5
-                )
-        ;
-    }
-
-    public boolean drawPoint(int x, int y) {
-        return drawPoint(x, y, 1.0, 1.0, 1.0, boardRegion);
-    }
-
-    public boolean clearPoint(int x, int y) {
-        return drawPoint(x, y, 0.0, 0.0, 0.0, boardRegion);
-    }
-
-    public boolean drawPoint(int x, int y, Region r) {
-        return drawPoint(x, y, 1.0, 1.0, 1.0, r);
-    }
-
-    public boolean clearPoint(int x, int y, Region r) {
-        return drawPoint(x, y, 0.0, 0.0, 0.0, r);
-    }
-
-    public boolean drawPoint(int x, int y, double red, double green, double blue, Region r) {
-        if ( pointInRegion(x, y, r) ) {
-            ledState[0][y][x] = Math.max(Math.min(red, 1.0), 0.0);
-            ledState[1][y][x] = Math.max(Math.min(green, 1.0), 0.0);
-            ledState[2][y][x] = Math.max(Math.min(blue, 1.0), 0.0);
-            return true;
-        } else {
-            return false;
-        }
-    }
-
-    public synchronized boolean drawPattern(int xPos, int yPos, Pattern pattern) {
-        return drawPattern(xPos, yPos, pattern, boardRegion);
-    }
-    public synchronized boolean drawPattern(int xPos, int yPos, Pattern pattern, Region r) {
-        return drawPattern(xPos, yPos, pattern, false, r);
-    }
-
-    public synchronized boolean drawPattern(int xPos, int yPos, Pattern pattern, boolean clearBackground, Region r) {
-        boolean changed = false;
-        double[][][] chr = pattern.getColourValues();
-        if ( chr.length>=3 && chr[0].length>0 && chr[0][0].length> 0 ) {
-            for (int x = 0; x < getCols(); x++) {
-                for (int y = 0; y < getRows(); y++) {
-                    if ( x-xPos >= 0 && x-xPos < chr[0][0].length && y-yPos >= 0 && y-yPos < chr[0].length ) {
-                        int imgCol = x-xPos;
-                        int imgRow = y-yPos;
-                        double red = chr[0][imgRow][imgCol];
-                        double green = chr[1][imgRow][imgCol];
-                        double blue = chr[2][imgRow][imgCol];
-                        if ( clearBackground || (red>0.0 && green>0.0 && blue>0.0) ) {
-                            changed |= drawPoint(x, y, chr[0][imgRow][imgCol], chr[1][imgRow][imgCol], chr[2][imgRow][imgCol], r);
-                        }
-                    }
+    /**
+     * Snapshot the surface and push it to the board along with everything that has changed
+     * since the last push. The board receives a complete frame that zones cannot draw into,
+     * and which stays untouched until the next push
+     */
+    public void publish() {
+        Damage toPublish;
+        synchronized (this) {
+            toPublish = damage;
+            damage = publishedDamage;
+            publishedDamage = toPublish;
+            if ( layers.isEmpty() ) {
+                if ( !toPublish.isEmpty() ) {
+                    frames.publish(frame, toPublish);
                 }
+            } else {
+                composite(toPublish);
             }
         }
-        return changed;
-    }
-
-    public synchronized boolean clearPattern(int xPos, int yPos, boolean[][] chr) {
-        return clearPattern(xPos, yPos, chr, boardRegion);
+        board.update(frames.acquire(), toPublish);
+        toPublish.clear();
     }
 
-    public synchronized boolean clearPattern(int xPos, int yPos, boolean[][] chr, Region r) {
-        boolean changed = false;
-        if ( chr.length>0 && chr[0].length> 0 ) {
-            for (int x = 0; x < chr[0].length; x++) {
-                for (int y = 0; y < chr.length; y++) {
-                    if (chr[y][x]) {
-                        changed |= clearPoint(x + xPos, y + yPos, r);
-                    }
-                }
-            }
-        }
-        return changed;
-    }
 
-    public synchronized boolean clearSurface() {
-        return clearRegion(boardRegion);
-    }
+    ////////////
+    // Layers //
+    ////////////
 
-    public synchronized boolean clearRegion(Region r) {
-        boolean changed = false;
-        for ( int x=0; x<r.width; x++ ) {
-            for ( int y=0; y<r.height; y++ ) {
-                changed |= clearPoint(r.left+x, r.top+y);
-            }
+    private final List<Layer> layers = new CopyOnWriteArrayList<>();
+    private FrameBuffer composite;
+
+    /**
+     * Add a layer over the surface. Layers with a higher z are drawn over those with a lower
+     * one, and all of them over the surface itself; a layer added at the same z as another goes
+     * on top of it
+     */
+    public Layer addLayer(int z) {
+        Layer layer = new Layer(rows, cols, z);
+        addLayer(layer);
+        return layer;
+    }
+
+    /**
+     * Put back a layer taken off with removeLayer(), with whatever it holds now
+     */
+    public synchronized void addLayer(Layer layer) {
+        if ( layers.contains(layer) ) {
+            return;
         }
-        return changed;
-    }
-
-    public synchronized boolean fillRegion(Region r) {
-        boolean changed = false;
-        for ( int x=0; x<r.width; x++ ) {
-            for ( int y=0; y<r.height; y++ ) {
-                changed |= drawPoint(r.left + x, r.top + y, r);
-            }
+        int index = 0;
+        while ( index < layers.size() && layers.get(index).getZ() <= layer.getZ() ) {
+            index++;
         }
-        return changed;
-    }
-
-    public synchronized boolean invertRegion(Region r) {
-        boolean changed = false;
-        for ( int x=0; x<r.width; x++ ) {
-            for ( int y=0; y<r.height; y++ ) {
-                int actualX = r.left+x;
-                int actualY = r.top+y;
-                if ( isOn(actualX, actualY) ) {
-                    changed |= clearPoint(actualX, actualY, r);
-                } else {
-                    changed |= drawPoint(actualX, actualY, r);
-                }
-            }
+        layers.add(index, layer);
+        if ( composite==null ) {
+            composite = new FrameBuffer(rows, cols);
         }
-        return changed;
+        damage.addAll();
     }
 
-    public synchronized boolean outlineRegion(Region r) {
-        boolean changed = false;
-        for ( int x=0; x<r.width; x++ ) {
-            if ( x==0 || x==r.width-1 ) {
-                for ( int y=0; y<r.height; y++ ) {
-                    changed |= drawPoint(r.left+x, r.top+y, r);
-                }
-            } else {
-                changed |= drawPoint(r.left+x, r.top, r);
-                changed |= drawPoint(r.left+x, r.bottom, r);
-            }
+    /**
+     * Take the layer off the surface - whatever it covered is redrawn on the next push
+     */
+    public synchronized void removeLayer(Layer layer) {
+        if ( layers.remove(layer) ) {
+            damage.addAll();
         }
-        return changed;
     }
 
+    public List<Layer> getLayers() {
+        return layers;
+    }
 
-    ////////////
-    // Region //
-    ////////////
-
-    public Region safeRegion(int left, int top, int width, int height) {
-        if ( left<0 ) {
-            width += left;
+    /**
+     * Build the published frame from the surface and the layers over it, but only where the
+     * surface or one of the layers has changed - everywhere else the last composite still holds
+     */
+    private void composite(Damage toPublish) {
+        for ( Layer layer : layers ) {
+            layer.takeDamage(toPublish);
         }
-        if ( top<0 ) {
-            height += top;
+        if ( toPublish.isEmpty() ) {
+            return;
         }
-        int safeLeft = left<0 ? 0 : left>=getCols() ? getCols()-1 : left;
-        int safeTop = top<0 ? 0 : top>=getRows() ? getRows()-1 : top;
-        int safeWidth = safeLeft+width > getCols() ? getCols()-safeLeft : width;
-        int safeHeight = safeTop+height > getRows() ? getRows()-safeTop : height;
-        return new Region(safeLeft, safeTop, safeWidth, safeHeight);
-    }
-
-    protected boolean pointInRegion(int x, int y, Region region) {
-        if ( region==null ) {
-            region = safeRegion(0, 0, getRows(), getCols());
+        composite.copyFrom(frame, toPublish);
+        for ( Layer layer : layers ) {
+            layer.blendOnto(composite, toPublish);
         }
-        return ( x>=region.left && x<=region.right && y>=region.top && y<=region.bottom );
-    }
-
-    public int getRows() {
-        return rows;
+        frames.publish(composite, toPublish);
     }
 
-    public int getCols() {
-        return cols;
+    public FrameClock getFrameClock() {
+        return frameClock;
     }
 
 }
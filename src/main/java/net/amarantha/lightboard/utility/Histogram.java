@@ -0,0 +1,137 @@
+package net.amarantha.lightboard.utility;
+
+/**
+ * Fixed-size log-linear histogram of non-negative values, in the style of HdrHistogram.
+ *
+ * Each power of two is split into 16 equal buckets, so any value is reported to within about
+ * 6%, and the whole range up to MAX_VALUE fits in a few hundred counters allocated up front.
+ * Recording never allocates, and takes a lock that is only ever contended by a reader. Readers on
+ * other threads should take a snapshot() and query that, so that the figures they report all
+ * come from the same moment.
+ */
+public class Histogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    // Anything larger is counted as this - around 19 hours in microseconds
+    public static final long MAX_VALUE = (1L << 36) - 1;
+
+    private final long[] counts = new long[indexOf(MAX_VALUE) + 1];
+
+    private long count;
+    private long total;
+    private long max;
+
+    public synchronized void record(long value) {
+        if ( value < 0 ) {
+            value = 0;
+        } else if ( value > MAX_VALUE ) {
+            value = MAX_VALUE;
+        }
+        counts[indexOf(value)]++;
+        total += value;
+        if ( value > max ) {
+            max = value;
+        }
+        count++;
+    }
+
+    public synchronized void reset() {
+        for ( int i=0; i<counts.length; i++ ) {
+            counts[i] = 0;
+        }
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+    /**
+     * @return A copy of the histogram as it stands, which no longer changes
+     */
+    public synchronized Histogram snapshot() {
+        Histogram copy = new Histogram();
+        System.arraycopy(counts, 0, copy.counts, 0, counts.length);
+        copy.count = count;
+        copy.total = total;
+        copy.max = max;
+        return copy;
+    }
+
+
+    ///////////
+    // Query //
+    ///////////
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    public synchronized long getMean() {
+        long n = count;
+        return n==0 ? 0 : total / n;
+    }
+
+    /**
+     * @param percentile 0-100
+     * @return Highest value that falls in the same bucket as the given percentile, capped at the
+     * largest value recorded
+     */
+    public synchronized long getValueAtPercentile(double percentile) {
+        long n = count;
+        if ( n==0 ) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+        long seen = 0;
+        for ( int i=0; i<counts.length; i++ ) {
+            seen += counts[i];
+            if ( seen >= target ) {
+                return Math.min(lowestValueOf(i + 1) - 1, max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Standard deviation of the values, estimated from the buckets
+     */
+    public synchronized long getStdDeviation() {
+        long n = count;
+        if ( n==0 ) {
+            return 0;
+        }
+        double mean = (double) total / n;
+        double sum = 0;
+        for ( int i=0; i<counts.length; i++ ) {
+            if ( counts[i] > 0 ) {
+                double mid = (lowestValueOf(i) + lowestValueOf(i + 1) - 1) / 2.0;
+                sum += counts[i] * (mid - mean) * (mid - mean);
+            }
+        }
+        return (long) Math.sqrt(sum / n);
+    }
+
+
+    /////////////
+    // Buckets //
+    /////////////
+
+    static int indexOf(long value) {
+        int magnitude = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        return magnitude * SUB_BUCKETS + (int) (value >> magnitude);
+    }
+
+    static long lowestValueOf(int index) {
+        if ( index < 2 * SUB_BUCKETS ) {
+            return index;
+        }
+        int magnitude = index / SUB_BUCKETS - 1;
+        return (long) (index - magnitude * SUB_BUCKETS) << magnitude;
+    }
+
+}
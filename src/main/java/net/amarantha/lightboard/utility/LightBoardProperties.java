@@ -30,6 +30,34 @@ public class LightBoardProperties extends PropertyManager {
         return props.getInt("boardCols", 192);
     }
 
+    public int getBcmBitDepth() {
+        return props.getInt("bcmBitDepth", 1);
+    }
+
+    public long getBcmBaseMicros() {
+        return props.getLong("bcmBaseMicros", 0L);
+    }
+
+    public long getRenderCacheKilobytes() {
+        return props.getLong("renderCacheKilobytes", 4096L);
+    }
+
+    public long getImageCacheKilobytes() {
+        return props.getLong("imageCacheKilobytes", 4096L);
+    }
+
+    public String getRecordingFile() {
+        return props.getString("recordingFile", "lightboard.rec");
+    }
+
+    public String getNetworkBoardHost() {
+        return props.getString("networkBoardHost", "127.0.0.1");
+    }
+
+    public int getNetworkBoardPort() {
+        return props.getInt("networkBoardPort", 7070);
+    }
+
     public int getBannerIntervalSeconds() {
         return props.getInt("bannerInterval", 60) * 1000;
     }
@@ -5,8 +5,6 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
-import static java.lang.System.currentTimeMillis;
-
 @Singleton
 public class Now {
 
@@ -16,7 +14,21 @@ public class Now {
     public static final SimpleDateFormat DATE_TIME_FORMAT = new SimpleDateFormat("dd/MM/yyyy HH:mm");
 
     public Date now() {
-        return new Date(currentTimeMillis() + offset);
+        return new Date(millis());
+    }
+
+    /**
+     * Current time in milliseconds, including any override
+     */
+    public long millis() {
+        return currentTimeMillis() + offset;
+    }
+
+    /**
+     * The underlying clock - overridden to run on simulated time
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
     }
 
     public Date date() {
@@ -44,7 +56,7 @@ public class Now {
 
     public void setDate(String date) {
         try {
-            String currentTime = TIME_FORMAT.format(timeOnly(new Date()));
+            String currentTime = TIME_FORMAT.format(timeOnly(new Date(currentTimeMillis())));
             Date d = DATE_TIME_FORMAT.parse(date + " " + currentTime);
             offset = d.getTime() - currentTimeMillis();
         } catch (ParseException e) {}
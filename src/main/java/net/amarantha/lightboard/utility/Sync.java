@@ -2,24 +2,60 @@ package net.amarantha.lightboard.utility;
 
 import com.google.inject.Singleton;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import static java.lang.Thread.NORM_PRIORITY;
 
+/**
+ * Runs the periodic Tasks that drive the board.
+ *
+ * Tasks wait in a queue ordered by when they are next due, and the sync thread parks until the
+ * earliest of them rather than spinning. A Task with no interval (or an interval of 0) is due
+ * again as soon as it has run, so it keeps the thread busy for as long as it is active. Paused
+ * Tasks leave the queue when they next fall due and go back in when resumed.
+ *
+ * Tasks may be added, paused, resumed and cancelled from any thread. A Task can be registered
+ * with an owner, and releaseTasks(owner) cancels everything that owner started. Cancelled Tasks
+ * leave the registry at once and drop out of the schedule the next time they fall due.
+ *
+ * Every run of a Task records how late it started and how long it took, in microseconds.
+ */
 @Singleton
 public class Sync {
 
+    // How long to park when there is nothing at all to do
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
     private Thread syncThread;
 
-    protected Map<Integer, Task> tasks = new HashMap<>();
+    protected Map<Integer, Task> tasks = new ConcurrentHashMap<>();
+
+    // Tasks added since the sync thread last looked, from any thread
+    private final Queue<Task> incoming = new ConcurrentLinkedQueue<>();
 
-    protected boolean run = false;
+    // Owned by the sync thread
+    private final PriorityQueue<Task> schedule = new PriorityQueue<>(Sync::compareDue);
+    private final List<Task> ran = new ArrayList<>();
+
+    protected volatile boolean run = false;
 
     public void init() {
-        tasks = new HashMap<>();
+        tasks = new ConcurrentHashMap<>();
+        incoming.clear();
+        schedule.clear();
     }
 
     public void startSyncThread() {
@@ -30,9 +66,8 @@ public class Sync {
             public void run() {
             System.out.println("Sync Thread Running");
             while (run) {
-                for ( Map.Entry<Integer, Task> entry : tasks.entrySet() ) {
-                    entry.getValue().checkAndRun();
-                }
+                runDueTasks();
+                parkUntilNextDue();
             }
             System.out.println("Sync Thread Stopped");
         }};
@@ -45,17 +80,63 @@ public class Sync {
         timer.schedule(task, 0, interval);
     }
 
-    private static int nextTask = 0;
+    private static final AtomicInteger nextTask = new AtomicInteger();
 
     public int addTask(Task task) {
-        tasks.put(nextTask, task);
-        return nextTask++;
+        return addTask(null, task);
+    }
+
+    /**
+     * @param owner Whoever is responsible for the Task, for releaseTasks() - may be null
+     * @return Id of the Task
+     */
+    public int addTask(Object owner, Task task) {
+        if ( task.id!=null ) {
+            throw new IllegalStateException("Task " + task.id + " has already been added");
+        }
+        task.id = nextTask.getAndIncrement();
+        task.owner = owner;
+        tasks.put(task.id, task);
+        incoming.add(task);
+        LockSupport.unpark(syncThread);
+        return task.id;
+    }
+
+    /**
+     * Cancel a Task - it will not run again
+     * @return Whether there was such a Task
+     */
+    public boolean removeTask(int id) {
+        Task task = tasks.remove(id);
+        if ( task!=null ) {
+            task.cancelled = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Cancel every Task added with the given owner
+     * @return How many were cancelled
+     */
+    public int releaseTasks(Object owner) {
+        int count = 0;
+        for ( Task task : tasks.values() ) {
+            if ( task.owner==owner && removeTask(task.id) ) {
+                count++;
+            }
+        }
+        return count;
     }
 
     public void resumeTask(int id) {
         Task task = tasks.get(id);
         if ( task!=null ) {
             task.active = true;
+            if ( task.parked.compareAndSet(true, false) ) {
+                incoming.add(task);
+                LockSupport.unpark(syncThread);
+            }
         }
     }
 
@@ -66,24 +147,164 @@ public class Sync {
         }
     }
 
+    /**
+     * Every Task currently registered
+     */
+    public Collection<Task> getTasks() {
+        return tasks.values();
+    }
+
     public void stopSyncThread() {
         run = false;
+        LockSupport.unpark(syncThread);
         syncThread = null;
     }
 
+
+    ////////////////
+    // Scheduling //
+    ////////////////
+
+    /**
+     * Current time on the scheduler's clock, in nanoseconds
+     */
+    public long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Run every Task that is due on the clock, once each
+     */
+    protected void runDueTasks() {
+        long now = now();
+        Task task;
+        admitNewTasks(now);
+        while ( !schedule.isEmpty() && schedule.peek().nextRun - now <= 0 ) {
+            task = schedule.poll();
+            if ( task.cancelled ) {
+                tasks.remove(task.id, task);
+                continue;
+            }
+            if ( !task.active && park(task) ) {
+                continue;
+            }
+            if ( task.active ) {
+                long start = now();
+                task.runTask();
+                task.recordRun(start - task.nextRun, now() - start);
+            }
+            task.reschedule(now);
+            ran.add(task);
+        }
+        schedule.addAll(ran);
+        ran.clear();
+    }
+
+    /**
+     * @return When the earliest Task falls due on the clock, or null if there are none
+     */
+    protected Long nextDue() {
+        admitNewTasks(now());
+        return schedule.isEmpty() ? null : schedule.peek().nextRun;
+    }
+
+    /**
+     * Leave a paused Task out of the schedule until resumeTask() puts it back
+     * @return false if it was resumed meanwhile and should stay in the schedule
+     */
+    private boolean park(Task task) {
+        task.parked.set(true);
+        return !task.active || !task.parked.compareAndSet(true, false);
+    }
+
+    private void admitNewTasks(long now) {
+        Task task;
+        while ( (task = incoming.poll())!=null ) {
+            if ( task.cancelled ) {
+                tasks.remove(task.id, task);
+            } else {
+                task.nextRun = now;
+                schedule.add(task);
+            }
+        }
+    }
+
+    private void parkUntilNextDue() {
+        long wait = schedule.isEmpty() ? IDLE_NANOS : schedule.peek().nextRun - now();
+        if ( wait > 0 && incoming.isEmpty() ) {
+            LockSupport.parkNanos(this, Math.min(wait, IDLE_NANOS));
+        }
+    }
+
+    private static int compareDue(Task a, Task b) {
+        return Long.compare(a.nextRun - b.nextRun, 0);
+    }
+
     public static abstract class Task {
-        private boolean active = true;
-        private Long interval = null;
+        private volatile boolean active = true;
+        private volatile Long interval = null;
+        private volatile boolean cancelled = false;
+        private final AtomicBoolean parked = new AtomicBoolean();
+        private volatile Integer id;
+        private Object owner;
+        private long nextRun;
         private Long lastRun = null;
+        private String name;
+        private final Histogram lag = new Histogram();
+        private final Histogram duration = new Histogram();
         public Task(Long interval) {
             this.interval = interval;
         }
+        /**
+         * @param lagNanos How long after it fell due the task started
+         * @param durationNanos How long runTask() took
+         */
+        public void recordRun(long lagNanos, long durationNanos) {
+            lag.record(lagNanos / 1000);
+            duration.record(durationNanos / 1000);
+        }
+        /**
+         * @return Microseconds between falling due and starting
+         */
+        public Histogram getLag() {
+            return lag;
+        }
+        /**
+         * @return Microseconds spent in runTask()
+         */
+        public Histogram getDuration() {
+            return duration;
+        }
+        public Task setName(String name) {
+            this.name = name;
+            return this;
+        }
+        public String getName() {
+            if ( name!=null ) {
+                return name;
+            }
+            Class<?> type = getClass().isAnonymousClass() ? getClass().getEnclosingClass() : getClass();
+            return type.getSimpleName();
+        }
+        private void reschedule(long now) {
+            Long current = interval;
+            long period = current==null ? 0 : TimeUnit.MILLISECONDS.toNanos(current);
+            nextRun += period;
+            if ( nextRun - now <= 0 ) {
+                // Fell behind - skip the missed runs rather than firing them back to back
+                nextRun = now + period;
+            }
+        }
+        /**
+         * Run now if active and the interval has passed, for driving a Task by hand outside Sync
+         */
         public void checkAndRun() {
             if ( active ) {
                 long now = System.currentTimeMillis();
-                if (interval == null) {
+                Long current = interval;
+                if ( current==null ) {
                     runTask();
-                } else if (lastRun == null || now - lastRun >= interval) {
+                } else if ( lastRun==null || now - lastRun >= current ) {
                     runTask();
                     lastRun = now;
                 }
@@ -92,6 +313,27 @@ public class Sync {
         public void setInterval(Long interval) {
             this.interval = interval;
         }
+        public Long getInterval() {
+            return interval;
+        }
+        public boolean isActive() {
+            return active;
+        }
+        public void cancel() {
+            cancelled = true;
+        }
+        public boolean isCancelled() {
+            return cancelled;
+        }
+        /**
+         * @return Id given by Sync.addTask(), or null if not yet added
+         */
+        public Integer getId() {
+            return id;
+        }
+        public Object getOwner() {
+            return owner;
+        }
         public abstract void runTask();
     }
 
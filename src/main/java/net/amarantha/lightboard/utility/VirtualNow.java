@@ -0,0 +1,24 @@
+package net.amarantha.lightboard.utility;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Now, read from the simulated clock of a VirtualSync
+ */
+@Singleton
+public class VirtualNow extends Now {
+
+    private final VirtualSync sync;
+
+    @Inject
+    public VirtualNow(VirtualSync sync) {
+        this.sync = sync;
+    }
+
+    @Override
+    protected long currentTimeMillis() {
+        return sync.currentTimeMillis();
+    }
+
+}
@@ -0,0 +1,143 @@
+package net.amarantha.lightboard.utility;
+
+import com.google.inject.Singleton;
+
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sync on a simulated clock, for fast-forward simulation and soak tests.
+ *
+ * There is no sync thread: time only moves when advance() is called, and it jumps straight from
+ * one due Task to the next, so a day of scene cycling runs as fast as the tasks themselves. Timer
+ * tasks are scheduled on the same clock, and VirtualNow reads it, so scene durations, updater
+ * refreshes and wall-clock times all follow simulated time.
+ *
+ * Tasks with no interval would be due continuously, so they run once per minimum step.
+ */
+@Singleton
+public class VirtualSync extends Sync {
+
+    private static final long DEFAULT_STEP_MILLIS = 1;
+
+    private long nanos = 0;
+    private long epochMillis = System.currentTimeMillis();
+    private long stepNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_STEP_MILLIS);
+
+    private long busyNanos = 0;
+    private long passes = 0;
+    private long statsFrom = 0;
+
+    @Override
+    public void startSyncThread() {
+        System.out.println("Starting Virtual Sync with " + tasks.size() + " tasks");
+        run = true;
+    }
+
+    @Override
+    public void stopSyncThread() {
+        run = false;
+    }
+
+    @Override
+    public void startTimerTask(TimerTask task, Long interval) {
+        addTask(task, new Task(interval) {
+            @Override
+            public void runTask() {
+                task.run();
+            }
+        }.setName("Timer"));
+    }
+
+
+    //////////
+    // Time //
+    //////////
+
+    @Override
+    public long now() {
+        return nanos;
+    }
+
+    /**
+     * Simulated wall-clock time
+     */
+    public long currentTimeMillis() {
+        return epochMillis + TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * Set the simulated wall-clock time, without running anything
+     */
+    public void setCurrentTimeMillis(long millis) {
+        epochMillis = millis - TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * How far time moves between passes when a Task with no interval is due
+     */
+    public void setMinimumStep(long millis) {
+        stepNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    public void advance(long amount, TimeUnit unit) {
+        advanceNanos(unit.toNanos(amount));
+    }
+
+    public void advance(long millis) {
+        advance(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Move the clock forward, running every Task as it falls due on the way
+     */
+    public void advanceNanos(long amount) {
+        long target = nanos + amount;
+        while ( true ) {
+            long started = System.nanoTime();
+            runDueTasks();
+            busyNanos += System.nanoTime() - started;
+            passes++;
+            Long due = nextDue();
+            if ( due==null || due - target > 0 ) {
+                break;
+            }
+            nanos = Math.max(due, nanos + stepNanos);
+            if ( nanos - target > 0 ) {
+                break;
+            }
+        }
+        nanos = target;
+    }
+
+
+    ///////////
+    // Stats //
+    ///////////
+
+    /**
+     * Real time spent running tasks since the clock started
+     */
+    public long getBusyNanos() {
+        return busyNanos;
+    }
+
+    public long getPasses() {
+        return passes;
+    }
+
+    /**
+     * Real milliseconds of work per simulated hour, so far
+     */
+    public double getBusyMillisPerHour() {
+        long elapsed = nanos - statsFrom;
+        return elapsed==0 ? 0 : (busyNanos / 1e6) * TimeUnit.HOURS.toNanos(1) / elapsed;
+    }
+
+    public void resetStats() {
+        busyNanos = 0;
+        passes = 0;
+        statsFrom = nanos;
+    }
+
+}
@@ -2,7 +2,11 @@ package net.amarantha.lightboard.webservice;
 
 import com.google.inject.Inject;
 import net.amarantha.lightboard.scene.SceneManager;
+import net.amarantha.lightboard.surface.FrameClock;
+import net.amarantha.lightboard.surface.LightBoardSurface;
+import net.amarantha.lightboard.utility.Histogram;
 import net.amarantha.lightboard.utility.PropertyManager;
+import net.amarantha.lightboard.utility.Sync;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
@@ -13,6 +17,7 @@ import javax.ws.rs.core.Response;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.Properties;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -22,14 +27,18 @@ public class SystemResource {
 
     private static SceneManager sceneManager;
     private static PropertyManager props;
+    private static Sync sync;
+    private static LightBoardSurface surface;
 
     public SystemResource() {
     }
 
     @Inject
-    public SystemResource(SceneManager sceneManager, PropertyManager props) {
+    public SystemResource(SceneManager sceneManager, PropertyManager props, Sync sync, LightBoardSurface surface) {
         SystemResource.sceneManager = sceneManager;
         SystemResource.props = props;
+        SystemResource.sync = sync;
+        SystemResource.surface = surface;
     }
 
     private static String name = null;
@@ -183,4 +192,58 @@ public class SystemResource {
                 .build();
     }
 
+    ////////////
+    // Timing //
+    ////////////
+
+    @GET
+    @Path("timing")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getTiming() {
+        FrameClock clock = surface.getFrameClock();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Frames: %d  budget %dus  last %dus  mean %dus  max %dus  missed %d  dropped %d%n%n",
+                clock.getFrames(), clock.getBudgetMicros(), clock.getLastFrameMicros(), clock.getAverageFrameMicros(),
+                clock.getMaxFrameMicros(), clock.getMissedDeadlines(), clock.getDroppedFrames()));
+        sb.append(String.format("%-24s %8s | %-31s | %-31s%n", "Task (us)", "runs", "lag p50/p99/max/jitter", "duration p50/p99/max/jitter"));
+        appendTasks(sb, sync.getTasks());
+        appendTasks(sb, clock.getTasks());
+        return Response.ok()
+                .header("Access-Control-Allow-Origin", "*")
+                .entity(sb.toString())
+                .build();
+    }
+
+    @POST
+    @Path("timing/reset")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response resetTiming() {
+        for ( Sync.Task task : sync.getTasks() ) {
+            task.getLag().reset();
+            task.getDuration().reset();
+        }
+        for ( Sync.Task task : surface.getFrameClock().getTasks() ) {
+            task.getLag().reset();
+            task.getDuration().reset();
+        }
+        surface.getFrameClock().resetStats();
+        return Response.ok()
+                .header("Access-Control-Allow-Origin", "*")
+                .entity("Timing reset")
+                .build();
+    }
+
+    private static void appendTasks(StringBuilder sb, Collection<Sync.Task> tasks) {
+        for ( Sync.Task task : tasks ) {
+            Histogram lag = task.getLag().snapshot();
+            Histogram duration = task.getDuration().snapshot();
+            sb.append(String.format("%-24s %8d | %-31s | %-31s%n",
+                    task.getName(), duration.getCount(), summary(lag), summary(duration)));
+        }
+    }
+
+    private static String summary(Histogram h) {
+        return h.getValueAtPercentile(50) + "/" + h.getValueAtPercentile(99) + "/" + h.getMax() + "/" + h.getStdDeviation();
+    }
+
 }
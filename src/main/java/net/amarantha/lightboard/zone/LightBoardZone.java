@@ -4,6 +4,9 @@ import net.amarantha.lightboard.entity.AlignH;
 import net.amarantha.lightboard.entity.AlignV;
 import net.amarantha.lightboard.entity.Edge;
 import net.amarantha.lightboard.entity.Pattern;
+import net.amarantha.lightboard.surface.DrawingSurface;
+import net.amarantha.lightboard.surface.FrameBuffer;
+import net.amarantha.lightboard.surface.Layer;
 import net.amarantha.lightboard.surface.LightBoardSurface;
 import net.amarantha.lightboard.surface.Region;
 import net.amarantha.lightboard.utility.Sync;
@@ -11,16 +14,21 @@ import net.amarantha.lightboard.utility.Sync;
 import java.util.ArrayList;
 import java.util.List;
 
-import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public abstract class LightBoardZone {
 
     protected final LightBoardSurface surface;
     protected final Sync sync;
 
+    // Where the zone draws - the surface itself unless the zone has a layer of its own
+    protected DrawingSurface canvas;
+    private Layer layer;
+
     protected LightBoardZone(LightBoardSurface surface, Sync sync) {
         this.surface = surface;
         this.sync = sync;
+        canvas = surface;
         region = surface.safeRegion(0, 0, surface.getCols(), surface.getRows());
     }
 
@@ -42,23 +50,51 @@ public abstract class LightBoardZone {
 
     public LightBoardZone setScrollTick(Long scrollTick) {
         this.scrollTick = scrollTick;
+        if ( tickTask!=null ) {
+            tickTask.setInterval(scrollTick);
+        }
         return this;
     }
 
     public LightBoardZone start() {
+        if ( layer!=null ) {
+            surface.addLayer(layer);
+        }
+        startTicking();
+        onScrollComplete();
+        resetScroll();
+        return this;
+    }
+
+    /**
+     * Release the tick task and take the zone's layer off the surface - start() brings both back
+     */
+    public void stop() {
+        surface.getFrameClock().releaseTasks(this);
+        tickTask = null;
+        if ( layer!=null ) {
+            surface.removeLayer(layer);
+        }
+    }
+
+    protected void startTicking() {
+        if ( tickTask!=null ) {
+            tickTask.cancel();
+            tickTask = null;
+        }
         if ( !singleRender ) {
-            sync.addTask(new Sync.Task(scrollTick) {
+            tickTask = new Sync.Task(scrollTick) {
                 @Override
                 public void runTask() {
                     tick();
                 }
-            });
+            }.setName(getClass().getSimpleName());
+            surface.getFrameClock().addTask(this, tickTask);
         }
-        onScrollComplete();
-        resetScroll();
-        return this;
     }
 
+    private Sync.Task tickTask;
+
     protected boolean paused = true;
     protected boolean singleRender = false;
     protected boolean rendered = false;
@@ -90,6 +126,13 @@ public abstract class LightBoardZone {
         }
     }
 
+    /**
+     * Time on the Sync clock, so that rests follow simulated time too
+     */
+    protected long currentTimeMillis() {
+        return NANOSECONDS.toMillis(sync.now());
+    }
+
     protected Long scrollTick = null;
     private long lastTick;
     protected boolean resting;
@@ -267,25 +310,41 @@ public abstract class LightBoardZone {
 
     protected void doRender() {
 
-        if ( clear ) {
-            surface.clearRegion(region);
+        boolean drawn;
+        FrameBuffer content = getContentFrame();
+        if ( content!=null ) {
+            drawn = canvas.blit(region.left+contentLeft, region.top+contentTop, content, clear, region);
+        } else {
+            if ( clear ) {
+                canvas.clearRegion(region);
+            }
+            drawn = render();
         }
 
-        if ( !render() && autoReset ) {
+        if ( !drawn && autoReset ) {
             onScrollComplete();
             resetScroll();
         }
 
         if ( outline ) {
-            surface.outlineRegion(region);
+            canvas.outlineRegion(region);
         }
 
         if ( invert ) {
-            surface.invertRegion(region);
+            canvas.invertRegion(region);
         }
 
     }
 
+    /**
+     * Zones whose content only moves between ticks can return it here, rendered once, and each
+     * tick becomes a single blit at the scroll offset instead of a call to render()
+     * @return The content as it would be drawn by render(), or null to always render
+     */
+    protected FrameBuffer getContentFrame() {
+        return null;
+    }
+
     public int getContentWidth() {
         return region.width;
     }
@@ -300,37 +359,37 @@ public abstract class LightBoardZone {
     /////////////////////
 
     protected boolean drawPoint(int x, int y) {
-        return surface.drawPoint(region.left+contentLeft+x, region.top+contentTop+y, region);
+        return canvas.drawPoint(region.left+contentLeft+x, region.top+contentTop+y, region);
     }
 
     protected boolean clearPoint(int x, int y) {
-        return surface.clearPoint(region.left + contentLeft + x, region.top + contentTop + y, region);
+        return canvas.clearPoint(region.left + contentLeft + x, region.top + contentTop + y, region);
     }
 
     protected boolean drawRect(int x, int y, int width, int height, boolean fill) {
         Region toDraw = surface.safeRegion(region.left+contentLeft+x, region.top+contentTop+y, width, height);
         if ( fill ) {
-            return surface.fillRegion(toDraw);
+            return canvas.fillRegion(toDraw);
         } else {
-            return surface.outlineRegion(toDraw);
+            return canvas.outlineRegion(toDraw);
         }
     }
 
     protected boolean clearRect(int x, int y, int width, int height) {
         Region toDraw = surface.safeRegion(region.left+contentLeft+x, region.top+contentTop+y, width, height);
-        return surface.clearRegion(toDraw);
+        return canvas.clearRegion(toDraw);
     }
 
     public boolean clear() {
-        return surface.clearRegion(region);
+        return canvas.clearRegion(region);
     }
 
     protected boolean drawPattern(int x, int y, Pattern pattern) {
-        return surface.drawPattern(region.left+contentLeft+x, region.top+contentTop+y, pattern, region);
+        return canvas.drawPattern(region.left+contentLeft+x, region.top+contentTop+y, pattern, region);
     }
 
     protected boolean drawPattern(int x, int y, Pattern pattern, boolean clearBackground) {
-        return surface.drawPattern(region.left+contentLeft+x, region.top+contentTop+y, pattern, clearBackground, region);
+        return canvas.drawPattern(region.left+contentLeft+x, region.top+contentTop+y, pattern, clearBackground, region);
     }
 
 
@@ -373,6 +432,28 @@ public abstract class LightBoardZone {
         return this;
     }
 
+    /**
+     * Draw the zone into a layer of its own at the given z, over the surface and any layer
+     * with a lower z. Anything the zone had drawn so far is cleared
+     */
+    public LightBoardZone onLayer(int z) {
+        clear();
+        if ( layer!=null ) {
+            surface.removeLayer(layer);
+        }
+        layer = surface.addLayer(z);
+        canvas = layer;
+        return this;
+    }
+
+    /**
+     * @return The zone's layer, for setting its opacity and blend, or null if it draws straight
+     * onto the surface
+     */
+    public Layer getLayer() {
+        return layer;
+    }
+
     public LightBoardZone region(Region region) {
         this.region = region;
         return this;
@@ -0,0 +1,155 @@
+package net.amarantha.lightboard.zone.impl;
+
+import com.google.inject.Inject;
+import net.amarantha.lightboard.entity.Edge;
+import net.amarantha.lightboard.entity.Pattern;
+import net.amarantha.lightboard.image.AnimationFrame;
+import net.amarantha.lightboard.image.AnimationSource;
+import net.amarantha.lightboard.image.AnimationStream;
+import net.amarantha.lightboard.image.ImageCache;
+import net.amarantha.lightboard.surface.FrameBuffer;
+import net.amarantha.lightboard.surface.LightBoardSurface;
+import net.amarantha.lightboard.utility.Sync;
+import net.amarantha.lightboard.zone.LightBoardZone;
+
+import java.io.IOException;
+
+/**
+ * Plays an animated GIF, or a numbered sequence of images, scaled to fit the zone.
+ *
+ * Frames are decoded in the background a window at a time, and each is shown for its own delay
+ * by a task on the frame clock, alongside the zone's usual scrolling. The zone is blank until the
+ * first frame is ready.
+ */
+public class AnimationZone extends LightBoardZone {
+
+    @Inject private ImageCache imageCache;
+
+    private int window = 16;
+    private int sequenceDelay = 100;
+
+    private AnimationStream stream;
+    private FrameBuffer frame;
+    private FrameBuffer blank;
+    private Sync.Task frameTask;
+
+    @Inject
+    public AnimationZone(LightBoardSurface surface, Sync sync) {
+        super(surface, sync);
+        scroll(Edge.NO_SCROLL, Edge.NO_SCROLL);
+        clear(false);
+        setRestDuration(10000);
+    }
+
+    /**
+     * @param path An animated GIF, or a numbered image sequence as a format pattern such as
+     *             "frames/walk%03d.png"
+     */
+    public AnimationZone loadAnimation(String path) {
+        closeStream();
+        try {
+            AnimationSource source = AnimationSource.open(path, sequenceDelay);
+            stream = new AnimationStream(source, getRegion().width, getRegion().height, window, imageCache.getDecoder());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return this;
+    }
+
+    /**
+     * How many frames to decode ahead - the most that are ever held at once. Takes effect from
+     * the next loadAnimation()
+     */
+    public AnimationZone setWindow(int frames) {
+        window = frames;
+        return this;
+    }
+
+    /**
+     * How long to show each image of a sequence, which has no delays of its own
+     */
+    public AnimationZone setSequenceDelay(int millis) {
+        sequenceDelay = millis;
+        return this;
+    }
+
+    private void closeStream() {
+        if ( stream!=null ) {
+            stream.close();
+            stream = null;
+        }
+        frame = null;
+    }
+
+
+    ////////////
+    // Frames //
+    ////////////
+
+    @Override
+    protected void startTicking() {
+        super.startTicking();
+        if ( frameTask!=null ) {
+            frameTask.cancel();
+            frameTask = null;
+        }
+        if ( !singleRender ) {
+            frameTask = new Sync.Task(null) {
+                @Override
+                public void runTask() {
+                    nextFrame();
+                }
+            }.setName("AnimationZone Frames");
+            surface.getFrameClock().addTask(this, frameTask);
+        }
+    }
+
+    /**
+     * Show the next frame if it has been decoded, and come back after its delay - otherwise try
+     * again on the next frame of the clock
+     */
+    private void nextFrame() {
+        AnimationFrame next = stream==null ? null : stream.poll();
+        if ( next==null ) {
+            frameTask.setInterval(null);
+            return;
+        }
+        Pattern pattern = next.getPattern();
+        if ( frame==null || frame.getRows()!=pattern.getRows() || frame.getCols()!=pattern.getCols() ) {
+            frame = new FrameBuffer(pattern.getRows(), pattern.getCols());
+        }
+        frame.copyFrom(pattern);
+        frameTask.setInterval((long) next.getDelay());
+        if ( resting && !paused ) {
+            // The scroll tick doesn't redraw while the zone rests
+            doRender();
+        }
+    }
+
+    @Override
+    public int getContentWidth() {
+        return getContentFrame().getCols();
+    }
+
+    @Override
+    public int getContentHeight() {
+        return getContentFrame().getRows();
+    }
+
+    @Override
+    protected FrameBuffer getContentFrame() {
+        if ( frame!=null ) {
+            return frame;
+        }
+        if ( blank==null || blank.getCols()!=getRegion().width || blank.getRows()!=getRegion().height ) {
+            blank = new FrameBuffer(getRegion().height, getRegion().width);
+        }
+        return blank;
+    }
+
+    @Override
+    public boolean render() {
+        return canvas.blit(region.left+contentLeft, region.top+contentTop, getContentFrame(), true, region);
+    }
+
+}
@@ -5,6 +5,7 @@ import net.amarantha.lightboard.entity.AlignH;
 import net.amarantha.lightboard.entity.AlignV;
 import net.amarantha.lightboard.entity.Pattern;
 import net.amarantha.lightboard.font.SmallFont;
+import net.amarantha.lightboard.surface.FrameBuffer;
 import net.amarantha.lightboard.surface.LightBoardSurface;
 import net.amarantha.lightboard.utility.Sync;
 
@@ -24,6 +25,12 @@ public class ClockZone extends TextZone {
 
     private boolean colon = false;
 
+    @Override
+    protected FrameBuffer getContentFrame() {
+        // Content changes on every render
+        return null;
+    }
+
     @Override
     public boolean render() {
         boolean drawn = false;
@@ -37,8 +44,8 @@ public class ClockZone extends TextZone {
         String time = "{yellow}"+sdf.format(new Date());
         String day = "{yellow}"+new SimpleDateFormat("EEE").format(new Date());
 
-        Pattern timePattern = getFont().renderString(time);
-        Pattern dayPattern = getFont().renderString(day);
+        Pattern timePattern = renderText(time, AlignH.LEFT).getPattern();
+        Pattern dayPattern = renderText(day, AlignH.LEFT).getPattern();
 
         int timeX = (region.width-timePattern.getCols())/2;
         int dayX = (region.width-dayPattern.getCols())/2;
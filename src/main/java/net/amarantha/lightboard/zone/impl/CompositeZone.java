@@ -86,14 +86,7 @@ public class CompositeZone extends LightBoardZone {
     }
 
     public LightBoardZone start() {
-        if ( !singleRender ) {
-            sync.addTask(new Sync.Task(scrollTick) {
-                @Override
-                public void runTask() {
-                    tick();
-                }
-            });
-        }
+        startTicking();
         onScrollComplete();
         resetScroll();
         return this;
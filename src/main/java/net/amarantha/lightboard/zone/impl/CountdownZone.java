@@ -7,6 +7,7 @@ import net.amarantha.lightboard.entity.Pattern;
 import net.amarantha.lightboard.font.LargeFont;
 import net.amarantha.lightboard.font.SimpleFont;
 import net.amarantha.lightboard.font.SmallFont;
+import net.amarantha.lightboard.surface.FrameBuffer;
 import net.amarantha.lightboard.surface.LightBoardSurface;
 import net.amarantha.lightboard.utility.Now;
 import net.amarantha.lightboard.utility.Sync;
@@ -31,6 +32,12 @@ public class CountdownZone extends TextZone {
 
     private boolean on = false;
 
+    @Override
+    protected FrameBuffer getContentFrame() {
+        // Content changes on every render
+        return null;
+    }
+
     @Override
     public boolean render() {
         if ( !paused ) {
@@ -3,23 +3,24 @@ package net.amarantha.lightboard.zone.impl;
 import com.google.inject.Inject;
 import net.amarantha.lightboard.entity.Edge;
 import net.amarantha.lightboard.entity.Pattern;
+import net.amarantha.lightboard.image.ImageCache;
+import net.amarantha.lightboard.surface.FrameBuffer;
 import net.amarantha.lightboard.surface.LightBoardSurface;
 import net.amarantha.lightboard.utility.Sync;
 import net.amarantha.lightboard.zone.LightBoardZone;
-import org.imgscalr.Scalr;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-
-import static org.imgscalr.Scalr.Mode;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class ImageZone extends LightBoardZone {
 
-    Pattern imagePattern;
-    double[][][] convertedImage;
-    boolean[][] convertedImageBinary;
+    @Inject private ImageCache imageCache;
+
+    private volatile CompletableFuture<FrameBuffer> request;
+    private final AtomicReference<FrameBuffer> loaded = new AtomicReference<>();
+    private volatile FrameBuffer imageFrame;
+    private FrameBuffer placeholder;
+    private FrameBuffer blank;
 
     @Inject
     public ImageZone(LightBoardSurface surface, Sync sync) {
@@ -29,58 +30,83 @@ public class ImageZone extends LightBoardZone {
         setRestDuration(2000);
     }
 
+    /**
+     * Start loading the image, scaled to fit the zone's region. It is decoded in the background,
+     * and the placeholder is shown until the first tick after it's ready
+     */
     public ImageZone loadImage(String filename) {
-        BufferedImage image = null;
-        try {
-            image = ImageIO.read(new File(filename));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        convertImage(Scalr.resize(image, Mode.FIT_TO_WIDTH, getRegion().width, getRegion().height));
+        loaded.set(null);
+        imageFrame = null;
+        CompletableFuture<FrameBuffer> loading = imageCache.load(filename, getRegion().width, getRegion().height);
+        request = loading;
+        loading.whenComplete((frame, error) -> {
+            if ( error!=null ) {
+                error.printStackTrace();
+            } else if ( request==loading ) {
+                loaded.set(frame);
+            }
+        });
         return this;
     }
 
+    /**
+     * Shown while the image is loading, or if it can't be read - blank unless set
+     */
+    public ImageZone setPlaceholder(Pattern pattern) {
+        placeholder = FrameBuffer.fromPattern(pattern);
+        return this;
+    }
+
+    public boolean isImageReady() {
+        return imageFrame!=null || loaded.get()!=null;
+    }
+
+    /**
+     * Swap in a newly decoded image between ticks, so the scroll never sees the content change
+     * size part way through a step
+     */
+    @Override
+    public void tick() {
+        FrameBuffer frame = loaded.getAndSet(null);
+        if ( frame!=null ) {
+            boolean resized = frame.getCols()!=getContentWidth() || frame.getRows()!=getContentHeight();
+            imageFrame = frame;
+            if ( resized ) {
+                // The rest position was worked out from the placeholder, so start the scroll again
+                resetScroll();
+            }
+        }
+        super.tick();
+    }
+
     @Override
     public int getContentWidth() {
-        return convertedImage[0][0].length;
+        return getContentFrame().getCols();
     }
 
     @Override
     public int getContentHeight() {
-        return convertedImage[0].length;
+        return getContentFrame().getRows();
     }
 
     @Override
-    public boolean render() {
-        boolean drawn = drawPattern(0, 0, imagePattern, true);
-        return drawn;
+    protected FrameBuffer getContentFrame() {
+        FrameBuffer frame = imageFrame;
+        if ( frame!=null ) {
+            return frame;
+        }
+        if ( placeholder!=null ) {
+            return placeholder;
+        }
+        if ( blank==null || blank.getCols()!=getRegion().width || blank.getRows()!=getRegion().height ) {
+            blank = new FrameBuffer(getRegion().height, getRegion().width);
+        }
+        return blank;
     }
 
-    private void convertImage(BufferedImage image) {
-        convertedImage = new double[4][image.getHeight()][image.getWidth()];
-        convertedImageBinary = new boolean[image.getHeight()][image.getWidth()];
-        for ( int row=0; row<image.getHeight(); row++ ) {
-            for ( int col=0; col<image.getWidth(); col++ ) {
-                int[] pixel = (image.getRaster().getPixel(col,row,new int[3]));
-                double red = pixel[0]/255.0;
-                double green = pixel[1]/255.0;
-                double blue = pixel[2]/255.0;
-                if ( row==0 || row==image.getHeight()-1 || col==0 || col==image.getWidth()-1 ) {
-                    // put blank space around image
-                    convertedImage[0][row][col] = 0.0;
-                    convertedImage[1][row][col] = 0.0;
-                    convertedImage[2][row][col] = 0.0;
-                    convertedImage[3][row][col] = 0.0;
-                } else {
-                    convertedImageBinary[row][col] = ( red>=0.5 || green>=0.5 || blue>=0.5 );
-                    convertedImage[0][row][col] = red;
-                    convertedImage[1][row][col] = green;
-                    convertedImage[2][row][col] = blue;
-                    convertedImage[3][row][col] = (red+green+blue) / 3;     // colour 3 is a grey-scale value (not really used anymore)
-                }
-            }
-        }
-        imagePattern = new Pattern(convertedImage);
+    @Override
+    public boolean render() {
+        return canvas.blit(region.left+contentLeft, region.top+contentTop, getContentFrame(), true, region);
     }
 
 }
@@ -3,7 +3,10 @@ package net.amarantha.lightboard.zone.impl;
 import com.google.inject.Inject;
 import net.amarantha.lightboard.entity.*;
 import net.amarantha.lightboard.font.Font;
+import net.amarantha.lightboard.font.RenderCache;
+import net.amarantha.lightboard.font.RenderedText;
 import net.amarantha.lightboard.font.SimpleFont;
+import net.amarantha.lightboard.surface.FrameBuffer;
 import net.amarantha.lightboard.surface.LightBoardSurface;
 import net.amarantha.lightboard.utility.MessageQueue;
 import net.amarantha.lightboard.utility.Sync;
@@ -43,32 +46,55 @@ public class TextZone extends LightBoardZone {
     // Zone Implementation //
     /////////////////////////
 
-    private Pattern pattern;
-    private MessageWrapper lastMessage;
-
     @Override
     public boolean render() {
         if ( !paused ) {
             if ( singleRender && clear ) {
                 clear();
             }
-            MessageWrapper message = getCurrentMessage();
-            if ( !message.equals(lastMessage) ) {
-                pattern = font.renderString(message.getMessage(), message.setAlignH());
-            }
-            return drawPattern(0, 0, pattern, true);
+            return drawPattern(0, 0, getRenderedText().getPattern(), true);
         }
         return true;
     }
 
+    @Inject private RenderCache renderCache;
+
+    private MessageWrapper renderedMessage;
+    private Object renderedFace;
+    private RenderedText renderedText;
+
+    /**
+     * The current message as rendered in the zone's font - looked up in the shared RenderCache
+     * only when the message or font changes
+     */
+    protected RenderedText getRenderedText() {
+        MessageWrapper message = getCurrentMessage();
+        Object face = font.getFace();
+        if ( renderedText==null || face!=renderedFace || !message.equals(renderedMessage) ) {
+            renderedText = renderCache.render(font, message.getMarkup(), message.setAlignH());
+            renderedMessage = message;
+            renderedFace = face;
+        }
+        return renderedText;
+    }
+
+    protected RenderedText renderText(String text, AlignH align) {
+        return renderCache.render(font, text, align);
+    }
+
+    @Override
+    protected FrameBuffer getContentFrame() {
+        return getRenderedText().getFrame();
+    }
+
     @Override
     public int getContentWidth() {
-        return font.getStringWidth(getCurrentMessage().getMessage());
+        return getRenderedText().getWidth();
     }
 
     @Override
     public int getContentHeight() {
-        return font.getStringHeight(getCurrentMessage().getMessage());
+        return getRenderedText().getHeight();
     }
 
     @Override
@@ -42,6 +42,7 @@ public class TestPatternRendering {
         then_board_state_contains(cross);
 
         when_clear_surface();
+        when_sync_ticks();
         then_board_is_blank();
 
         when_draw_pattern(square);
@@ -50,10 +51,12 @@ public class TestPatternRendering {
         then_board_state_contains(combined1);
 
         when_clear_surface();
+        when_sync_ticks();
         then_board_is_blank();
         when_draw_pattern_at_$2__$3(cross, 0, 0);
         when_draw_pattern_at_$2__$3(square, 2, 2);
         when_draw_pattern_at_$2__$3(cross, 4, 4);
+        when_sync_ticks();
         then_board_state_contains(combined2);
 
     }
@@ -85,22 +88,24 @@ public class TestPatternRendering {
     }
 
     void then_board_is_blank() {
+        double[][][] data = ((MockBoard) board).getData();
         for ( int r=0; r<board.getRows(); r++ ) {
             for ( int c=0; c<board.getCols(); c++ ) {
                 for ( int p=0; p<3; p++ ) {
-                    assertEquals(0.0, ((MockBoard) board).getData()[p][r][c], 0.1);
+                    assertEquals(0.0, data[p][r][c], 0.1);
                 }
             }
         }
     }
 
     void then_board_state_contains(Pattern pattern) {
+        double[][][] data = ((MockBoard) board).getData();
         for ( int r=0; r<pattern.getRows(); r++ ) {
             for ( int c=0; c<pattern.getCols(); c++ ) {
                 for ( int p=0; p<3; p++ ) {
                     assertEquals(
                             pattern.getColourValues()[p][r][c],
-                            ((MockBoard) board).getData()[p][r][c],
+                            data[p][r][c],
                             0.1
                     );
                 }
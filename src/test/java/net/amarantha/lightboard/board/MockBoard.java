@@ -4,11 +4,13 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import net.amarantha.lightboard.module.Cols;
 import net.amarantha.lightboard.module.Rows;
+import net.amarantha.lightboard.surface.FrameBuffer;
 
 @Singleton
 public class MockBoard implements LightBoard {
 
     private double[][][] data;
+    private FrameBuffer frame;
 
     private int rows;
     private int cols;
@@ -24,6 +26,12 @@ public class MockBoard implements LightBoard {
     @Override
     public void update(double[][][] data) {
         this.data = data;
+        frame = null;
+    }
+
+    @Override
+    public void update(FrameBuffer frame) {
+        this.frame = frame;
     }
 
     @Override
@@ -52,6 +60,10 @@ public class MockBoard implements LightBoard {
     }
 
     public double[][][] getData() {
-        return data;
+        return frame==null ? data : frame.toColourValues();
+    }
+
+    public FrameBuffer getFrame() {
+        return frame;
     }
 }
@@ -0,0 +1,51 @@
+package net.amarantha.lightboard.board.impl;
+
+import net.amarantha.lightboard.surface.FrameBuffer;
+
+/**
+ * Run on the Pi with the Glasto board attached to see what refresh rate each BCM bit depth
+ * can sustain, so the bcmBitDepth/bcmBaseMicros properties can be chosen per installation.
+ *
+ * Run the main method from the test classpath: BcmBenchmark [rows] [cols] [baseMicros]
+ */
+public class BcmBenchmark {
+
+    private static final long WARM_UP = 500;
+    private static final long SAMPLE = 3000;
+
+    public static void main(String[] args) throws InterruptedException {
+
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int cols = args.length > 1 ? Integer.parseInt(args[1]) : 192;
+        long baseMicros = args.length > 2 ? Long.parseLong(args[2]) : 0;
+
+        RaspPiGlastoLightBoard board = new RaspPiGlastoLightBoard();
+        board.init(rows, cols);
+        board.setBcmBaseMicros(baseMicros);
+
+        // Red ramps across, green ramps down, so every plane has something to show
+        FrameBuffer gradient = new FrameBuffer(rows, cols);
+        for ( int r=0; r<rows; r++ ) {
+            for ( int c=0; c<cols; c++ ) {
+                gradient.setPixel(c, r, (double) c / (cols - 1), (double) r / (rows - 1), 0.0);
+            }
+        }
+        board.update(gradient);
+
+        System.out.println("Depth  Refresh (Hz)  Shift (us)");
+        for ( int depth=1; depth<=ScanPlan.MAX_DEPTH; depth++ ) {
+            board.setBitDepth(depth);
+            Thread.sleep(WARM_UP);
+            long startFrames = board.getFramesScanned();
+            long start = System.nanoTime();
+            Thread.sleep(SAMPLE);
+            long frames = board.getFramesScanned() - startFrames;
+            double hz = frames * 1e9 / (System.nanoTime() - start);
+            System.out.println(String.format("%5d  %12.1f  %10d", depth, hz, board.getShiftMicros()));
+        }
+
+        System.exit(0);
+
+    }
+
+}
@@ -0,0 +1,158 @@
+package net.amarantha.lightboard.board.impl;
+
+import net.amarantha.lightboard.image.LedRenderer;
+import net.amarantha.lightboard.surface.Damage;
+import net.amarantha.lightboard.surface.FrameBuffer;
+import net.amarantha.lightboard.utility.VirtualSync;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExportBoardTest {
+
+    private static final int ROWS = 4;
+    private static final int COLS = 6;
+    private static final int PITCH = 2;
+    private static final int UNLIT = 0x0D0D0D;
+
+    @Test
+    public void testGif() throws IOException {
+        File file = export(".gif");
+        try ( ImageInputStream in = ImageIO.createImageInputStream(file) ) {
+            ImageReader reader = ImageIO.getImageReaders(in).next();
+            reader.setInput(in);
+            assertEquals(3, reader.getNumImages(true));
+
+            int[] delays = { 10, 30, 5 };
+            for ( int i=0; i<3; i++ ) {
+                IIOMetadataNode root = (IIOMetadataNode) reader.getImageMetadata(i).getAsTree("javax_imageio_gif_image_1.0");
+                IIOMetadataNode control = (IIOMetadataNode) root.getElementsByTagName("GraphicControlExtension").item(0);
+                assertEquals(Integer.toString(delays[i]), control.getAttribute("delayTime"));
+            }
+
+            BufferedImage first = reader.read(0);
+            assertEquals(COLS * PITCH, first.getWidth());
+            assertEquals(0xFF0000, first.getRGB(0, 0) & 0xFFFFFF);
+            assertEquals(UNLIT, first.getRGB(11, 7) & 0xFFFFFF);
+
+            // Later frames only hold the LED that changed
+            BufferedImage second = reader.read(1);
+            assertEquals(PITCH, second.getWidth());
+            assertEquals(0x00FF00, second.getRGB(0, 0) & 0xFFFFFF);
+            IIOMetadataNode root = (IIOMetadataNode) reader.getImageMetadata(1).getAsTree("javax_imageio_gif_image_1.0");
+            IIOMetadataNode descriptor = (IIOMetadataNode) root.getElementsByTagName("ImageDescriptor").item(0);
+            assertEquals("6", descriptor.getAttribute("imageLeftPosition"));
+            assertEquals("4", descriptor.getAttribute("imageTopPosition"));
+        }
+    }
+
+    @Test
+    public void testApng() throws IOException {
+        File file = export(".apng");
+        BufferedImage first = ImageIO.read(file);
+        assertEquals(COLS * PITCH, first.getWidth());
+        assertEquals(ROWS * PITCH, first.getHeight());
+        assertEquals(0xFF0000, first.getRGB(1, 1) & 0xFFFFFF);
+
+        List<String> types = new ArrayList<>();
+        ByteBuffer png = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        png.position(8);
+        int frames = -1;
+        List<Integer> delays = new ArrayList<>();
+        while ( png.hasRemaining() ) {
+            int length = png.getInt();
+            byte[] chunk = new byte[length + 4];
+            png.get(chunk);
+            CRC32 crc = new CRC32();
+            crc.update(chunk);
+            assertEquals((int) crc.getValue(), png.getInt());
+            String type = new String(chunk, 0, 4, "US-ASCII");
+            types.add(type);
+            ByteBuffer data = ByteBuffer.wrap(chunk, 4, length);
+            if ( type.equals("acTL") ) {
+                frames = data.getInt();
+            } else if ( type.equals("fcTL") ) {
+                data.position(data.position() + 20);
+                delays.add(data.getShort() * 1000 / data.getShort());
+            }
+        }
+        assertEquals(3, frames);
+        assertEquals("[100, 300, 50]", delays.toString());
+        assertEquals("[IHDR, acTL, fcTL, IDAT, fcTL, fdAT, fcTL, fdAT, IEND]", types.toString());
+    }
+
+    @Test
+    public void testPngStrip() throws IOException {
+        File file = export(".png");
+        BufferedImage strip = ImageIO.read(file);
+        int height = ROWS * PITCH;
+        assertEquals(COLS * PITCH, strip.getWidth());
+        assertEquals(3 * height, strip.getHeight());
+
+        assertEquals(0xFF0000, strip.getRGB(0, 0) & 0xFFFFFF);
+        assertEquals(UNLIT, strip.getRGB(6, 4) & 0xFFFFFF);
+        assertEquals(0x00FF00, strip.getRGB(6, height + 4) & 0xFFFFFF);
+        assertEquals(0x0000FF, strip.getRGB(3, 2 * height + 3) & 0xFFFFFF);
+        assertEquals(0xFF0000, strip.getRGB(0, 2 * height) & 0xFFFFFF);
+    }
+
+    /**
+     * Red for 100ms, then green added for 300ms with updates in the middle that change nothing -
+     * one with no damage and one that redraws the green LED the same - then blue added for 50ms
+     */
+    private File export(String extension) throws IOException {
+        File file = File.createTempFile("export", extension);
+        file.deleteOnExit();
+
+        VirtualSync sync = new VirtualSync();
+        ExportBoard board = new ExportBoard(sync)
+                .setOutput(file.toPath())
+                .setRenderer(new LedRenderer().setPitch(PITCH).setDotSize(PITCH).setRound(false));
+        board.init(ROWS, COLS);
+
+        FrameBuffer frame = new FrameBuffer(ROWS, COLS);
+        Damage damage = new Damage(ROWS, COLS);
+
+        frame.setPixel(0, 0, 0xFF0000);
+        board.update(frame);
+
+        sync.advance(100);
+        frame.setPixel(3, 2, 0x00FF00);
+        damage.addPoint(3, 2);
+        board.update(frame, damage);
+
+        sync.advance(200);
+        damage.clear();
+        board.update(frame, damage);
+
+        sync.advance(50);
+        damage.addPoint(3, 2);
+        board.update(frame, damage);
+
+        sync.advance(50);
+        frame.setPixel(1, 1, 0x0000FF);
+        damage.addPoint(1, 1);
+        board.update(frame, damage);
+
+        sync.advance(50);
+        board.close();
+        assertEquals(3, board.getFramesWritten());
+        assertTrue(file.length() > 0);
+        return file;
+    }
+
+}
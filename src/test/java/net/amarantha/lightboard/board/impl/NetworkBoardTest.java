@@ -0,0 +1,220 @@
+package net.amarantha.lightboard.board.impl;
+
+import net.amarantha.lightboard.board.MockBoard;
+import net.amarantha.lightboard.surface.Damage;
+import net.amarantha.lightboard.surface.FrameBuffer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NetworkBoardTest {
+
+    private static final int ROWS = 16;
+    private static final int COLS = 64;
+
+    @Test
+    public void testFramesArriveOverLoopback() throws Exception {
+        CapturingBoard captured = new CapturingBoard();
+        NetworkReceiver receiver = startReceiver(captured);
+
+        NetworkBoard board = new NetworkBoard("127.0.0.1", receiver.getPort(), 20L)
+                .setPacketSize(200)
+                .setKeyFrameInterval(60000);
+        board.init(ROWS, COLS);
+
+        // Enough lit pixels for the key frame to need several packets
+        FrameBuffer frame = new FrameBuffer(ROWS, COLS);
+        for ( int c=0; c<COLS; c++ ) {
+            frame.setPixel(c, 3, 0xFF0000 + c);
+            frame.setPixel(c, 4, 0x00FF00);
+        }
+        board.update(frame);
+        List<FrameBuffer> expected = new ArrayList<>();
+        expected.add(frame.copy());
+
+        Damage damage = new Damage(ROWS, COLS);
+        for ( int i=0; i<5; i++ ) {
+            damage.clear();
+            frame.setPixel(i * 10, 10, 0x0000FF);
+            frame.setPixel(i * 10 + 1, 3, FrameBuffer.OFF);
+            damage.addPoint(i * 10, 10);
+            damage.addPoint(i * 10 + 1, 3);
+            board.update(frame, damage);
+            expected.add(frame.copy());
+        }
+
+        // Damaged but unchanged - nothing sent
+        damage.clear();
+        damage.addPoint(0, 0);
+        board.update(frame, damage);
+
+        captured.await(expected.size());
+        receiver.close();
+        board.close();
+
+        assertTrue(board.getPacketsSent() > board.getFramesSent());
+        assertEquals(6, board.getFramesSent());
+        assertEquals(ROWS, captured.getRows());
+        assertEquals(expected.size(), captured.frames.size());
+        for ( int i=0; i<expected.size(); i++ ) {
+            assertArrayEquals(expected.get(i).getPixels(), captured.frames.get(i).getPixels());
+        }
+        assertEquals(0, receiver.getFramesDropped());
+    }
+
+    @Test
+    public void testLostPacketWaitsForKeyFrame() throws Exception {
+        CapturingBoard captured = new CapturingBoard();
+        NetworkReceiver receiver = startReceiver(captured);
+
+        List<DatagramPacket> sent = new ArrayList<>();
+        NetworkBoard board = new NetworkBoard("127.0.0.1", receiver.getPort(), 20L) {
+            @Override
+            protected void sendPacket(DatagramPacket packet) throws IOException {
+                sent.add(packet);
+                // Lose the first packet of the second frame
+                if ( sent.size()!=2 ) {
+                    super.sendPacket(packet);
+                }
+            }
+        }.setKeyFrameInterval(60000);
+        board.init(ROWS, COLS);
+
+        FrameBuffer frame = new FrameBuffer(ROWS, COLS);
+        frame.setPixel(1, 1, 0xFFFFFF);
+        board.update(frame);
+        FrameBuffer first = frame.copy();
+
+        frame.setPixel(2, 2, 0xFFFFFF);
+        board.update(frame);
+        frame.setPixel(3, 3, 0xFFFFFF);
+        board.update(frame);
+
+        board.setKeyFrameInterval(0);
+        frame.setPixel(4, 4, 0xFFFFFF);
+        board.update(frame);
+        FrameBuffer fourth = frame.copy();
+
+        captured.await(2);
+        receiver.close();
+        board.close();
+
+        assertEquals(2, captured.frames.size());
+        assertArrayEquals(first.getPixels(), captured.frames.get(0).getPixels());
+        assertArrayEquals(fourth.getPixels(), captured.frames.get(1).getPixels());
+        assertEquals(2, receiver.getFramesDropped());
+    }
+
+    @Test
+    public void testRestartedSenderShownFromItsFirstKeyFrame() throws Exception {
+        CapturingBoard captured = new CapturingBoard();
+        NetworkReceiver receiver = startReceiver(captured);
+
+        NetworkBoard first = new NetworkBoard("127.0.0.1", receiver.getPort(), 20L).setKeyFrameInterval(60000);
+        first.init(ROWS, COLS);
+        FrameBuffer frame = new FrameBuffer(ROWS, COLS);
+        for ( int i=0; i<20; i++ ) {
+            frame.setPixel(i, 1, 0xFF0000);
+            first.update(frame);
+        }
+        captured.await(20);
+        first.close();
+
+        // Counts from 1 again, well behind the frames already shown
+        NetworkBoard second = new NetworkBoard("127.0.0.1", receiver.getPort(), 20L).setKeyFrameInterval(60000);
+        second.init(ROWS, COLS);
+        FrameBuffer restarted = new FrameBuffer(ROWS, COLS);
+        restarted.setPixel(5, 5, 0x00FF00);
+        second.update(restarted);
+        restarted.setPixel(6, 6, 0x0000FF);
+        second.update(restarted);
+
+        captured.await(22);
+        receiver.close();
+        second.close();
+
+        assertEquals(22, captured.frames.size());
+        assertArrayEquals(restarted.getPixels(), captured.frames.get(21).getPixels());
+        assertEquals(0, receiver.getFramesDropped());
+    }
+
+    @Test
+    public void testMismatchedPacketCountIgnored() throws Exception {
+        CapturingBoard captured = new CapturingBoard();
+        NetworkReceiver receiver = startReceiver(captured);
+
+        NetworkBoard board = new NetworkBoard("127.0.0.1", receiver.getPort(), 20L) {
+            private int sent;
+            @Override
+            protected void sendPacket(DatagramPacket packet) throws IOException {
+                // The second packet claims a bigger frame, and an index past the real one's end
+                if ( ++sent==2 ) {
+                    ByteBuffer.wrap(packet.getData()).putShort(12, (short) 40).putShort(14, (short) 50);
+                }
+                super.sendPacket(packet);
+            }
+        }.setPacketSize(NetworkBoard.MIN_PACKET_SIZE).setKeyFrameInterval(0);
+        board.init(ROWS, COLS);
+
+        FrameBuffer frame = new FrameBuffer(ROWS, COLS);
+        for ( int c=0; c<COLS; c+=8 ) {
+            frame.setPixel(c, 5, 0xFFFFFF);
+        }
+        board.update(frame);
+        frame.setPixel(1, 1, 0xFF0000);
+        board.update(frame);
+
+        captured.await(1);
+        receiver.close();
+        board.close();
+
+        assertEquals(1, captured.frames.size());
+        assertArrayEquals(frame.getPixels(), captured.frames.get(0).getPixels());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPacketTooSmall() {
+        new NetworkBoard("127.0.0.1", 0, 20L).setPacketSize(NetworkBoard.MIN_PACKET_SIZE - 1);
+    }
+
+    private static NetworkReceiver startReceiver(CapturingBoard board) throws IOException {
+        NetworkReceiver receiver = new NetworkReceiver(board, 0);
+        Thread thread = new Thread(receiver::run);
+        thread.setDaemon(true);
+        thread.start();
+        return receiver;
+    }
+
+    /**
+     * Keeps a copy of every frame, as the receiver reuses its buffers
+     */
+    private static class CapturingBoard extends MockBoard {
+
+        private final List<FrameBuffer> frames = new ArrayList<>();
+
+        @Override
+        public synchronized void update(FrameBuffer frame) {
+            frames.add(frame.copy());
+            notifyAll();
+        }
+
+        private synchronized void await(int count) throws InterruptedException {
+            long until = System.currentTimeMillis() + 5000;
+            while ( frames.size() < count && System.currentTimeMillis() < until ) {
+                wait(100);
+            }
+            // Anything extra would arrive straight after
+            wait(100);
+        }
+
+    }
+
+}
@@ -0,0 +1,167 @@
+package net.amarantha.lightboard.board.impl;
+
+import net.amarantha.lightboard.board.MockBoard;
+import net.amarantha.lightboard.surface.Damage;
+import net.amarantha.lightboard.surface.FrameBuffer;
+import net.amarantha.lightboard.utility.VirtualSync;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RecordingBoardTest {
+
+    private static final int ROWS = 8;
+    private static final int COLS = 24;
+
+    @Test
+    public void testRecordAndReplay() throws Exception {
+        File file = tempFile();
+        VirtualSync sync = new VirtualSync();
+        RecordingBoard recorder = new RecordingBoard(sync, file.toPath(), 40L);
+        recorder.init(ROWS, COLS);
+
+        FrameBuffer frame = new FrameBuffer(ROWS, COLS);
+        Damage damage = new Damage(ROWS, COLS);
+
+        // A run that wraps from the end of one row onto the next
+        for ( int c=20; c<COLS; c++ ) {
+            frame.setPixel(c, 2, 0xFF0000);
+            damage.addPoint(c, 2);
+        }
+        frame.setPixel(0, 3, 0x00FF00);
+        frame.setPixel(1, 3, 0x123456);
+        damage.add(0, 3, 2, 1);
+        recorder.update(frame, damage);
+        FrameBuffer first = frame.copy();
+
+        sync.advance(40);
+        damage.clear();
+        frame.setPixel(21, 2, FrameBuffer.OFF);
+        frame.setPixel(5, 7, FrameBuffer.WHITE);
+        damage.addPoint(21, 2);
+        damage.addPoint(5, 7);
+        recorder.update(frame, damage);
+        FrameBuffer second = frame.copy();
+
+        // Redrawn the same - not recorded
+        sync.advance(40);
+        damage.clear();
+        damage.addPoint(5, 7);
+        recorder.update(frame, damage);
+
+        sync.advance(40);
+        frame.setPixel(5, 7, FrameBuffer.OFF);
+        recorder.update(frame);
+        FrameBuffer third = frame.copy();
+
+        assertEquals(3, recorder.getFramesRecorded());
+        recorder.close();
+
+        try ( RecordingPlayer player = new RecordingPlayer(file.toPath()) ) {
+            assertEquals(ROWS, player.getRows());
+            assertEquals(COLS, player.getCols());
+
+            assertTrue(player.next());
+            assertEquals(0, player.getTimestamp());
+            assertArrayEquals(first.getPixels(), player.getFrame().getPixels());
+            assertEquals(2, player.getDamage().getTop());
+            assertEquals(20, player.getDamage().getLeft(2));
+            assertEquals(1, player.getDamage().getRight(3));
+
+            assertTrue(player.next());
+            assertEquals(40, player.getTimestamp());
+            assertArrayEquals(second.getPixels(), player.getFrame().getPixels());
+            assertFalse(player.getDamage().isRowDamaged(3));
+
+            assertTrue(player.next());
+            assertEquals(120, player.getTimestamp());
+            assertArrayEquals(third.getPixels(), player.getFrame().getPixels());
+
+            assertFalse(player.next());
+        }
+    }
+
+    @Test
+    public void testPlayIntoBoard() throws Exception {
+        File file = tempFile();
+        VirtualSync sync = new VirtualSync();
+        RecordingBoard recorder = new RecordingBoard(sync, file.toPath(), 40L);
+        recorder.init(ROWS, COLS);
+        FrameBuffer frame = new FrameBuffer(ROWS, COLS);
+        for ( int i=0; i<10; i++ ) {
+            frame.setPixel(i, i % ROWS, 0x0000FF);
+            recorder.update(frame);
+            sync.advance(40);
+        }
+        recorder.close();
+
+        MockBoard board = new MockBoard();
+        try ( RecordingPlayer player = new RecordingPlayer(file.toPath()) ) {
+            player.play(board, 0);
+        }
+        assertEquals(ROWS, board.getRows());
+        assertArrayEquals(frame.getPixels(), board.getFrame().getPixels());
+    }
+
+    @Test
+    public void testUnclosedLogStopsAtLastWholeFrame() throws Exception {
+        File file = tempFile();
+        VirtualSync sync = new VirtualSync();
+        RecordingBoard recorder = new RecordingBoard(sync, file.toPath(), 40L);
+        recorder.init(ROWS, COLS);
+        FrameBuffer frame = new FrameBuffer(ROWS, COLS);
+        frame.setPixel(3, 3, 0xFFFFFF);
+        recorder.update(frame);
+        FrameBuffer first = frame.copy();
+        sync.advance(40);
+        frame.setPixel(1, 1, 0xFF0000);
+        frame.setPixel(6, 6, 0x00FF00);
+        recorder.update(frame);
+        long written = recorder.getBytesRecorded();
+
+        // Copy the log as a crash would leave it: the whole mapping, partly written
+        File crashed = tempFile();
+        Files.copy(file.toPath(), crashed.toPath(), REPLACE_EXISTING);
+        assertTrue(crashed.length() > written);
+        recorder.close();
+        assertEquals(written, file.length());
+
+        // And one torn mid-frame, with all of the last frame's runs but not its end marker
+        File torn = tempFile();
+        Files.copy(file.toPath(), torn.toPath(), REPLACE_EXISTING);
+        try ( RandomAccessFile raf = new RandomAccessFile(torn, "rw") ) {
+            raf.setLength(written - 2);
+        }
+
+        try ( RecordingPlayer player = new RecordingPlayer(crashed.toPath()) ) {
+            assertTrue(player.next());
+            assertTrue(player.next());
+            assertArrayEquals(frame.getPixels(), player.getFrame().getPixels());
+            assertFalse(player.next());
+        }
+        try ( RecordingPlayer player = new RecordingPlayer(torn.toPath()) ) {
+            assertTrue(player.next());
+            assertFalse(player.next());
+            assertArrayEquals(first.getPixels(), player.getFrame().getPixels());
+            assertEquals(0, player.getTimestamp());
+            assertTrue(player.getDamage().isEmpty());
+        }
+    }
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("lightboard", ".rec");
+        file.deleteOnExit();
+        return file;
+    }
+
+}
@@ -0,0 +1,69 @@
+package net.amarantha.lightboard.entity;
+
+import net.amarantha.lightboard.entity.Markup.Token;
+import net.amarantha.lightboard.entity.Markup.Type;
+import net.amarantha.lightboard.font.Font;
+import net.amarantha.lightboard.font.LegacyRenderer;
+import net.amarantha.lightboard.font.SimpleFont;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class MarkupTest {
+
+    @Test
+    public void testTokens() {
+
+        Markup markup = new Markup("Next {red}bus{blink}\n\n{yellow}3 mins\n\n");
+        List<Token> tokens = markup.getTokens();
+
+        assertEquals(10, tokens.size());
+        assertText("Next ", tokens.get(0));
+        assertSame(Markup.RED_PEN, tokens.get(1).getPen());
+        assertText("bus", tokens.get(2));
+        assertEquals(Type.PEN, tokens.get(3).getType());
+        assertNull(tokens.get(3).getPen());
+        assertEquals(Type.LINE, tokens.get(4).getType());
+        assertEquals(Type.LINE, tokens.get(5).getType());
+        assertSame(Markup.YELLOW_PEN, tokens.get(6).getPen());
+        assertText("3 mins", tokens.get(7));
+        assertEquals(Type.LINE, tokens.get(8).getType());
+        assertEquals(Type.LINE, tokens.get(9).getType());
+
+        assertEquals(5, markup.getLineCount());
+        assertEquals(3, markup.getRenderedLineCount());
+
+        assertEquals(0, new Markup("\n").getRenderedLineCount());
+        assertEquals(Type.PEN, new Markup("open {tag").getTokens().get(1).getType());
+
+    }
+
+    @Test
+    public void testMeasurementsMatchLegacy() {
+        Font font = new SimpleFont();
+        LegacyRenderer legacy = new LegacyRenderer(font);
+        String[] samples = { "Hello", "{green}Two\nLines", "Gap kept\nafter break\n", "a\n\nb", "x{red}y", "" };
+        for ( String sample : samples ) {
+            assertEquals(sample, legacy.getStringWidth(sample), font.getStringWidth(new Markup(sample)));
+            assertEquals(sample, legacy.getStringHeight(sample), font.getStringHeight(new Markup(sample)));
+        }
+    }
+
+    @Test
+    public void testTrailingTagIsMeasured() {
+        // The old parser skipped measuring the last line when the text ended with a tag
+        Font font = new SimpleFont();
+        assertEquals(font.getStringWidth("ab"), font.getStringWidth("ab{red}"));
+        assertEquals(font.getStringHeight("ab"), font.getStringHeight("ab{red}"));
+    }
+
+    private void assertText(String expected, Token token) {
+        assertEquals(Type.TEXT, token.getType());
+        assertEquals(expected, token.getText());
+    }
+
+}
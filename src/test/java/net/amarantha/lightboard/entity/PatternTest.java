@@ -0,0 +1,81 @@
+package net.amarantha.lightboard.entity;
+
+import net.amarantha.lightboard.font.LargeFont;
+import net.amarantha.lightboard.font.SimpleFont;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PatternTest {
+
+    @Test
+    public void testColourConstructor() {
+        Colour[][] points = {
+                { new Colour(1.0, 0.0, 0.0), new Colour(0.2, 0.2, 0.2) },
+                { new Colour(0.0, 0.0, 0.0), new Colour(0.0, 0.5, 1.0) },
+        };
+        Pattern pattern = new Pattern(points);
+
+        assertEquals(2, pattern.getRows());
+        assertEquals(2, pattern.getCols());
+        assertFalse(pattern.isMonochrome());
+        assertTrue(pattern.getBinaryPoint(0, 0));
+        assertFalse(pattern.getBinaryPoint(0, 1));
+        assertFalse(pattern.getBinaryPoint(1, 0));
+        assertTrue(pattern.getBinaryPoint(1, 1));
+        assertEquals(0xFF0000, pattern.getPixel(0, 0));
+        assertEquals(0x333333, pattern.getPixel(0, 1));
+        assertEquals(0x0080FF, pattern.getPixel(1, 1));
+        assertEquals(0.2, pattern.getColourPoint(0, 1).getRed(), 0.002);
+        assertEquals(0.2, pattern.getColourValues()[2][0][1], 0.002);
+    }
+
+    @Test
+    public void testMonochromeHoldsNoColour() {
+        Pattern plain = new Pattern(3, "#-#-#-");
+        assertTrue(plain.isMonochrome());
+        assertEquals(0xFFFFFF, plain.getPixel(0, 0));
+        assertEquals(0x000000, plain.getPixel(0, 1));
+        assertEquals(plain, new Pattern(new boolean[][] { { true, false, true }, { false, true, false } }));
+
+        Pattern white = new Pattern(new double[][][] { { { 1.0, 0.0 } }, { { 1.0, 0.0 } }, { { 1.0, 0.0 } } });
+        assertTrue(white.isMonochrome());
+    }
+
+    @Test
+    public void testBuilder() {
+        PatternBuilder builder = new PatternBuilder(2, 3);
+        builder.drawPoint(0, 0, true);
+        builder.setPenColour(new Colour(0.0, 1.0, 0.0)).drawPoint(1, 2, true);
+        builder.drawPoint(5, 5, true);
+        Pattern pattern = builder.build();
+
+        assertEquals("\n#--\n--#", pattern.toString());
+        assertEquals(0x00FF00, pattern.getPixel(1, 2));
+
+        // Drawing after build leaves the built pattern alone
+        builder.drawPoint(0, 0, false);
+        assertTrue(pattern.getBinaryPoint(0, 0));
+
+        Pattern copy = new PatternBuilder(pattern).build();
+        assertEquals(pattern, copy);
+        assertNotEquals(pattern, builder.build());
+    }
+
+    @Test
+    public void testFootprint() {
+        // Legacy layout: a boolean and three doubles per dot
+        for ( String text : new String[] { "Next bus in 3 mins", "{red}Next {green}bus {yellow}in 3 mins" } ) {
+            Pattern pattern = new SimpleFont().renderString(text);
+            long legacy = (long) pattern.getRows() * pattern.getCols() * (1 + 3 * 8);
+            assertTrue(text, pattern.getBytes() * 10 < legacy);
+        }
+        Pattern digits = new LargeFont().renderString("12:34");
+        assertTrue(digits.isMonochrome());
+        assertTrue(digits.getBytes() * 50 < (long) digits.getRows() * digits.getCols() * (1 + 3 * 8));
+    }
+
+}
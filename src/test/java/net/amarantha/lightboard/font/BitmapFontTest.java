@@ -0,0 +1,171 @@
+package net.amarantha.lightboard.font;
+
+import net.amarantha.lightboard.entity.Pattern;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BitmapFontTest {
+
+    private static final String BDF =
+            "STARTFONT 2.1\n" +
+            "FONT -test-\n" +
+            "SIZE 5 75 75\n" +
+            "FONTBOUNDINGBOX 4 5 0 -1\n" +
+            "CHARS 4\n" +
+            "STARTCHAR A\n" +
+            "ENCODING 65\n" +
+            "DWIDTH 4 0\n" +
+            "BBX 3 4 0 0\n" +
+            "BITMAP\n" +
+            "40\n" +
+            "A0\n" +
+            "E0\n" +
+            "A0\n" +
+            "ENDCHAR\n" +
+            "STARTCHAR period\n" +
+            "ENCODING 46\n" +
+            "DWIDTH 2 0\n" +
+            "BBX 1 1 0 0\n" +
+            "BITMAP\n" +
+            "80\n" +
+            "ENDCHAR\n" +
+            "STARTCHAR comma\n" +
+            "ENCODING 44\n" +
+            "DWIDTH 2 0\n" +
+            "BBX 1 2 0 -1\n" +
+            "BITMAP\n" +
+            "80\n" +
+            "80\n" +
+            "ENDCHAR\n" +
+            "STARTCHAR astral\n" +
+            "ENCODING 128512\n" +
+            "DWIDTH 2 0\n" +
+            "BBX 1 1 0 0\n" +
+            "BITMAP\n" +
+            "80\n" +
+            "ENDCHAR\n" +
+            "ENDFONT\n";
+
+    @Test
+    public void testBdf() throws IOException {
+        BitmapFont font = BitmapFont.load(write("test.bdf", BDF.getBytes(StandardCharsets.US_ASCII)).getPath());
+
+        assertEquals(3, font.getGlyphCount());
+        assertEquals(0, font.getLoadedCount());
+
+        assertPattern(font.getPattern('A'),
+                ".#.",
+                "#.#",
+                "###",
+                "#.#",
+                "...");
+        assertPattern(font.getPattern(','),
+                ".",
+                ".",
+                ".",
+                "#",
+                "#");
+        assertNull(font.getPattern('B'));
+        assertEquals(2, font.getLoadedCount());
+    }
+
+    @Test
+    public void testOnlyUsedGlyphsAreLoaded() throws IOException {
+        BitmapFont font = BitmapFont.load(write("test.bdf", BDF.getBytes(StandardCharsets.US_ASCII)).toPath());
+
+        assertEquals(5, font.getStringWidth("A."));
+        assertEquals(2, font.getLoadedCount());
+
+        assertPattern(font.renderString("A.A"),
+                ".#.....#.",
+                "#.#...#.#",
+                "###...###",
+                "#.#.#.#.#",
+                ".........");
+        assertEquals(2, font.getLoadedCount());
+    }
+
+    @Test
+    public void testPsf1WithUnicodeTable() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[] { 0x36, 0x04, 0x02, 2 });
+        for ( int glyph=0; glyph<256; glyph++ ) {
+            out.write(glyph==1 ? 0xF0 : 0);
+            out.write(glyph==1 ? 0x0F : 0);
+        }
+        for ( int glyph=0; glyph<256; glyph++ ) {
+            if ( glyph==0 ) {
+                short16(out, 'A');
+            } else if ( glyph==1 ) {
+                short16(out, 'B');
+                short16(out, 'b');
+                short16(out, 0xFFFE);
+                short16(out, 'C');
+                short16(out, 'D');
+            }
+            short16(out, 0xFFFF);
+        }
+        BitmapFont font = BitmapFont.load(write("test.psf", out.toByteArray()).toPath());
+
+        assertEquals(3, font.getGlyphCount());
+        assertPattern(font.getPattern('b'),
+                "####....",
+                "....####");
+        assertEquals(8, font.getWidth('B'));
+        assertNull(font.getPattern('C'));
+    }
+
+    @Test
+    public void testPsf2WithoutUnicodeTable() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for ( int value : new int[] { 0x864AB572, 0, 32, 0, 3, 4, 2, 10 } ) {
+            int32(out, value);
+        }
+        out.write(new byte[8]);
+        out.write(new byte[] { (byte) 0xFF, (byte) 0xC0, (byte) 0x80, 0x40 });
+        BitmapFont font = BitmapFont.load(write("test.psfu", out.toByteArray()).toPath());
+
+        assertEquals(3, font.getGlyphCount());
+        assertPattern(font.getPattern((char) 2),
+                "##########",
+                "#........#");
+        assertNull(font.getPattern('A'));
+    }
+
+    private File write(String name, byte[] bytes) throws IOException {
+        File file = File.createTempFile("font", name);
+        file.deleteOnExit();
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+
+    private static void short16(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xFF);
+        out.write((value >> 8) & 0xFF);
+    }
+
+    private static void int32(ByteArrayOutputStream out, int value) {
+        short16(out, value);
+        short16(out, value >> 16);
+    }
+
+    private static void assertPattern(Pattern pattern, String... rows) {
+        assertEquals(rows.length, pattern.getRows());
+        for ( int r=0; r<rows.length; r++ ) {
+            StringBuilder row = new StringBuilder();
+            for ( int c=0; c<pattern.getCols(); c++ ) {
+                row.append(pattern.getBinaryPoint(r, c) ? '#' : '.');
+            }
+            assertEquals(rows[r], row.toString());
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+package net.amarantha.lightboard.font;
+
+import net.amarantha.lightboard.entity.AlignH;
+import net.amarantha.lightboard.entity.Markup;
+import net.amarantha.lightboard.entity.Pattern;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Throughput of renderString through the glyph atlas, from plain strings and from markup parsed
+ * in advance as MessageWrapper holds it, against the old pixel-by-pixel rendering, for each of
+ * the built-in fonts.
+ *
+ * Run the main method from the test classpath; each case is warmed up, then timed over several
+ * rounds and the best round is reported.
+ */
+public class FontBenchmark {
+
+    private static final String[] STRINGS = {
+            "12:34",
+            "Wednesday",
+            "{red}Next {green}bus {yellow}in 3 mins",
+            "Two\nLines",
+    };
+
+    private static final Map<String, Markup> MARKUP = new HashMap<>();
+    static {
+        for ( String string : STRINGS ) {
+            MARKUP.put(string, new Markup(string));
+        }
+    }
+
+    private static final long ROUND_NANOS = 500_000_000L;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+
+    private static int sink;
+
+    public static void main(String[] args) {
+        for ( Font font : new Font[] { new SimpleFont(), new SmallFont(), new LargeFont() } ) {
+            LegacyRenderer legacy = new LegacyRenderer(font);
+            double before = measure(legacy::renderString);
+            double after = measure(font::renderString);
+            double parsed = measure(text -> font.renderString(MARKUP.get(text), AlignH.LEFT));
+            System.out.printf("%-10s legacy %8.0f ops/s   atlas %8.0f ops/s x%.1f   pre-parsed %8.0f ops/s x%.1f%n",
+                    font.getClass().getSimpleName(), before, after, after / before, parsed, parsed / before);
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    private static double measure(Function<String, Pattern> render) {
+        for ( int i=0; i<WARMUP_ROUNDS; i++ ) {
+            round(render);
+        }
+        double best = 0;
+        for ( int i=0; i<ROUNDS; i++ ) {
+            best = Math.max(best, round(render));
+        }
+        return best;
+    }
+
+    private static double round(Function<String, Pattern> render) {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for ( String string : STRINGS ) {
+                Pattern pattern = render.apply(string);
+                sink += pattern.getRows();
+            }
+            ops += STRINGS.length;
+            elapsed = System.nanoTime() - start;
+        } while ( elapsed < ROUND_NANOS );
+        return ops * 1e9 / elapsed;
+    }
+
+}
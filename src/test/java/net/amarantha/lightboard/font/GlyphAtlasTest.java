@@ -0,0 +1,113 @@
+package net.amarantha.lightboard.font;
+
+import net.amarantha.lightboard.entity.AlignH;
+import net.amarantha.lightboard.entity.Colour;
+import net.amarantha.lightboard.entity.Pattern;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GlyphAtlasTest {
+
+    static final String[] SAMPLES = {
+            "Hello World",
+            "12:34:56",
+            "{red}Next {green}bus {yellow}in 3 mins",
+            "Plain then {red}red{nonsense} still red",
+            "Two\nLines",
+            "A longer line\n{green}short\nmid line",
+            "Unknown \u2603 glyph ~ here",
+            "Trailing newline\n",
+            "X",
+    };
+
+    @Test
+    public void testAtlasMatchesLegacyRendering() {
+        for ( Font font : new Font[] { new SimpleFont(), new SmallFont(), new LargeFont() } ) {
+            LegacyRenderer legacy = new LegacyRenderer(font);
+            for ( String sample : SAMPLES ) {
+                for ( AlignH align : AlignH.values() ) {
+                    assertSame(sample, legacy.renderString(sample, align), font.renderString(sample, align));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testColouredGlyphs() {
+        Font font = new SmallFont();
+        Colour[][] points = new Colour[2][2];
+        points[0][0] = new Colour(0.25, 0.5, 0.0);
+        points[0][1] = new Colour(1.0, 1.0, 1.0);
+        points[1][0] = new Colour(0.0, 0.0, 0.0);
+        points[1][1] = new Colour(0.0, 0.0, 0.75);
+        double[][][] values = new double[3][2][2];
+        for ( int r=0; r<2; r++ ) {
+            for ( int c=0; c<2; c++ ) {
+                values[0][r][c] = points[r][c].getRed();
+                values[1][r][c] = points[r][c].getGreen();
+                values[2][r][c] = points[r][c].getBlue();
+            }
+        }
+        font.registerPattern('*', new Pattern(values));
+        assertEquals(2, font.getWidth('*'));
+
+        LegacyRenderer legacy = new LegacyRenderer(font);
+        for ( String sample : new String[] { "A*B", "*{red}*", "**\n*" } ) {
+            assertSame(sample, legacy.renderString(sample), font.renderString(sample));
+        }
+    }
+
+    @Test
+    public void testAppendLeavesEarlierAtlas() {
+        Font font = new SmallFont();
+        GlyphAtlas before = font.getAtlas();
+        int count = before.getGlyphCount();
+        int a = before.getGlyph('A');
+        int width = before.getWidth(a);
+
+        // A new character, well above the rest, and a replacement for one already there
+        font.registerPattern('\u2603', new Pattern(2, "#..#"));
+        font.registerPattern('A', new Pattern(1, "##"));
+        GlyphAtlas after = font.getAtlas();
+
+        assertEquals(count, before.getGlyphCount());
+        assertEquals(-1, before.getGlyph('\u2603'));
+        assertEquals(a, before.getGlyph('A'));
+        assertEquals(width, before.getWidth(a));
+
+        assertEquals(count + 2, after.getGlyphCount());
+        int snowman = after.getGlyph('\u2603');
+        assertEquals(2, after.getWidth(snowman));
+        assertTrue(after.isOn(snowman, 0, 0));
+        assertTrue(after.isOn(snowman, 1, 1));
+        assertFalse(after.isOn(snowman, 0, 1));
+        assertEquals(1, after.getWidth(after.getGlyph('A')));
+        assertEquals(before.getGlyph('B'), after.getGlyph('B'));
+        GlyphAtlas fresh = new SmallFont().getAtlas();
+        for ( int r=0; r<before.getHeight(a); r++ ) {
+            for ( int c=0; c<width; c++ ) {
+                assertEquals(fresh.isOn(a, r, c), before.isOn(a, r, c));
+            }
+        }
+    }
+
+    private void assertSame(String sample, Pattern expected, Pattern actual) {
+        assertEquals(sample, expected.getRows(), actual.getRows());
+        if ( expected.getRows()==0 ) {
+            return;
+        }
+        assertEquals(sample, expected.getCols(), actual.getCols());
+        for ( int r=0; r<expected.getRows(); r++ ) {
+            for ( int c=0; c<expected.getCols(); c++ ) {
+                assertEquals(sample, expected.getBinaryPoint(r, c), actual.getBinaryPoint(r, c));
+                for ( int colour=0; colour<3; colour++ ) {
+                    assertTrue(sample, expected.getColourValues()[colour][r][c]==actual.getColourValues()[colour][r][c]);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,164 @@
+package net.amarantha.lightboard.font;
+
+import net.amarantha.lightboard.entity.AlignH;
+import net.amarantha.lightboard.entity.Colour;
+import net.amarantha.lightboard.entity.Pattern;
+import net.amarantha.lightboard.entity.PatternBuilder;
+
+import static net.amarantha.lightboard.entity.AlignH.CENTRE;
+import static net.amarantha.lightboard.entity.AlignH.LEFT;
+import static net.amarantha.lightboard.entity.AlignH.RIGHT;
+import static net.amarantha.lightboard.font.Font.CLOSE_TAG;
+import static net.amarantha.lightboard.font.Font.NL;
+import static net.amarantha.lightboard.font.Font.OPEN_TAG;
+
+/**
+ * Font.renderString and its measurements as they were before the glyph atlas and markup tokens,
+ * pixel by pixel - the reference that they are tested and benchmarked against
+ */
+public class LegacyRenderer {
+
+    private final Font font;
+
+    public LegacyRenderer(Font font) {
+        this.font = font;
+    }
+
+    public int getStringWidth(String str) {
+        int width = 0;
+        int rowWidth = 0;
+        boolean inTag = false;
+        if ( str!=null ) {
+            for (int i = 0; i < str.length(); i++) {
+                char c = str.charAt(i);
+                if (inTag) {
+                    if (c == CLOSE_TAG) {
+                        inTag = false;
+                    }
+                } else {
+                    if (c == OPEN_TAG) {
+                        inTag = true;
+                    } else {
+                        if (i == str.length() - 1) {
+                            rowWidth += font.getWidth(c);
+                            width = Math.max(rowWidth, width);
+                        } else if (c == NL) {
+                            width = Math.max(rowWidth, width);
+                            rowWidth = 0;
+                        } else {
+                            rowWidth += font.getWidth(c) + 1;
+                        }
+                    }
+                }
+            }
+        }
+        return width;
+    }
+
+    public int getStringHeight(String str) {
+        int height = 0;
+        int rowHeight = 0;
+        boolean inTag = false;
+        if ( str!=null ) {
+            for (int i = 0; i < str.length(); i++) {
+                char c = str.charAt(i);
+                if (inTag) {
+                    if (c == CLOSE_TAG) {
+                        inTag = false;
+                    }
+                } else {
+                    if (c == OPEN_TAG) {
+                        inTag = true;
+                    } else {
+                        rowHeight = Math.max(rowHeight, font.getHeight(c));
+                        if (i == str.length() - 1) {
+                            height += rowHeight;
+                        } else if (c == NL) {
+                            height += rowHeight;
+                            rowHeight = 0;
+                        }
+                    }
+                }
+            }
+        }
+        return height;
+    }
+
+    public Pattern renderString(String str) {
+        return renderString(str, LEFT);
+    }
+
+    public Pattern renderString(String str, AlignH align) {
+        if ( str==null || str.isEmpty() ) {
+            return new Pattern(1,1);
+        }
+        int cols = getStringWidth(str);
+        int rows = getStringHeight(str);
+        PatternBuilder result = new PatternBuilder(rows, cols);
+        String[] lines = str.split("\n");
+        if ( lines.length==1 ) {
+            int cursorX = 0;
+            boolean inTag = false;
+            boolean penMode = false;
+            String tag = "";
+            for ( int c=0; c<str.length(); c++ ) {
+                char chr = str.charAt(c);
+                if ( inTag ) {
+                    if ( chr==CLOSE_TAG ) {
+                        if ( "red".equals(tag) ) {
+                            result.setPenColour(new Colour(1.0,0.0,0.0));
+                        } else if ( "green".equals(tag) ) {
+                            result.setPenColour(new Colour(0.0,1.0,0.0));
+                        } else if ( "yellow".equals(tag) ) {
+                            result.setPenColour(new Colour(1.0,1.0,0.0));
+                        }
+                        tag = "";
+                        inTag = false;
+                    } else {
+                        tag += chr;
+                    }
+                } else {
+                    if ( chr==OPEN_TAG ) {
+                        inTag = true;
+                        penMode = true;
+                    } else {
+                        Pattern pattern = font.getPattern(chr);
+                        if (pattern != null) {
+                            for (int row = 0; row < pattern.getRows(); row++) {
+                                for (int col = 0; col < pattern.getCols(); col++) {
+                                    if ( penMode ) {
+                                        result.drawPoint(row, col + cursorX, pattern.getBinaryPoint(row, col));
+                                    } else {
+                                        result.drawPoint(row, col + cursorX, pattern.getColourPoint(row, col));
+                                    }
+                                }
+                            }
+                            cursorX += font.getWidth(chr) + 1;
+                        }
+                    }
+                }
+            }
+        } else {
+            int cursorY = 0;
+            for (int l = 0; l < lines.length; l++) {
+                String line = lines[l];
+                int cursorX = 0;
+                if ( align== RIGHT ) {
+                    cursorX = cols - getStringWidth(line);
+                } else if ( align==CENTRE ) {
+                    cursorX = ( cols - getStringWidth(line) ) / 2;
+                }
+                int lineHeight = getStringHeight(line);
+                Pattern pattern = renderString(line);
+                for ( int row=0; row<pattern.getRows(); row++ ) {
+                    for ( int col=0; col<pattern.getCols(); col++ ) {
+                        result.drawPoint(row + cursorY, col + cursorX, pattern.getColourPoint(row, col));
+                    }
+                }
+                cursorY += lineHeight;
+            }
+        }
+        return result.build();
+    }
+
+}
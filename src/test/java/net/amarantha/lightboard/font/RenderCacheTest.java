@@ -0,0 +1,96 @@
+package net.amarantha.lightboard.font;
+
+import net.amarantha.lightboard.entity.AlignH;
+import net.amarantha.lightboard.entity.Pattern;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RenderCacheTest {
+
+    @Test
+    public void testSharedBetweenFontInstances() {
+
+        RenderCache cache = new RenderCache(1024 * 1024);
+
+        RenderedText first = cache.render(new SimpleFont(), "Next bus", AlignH.CENTRE);
+        RenderedText second = cache.render(new SimpleFont(), "Next bus", AlignH.CENTRE);
+        assertSame(first, second);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        assertNotSame(first, cache.render(new SimpleFont(), "Next bus", AlignH.LEFT));
+        assertNotSame(first, cache.render(new SmallFont(), "Next bus", AlignH.CENTRE));
+
+        // A font with a glyph of its own is no longer the same font
+        Font custom = new SimpleFont();
+        custom.registerPattern('N', new Pattern(1, "#"));
+        assertNotSame(first, cache.render(custom, "Next bus", AlignH.CENTRE));
+
+        Font font = new SimpleFont();
+        Pattern expected = font.renderString("Next bus", AlignH.CENTRE);
+        assertEquals(expected.toString(), first.getPattern().toString());
+        assertEquals(font.getStringWidth("Next bus"), first.getWidth());
+        assertEquals(font.getStringHeight("Next bus"), first.getHeight());
+        assertNull(cache.render(font, "\u2603", AlignH.LEFT).getFrame());
+
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+
+        Font font = new SimpleFont();
+        long entry = cache(Long.MAX_VALUE).render(font, "AAAA", AlignH.LEFT).getBytes();
+        RenderCache cache = cache(entry * 2);
+
+        RenderedText a = cache.render(font, "AAAA", AlignH.LEFT);
+        cache.render(font, "BBBB", AlignH.LEFT);
+        assertSame(a, cache.render(font, "AAAA", AlignH.LEFT));
+
+        // B is now the least recently used
+        cache.render(font, "CCCC", AlignH.LEFT);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertSame(a, cache.render(font, "AAAA", AlignH.LEFT));
+        assertTrue(cache.getBytes() <= cache.getMaxBytes());
+
+        // Text too big for the cache is rendered but not kept
+        cache.render(font, "A much longer message than the cache can hold", AlignH.LEFT);
+        assertEquals(2, cache.size());
+
+    }
+
+    @Test
+    public void testLazyGlyphsKeepEntries() {
+
+        RenderCache cache = new RenderCache(1024 * 1024);
+        Font font = new Font(true) {
+            @Override
+            protected Pattern loadGlyph(char key) {
+                return new Pattern(1, "#");
+            }
+        };
+
+        RenderedText first = cache.render(font, "ab", AlignH.LEFT);
+        Object face = font.getFace();
+
+        // Loading more glyphs changes nothing already rendered
+        cache.render(font, "cd", AlignH.LEFT);
+        assertSame(face, font.getFace());
+        assertSame(first, cache.render(font, "ab", AlignH.LEFT));
+
+        font.registerPattern('a', new Pattern(2, "##"));
+        assertNotSame(face, font.getFace());
+        assertNotSame(first, cache.render(font, "ab", AlignH.LEFT));
+
+    }
+
+    private RenderCache cache(long maxBytes) {
+        return new RenderCache(maxBytes);
+    }
+
+}
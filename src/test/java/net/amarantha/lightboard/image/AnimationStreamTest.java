@@ -0,0 +1,148 @@
+package net.amarantha.lightboard.image;
+
+import org.junit.Test;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AnimationStreamTest {
+
+    private static final String GIF_FORMAT = "javax_imageio_gif_image_1.0";
+
+    @Test
+    public void testShortGifIsKeptWhole() throws IOException {
+        File file = File.createTempFile("animation", ".gif");
+        file.deleteOnExit();
+        try ( GifFrames gif = new GifFrames(file) ) {
+            gif.add(solid(8, 4, 0xFF0000), 0, 0, 5);
+            gif.add(solid(8, 4, 0x00FF00), 0, 0, 10);
+            gif.add(solid(8, 4, 0x0000FF), 0, 0, 20);
+        }
+
+        AnimationStream stream = new AnimationStream(new GifSource(file), 8, 4, 8, Runnable::run);
+        assertTrue(stream.isComplete());
+        int[] colours = { 0xFF0000, 0x00FF00, 0x0000FF };
+        int[] delays = { 50, 100, 200 };
+        for ( int i=0; i<7; i++ ) {
+            AnimationFrame frame = stream.poll();
+            assertEquals(colours[i % 3], frame.getPattern().getPixel(1, 1));
+            assertEquals(delays[i % 3], frame.getDelay());
+        }
+        assertNull(stream.getError());
+    }
+
+    @Test
+    public void testGifFramesAreComposited() throws IOException {
+        File file = File.createTempFile("animation", ".gif");
+        file.deleteOnExit();
+        try ( GifFrames gif = new GifFrames(file) ) {
+            gif.add(solid(8, 4, 0xFF0000), 0, 0, 10);
+            gif.add(solid(4, 4, 0x00FF00), 4, 0, 10);
+        }
+
+        AnimationStream stream = new AnimationStream(new GifSource(file), 8, 4, 8, Runnable::run);
+        stream.poll();
+        AnimationFrame second = stream.poll();
+        assertEquals(8, second.getPattern().getCols());
+        assertEquals(0xFF0000, second.getPattern().getPixel(1, 1));
+        assertEquals(0x00FF00, second.getPattern().getPixel(2, 6));
+    }
+
+    @Test
+    public void testLongSequenceStreamsThroughWindow() throws IOException {
+        File folder = Files.createTempDirectory("frames").toFile();
+        folder.deleteOnExit();
+        for ( int i=1; i<=5; i++ ) {
+            File file = new File(folder, String.format("frame%02d.png", i));
+            file.deleteOnExit();
+            ImageIO.write(solid(8, 4, i * 0x10), "png", file);
+        }
+
+        AnimationSource source = AnimationSource.open(new File(folder, "frame%02d.png").getPath(), 40);
+        AnimationStream stream = new AnimationStream(source, 8, 4, 2, Runnable::run);
+        assertEquals(2, stream.getBuffered());
+        for ( int i=0; i<12; i++ ) {
+            AnimationFrame frame = stream.poll();
+            assertEquals((i % 5 + 1) * 0x10, frame.getPattern().getPixel(1, 1));
+            assertEquals(40, frame.getDelay());
+            assertTrue(stream.getBuffered() <= 2);
+        }
+        assertFalse(stream.isComplete());
+        stream.close();
+    }
+
+    private static BufferedImage solid(int width, int height, int rgb) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for ( int y=0; y<height; y++ ) {
+            for ( int x=0; x<width; x++ ) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Writes an animated GIF a frame at a time
+     */
+    private static class GifFrames implements AutoCloseable {
+
+        private final ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+        private final ImageOutputStream output;
+
+        private GifFrames(File file) throws IOException {
+            output = ImageIO.createImageOutputStream(file);
+            writer.setOutput(output);
+            writer.prepareWriteSequence(null);
+        }
+
+        private void add(BufferedImage image, int left, int top, int hundredths) throws IOException {
+            IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), null);
+            IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(GIF_FORMAT);
+            IIOMetadataNode control = node(root, "GraphicControlExtension");
+            control.setAttribute("disposalMethod", "none");
+            control.setAttribute("userInputFlag", "FALSE");
+            control.setAttribute("transparentColorFlag", "FALSE");
+            control.setAttribute("transparentColorIndex", "0");
+            control.setAttribute("delayTime", Integer.toString(hundredths));
+            IIOMetadataNode descriptor = node(root, "ImageDescriptor");
+            descriptor.setAttribute("imageLeftPosition", Integer.toString(left));
+            descriptor.setAttribute("imageTopPosition", Integer.toString(top));
+            metadata.setFromTree(GIF_FORMAT, root);
+            writer.writeToSequence(new IIOImage(image, null, metadata), null);
+        }
+
+        private static IIOMetadataNode node(IIOMetadataNode root, String name) {
+            for ( int i=0; i<root.getLength(); i++ ) {
+                if ( root.item(i).getNodeName().equals(name) ) {
+                    return (IIOMetadataNode) root.item(i);
+                }
+            }
+            IIOMetadataNode node = new IIOMetadataNode(name);
+            root.appendChild(node);
+            return node;
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.endWriteSequence();
+            output.close();
+            writer.dispose();
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+package net.amarantha.lightboard.image;
+
+import net.amarantha.lightboard.surface.FrameBuffer;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ImageCacheTest {
+
+    @Test
+    public void testDecodedInBackground() throws Exception {
+        File file = image(8, 4, 0xFF0000);
+        // Decodes wait here until the test runs them
+        Queue<Runnable> decoder = new ArrayDeque<>();
+        ImageCache cache = new ImageCache(1024 * 1024, decoder::add);
+
+        CompletableFuture<FrameBuffer> loading = cache.load(file.getPath(), 8, 4);
+        assertFalse(loading.isDone());
+        assertSame(loading, cache.load(file.getPath(), 8, 4));
+        assertEquals(1, decoder.size());
+        assertEquals(0, cache.size());
+
+        decoder.remove().run();
+        assertTrue(loading.isDone());
+        FrameBuffer frame = loading.get();
+        assertEquals(4, frame.getRows());
+        assertEquals(8, frame.getCols());
+        assertEquals(FrameBuffer.OFF, frame.getPixel(0, 0));
+        assertEquals(FrameBuffer.OFF, frame.getPixel(7, 3));
+        assertEquals(0xFF0000, frame.getPixel(1, 1));
+        assertEquals(0xFF0000, frame.getPixel(6, 2));
+
+        assertSame(frame, cache.load(file.getPath(), 8, 4).get());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.size());
+        assertTrue(decoder.isEmpty());
+    }
+
+    @Test
+    public void testKeyedByModifiedTimeAndSize() throws Exception {
+        File file = image(8, 4, 0x00FF00);
+        ImageCache cache = new ImageCache(1024 * 1024, Runnable::run);
+
+        FrameBuffer first = cache.load(file.getPath(), 8, 4).get();
+        assertEquals(16, cache.load(file.getPath(), 16, 8).get().getCols());
+
+        assertTrue(file.setLastModified(file.lastModified() - 60_000));
+        assertNotSame(first, cache.load(file.getPath(), 8, 4).get());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        File file = image(8, 4, 0x0000FF);
+        long size = 64 + 8 * 4 * 4;
+        ImageCache cache = new ImageCache(size * 2, Runnable::run);
+
+        FrameBuffer first = cache.load(file.getPath(), 8, 4).get();
+        cache.load(file.getPath(), 8, 3).get();
+        cache.load(file.getPath(), 8, 4).get();
+        cache.load(file.getPath(), 8, 2).get();
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertTrue(cache.getBytes() <= cache.getMaxBytes());
+        assertSame(first, cache.load(file.getPath(), 8, 4).get());
+    }
+
+    @Test
+    public void testUnreadableImage() throws Exception {
+        File file = File.createTempFile("image", ".png");
+        file.deleteOnExit();
+        Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+        ImageCache cache = new ImageCache(1024 * 1024, Runnable::run);
+        try {
+            cache.load(file.getPath(), 8, 4).get();
+            fail();
+        } catch ( ExecutionException e ) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(0, cache.size());
+    }
+
+    private File image(int width, int height, int rgb) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for ( int y=0; y<height; y++ ) {
+            for ( int x=0; x<width; x++ ) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+        File file = File.createTempFile("image", ".png");
+        file.deleteOnExit();
+        ImageIO.write(image, "png", file);
+        return file;
+    }
+
+}
@@ -0,0 +1,90 @@
+package net.amarantha.lightboard.scene;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.util.Modules;
+import net.amarantha.lightboard.module.ApplicationTestModule;
+import net.amarantha.lightboard.surface.LightBoardSurface;
+import net.amarantha.lightboard.utility.Now;
+import net.amarantha.lightboard.utility.Sync;
+import net.amarantha.lightboard.utility.VirtualNow;
+import net.amarantha.lightboard.utility.VirtualSync;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+public class SceneCyclingSoakTest {
+
+    @Test
+    public void testTwelveHoursOfCycling() {
+
+        Injector injector = Guice.createInjector(Modules.override(new ApplicationTestModule()).with(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(Sync.class).to(VirtualSync.class);
+                bind(Now.class).to(VirtualNow.class);
+            }
+        }));
+
+        VirtualSync sync = injector.getInstance(VirtualSync.class);
+        sync.init();
+        sync.setMinimumStep(50);
+
+        // Start at six in the morning, well clear of the sleep and wake times
+        Calendar morning = Calendar.getInstance();
+        morning.set(Calendar.HOUR_OF_DAY, 6);
+        morning.set(Calendar.MINUTE, 0);
+        sync.setCurrentTimeMillis(morning.getTimeInMillis());
+
+        injector.getInstance(LightBoardSurface.class).init(32, 192);
+
+        SceneManager sceneManager = injector.getInstance(SceneManager.class);
+        CountingScene idle = injector.getInstance(CountingScene.class);
+        CountingScene short10 = injector.getInstance(CountingScene.class);
+        CountingScene long20 = injector.getInstance(CountingScene.class);
+        sceneManager.addScene(0, idle, null, false);
+        sceneManager.addScene(1, short10, 10 * 60000, true);
+        sceneManager.addScene(2, long20, 20 * 60000, true);
+
+        sceneManager.startScenes();
+        sceneManager.cycleScenes();
+        sceneManager.loadScene(1);
+        sync.startSyncThread();
+
+        long started = System.nanoTime();
+        sync.advance(12, TimeUnit.HOURS);
+        long took = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        System.out.println("12 simulated hours in " + took + "ms, " + (int) sync.getBusyMillisPerHour() + "ms work per hour");
+
+        // One of each every 30 minutes
+        assertTrue("short scene resumed " + short10.resumed, Math.abs(short10.resumed - 24) <= 1);
+        assertTrue("long scene resumed " + long20.resumed, Math.abs(long20.resumed - 24) <= 1);
+        assertTrue(idle.resumed==0);
+
+    }
+
+    public static class CountingScene extends Scene {
+
+        private int resumed = 0;
+
+        public CountingScene() {
+            super("Counting");
+        }
+
+        @Override
+        public void build() {}
+
+        @Override
+        public void resume() {
+            super.resume();
+            resumed++;
+        }
+
+    }
+
+}
@@ -0,0 +1,81 @@
+package net.amarantha.lightboard.scene;
+
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import net.amarantha.lightboard.module.ApplicationTestModule;
+import net.amarantha.lightboard.surface.FrameClock;
+import net.amarantha.lightboard.surface.LightBoardSurface;
+import net.amarantha.lightboard.utility.Sync;
+import net.amarantha.lightboard.zone.impl.ClockZone;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SceneManagerTest {
+
+    @Test
+    public void testOnlyCurrentSceneKeepsTasks() {
+
+        Injector injector = Guice.createInjector(new ApplicationTestModule());
+        injector.getInstance(Sync.class).init();
+        LightBoardSurface surface = injector.getInstance(LightBoardSurface.class);
+        surface.init(32, 192);
+        FrameClock clock = surface.getFrameClock();
+
+        SceneManager sceneManager = injector.getInstance(SceneManager.class);
+        ClockScene one = injector.getInstance(ClockScene.class);
+        TwoClockScene two = injector.getInstance(TwoClockScene.class);
+        sceneManager.addScene(0, one);
+        sceneManager.addScene(1, two);
+
+        sceneManager.startScenes();
+        assertEquals(0, clock.countTasks());
+
+        sceneManager.loadScene(0);
+        assertEquals(1, clock.countTasks());
+
+        sceneManager.loadScene(1);
+        assertEquals(2, clock.countTasks());
+
+        // Back again, without piling up tasks from before
+        sceneManager.loadScene(0);
+        assertEquals(1, clock.countTasks());
+        sceneManager.loadScene(1);
+        sceneManager.loadScene(1);
+        assertEquals(2, clock.countTasks());
+
+    }
+
+    public static class ClockScene extends Scene {
+
+        @Inject private ClockZone clock;
+
+        public ClockScene() {
+            super("Clock");
+        }
+
+        @Override
+        public void build() {
+            registerZones(clock);
+        }
+
+    }
+
+    public static class TwoClockScene extends Scene {
+
+        @Inject private ClockZone left;
+        @Inject private ClockZone right;
+
+        public TwoClockScene() {
+            super("Two Clocks");
+        }
+
+        @Override
+        public void build() {
+            registerZones(left, right);
+        }
+
+    }
+
+}
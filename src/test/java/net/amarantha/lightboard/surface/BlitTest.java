@@ -0,0 +1,117 @@
+package net.amarantha.lightboard.surface;
+
+import net.amarantha.lightboard.board.MockBoard;
+import net.amarantha.lightboard.entity.Pattern;
+import net.amarantha.lightboard.utility.MockSync;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BlitTest {
+
+    private final Pattern pattern = new Pattern(5,
+            "#-#-#" +
+            "-###-" +
+            "##-##" +
+            "-###-"
+    );
+
+    @Test
+    public void testBlitMatchesRender() {
+
+        LightBoardSurface rendered = surface();
+        LightBoardSurface blitted = surface();
+        FrameBuffer content = FrameBuffer.fromPattern(pattern);
+
+        int[][] offsets = { {12, 6}, {9, 4}, {18, 11}, {7, 10}, {-3, -2}, {40, 40} };
+        for ( int[] offset : offsets ) {
+            Region region = rendered.safeRegion(10, 5, 10, 8);
+
+            rendered.clearRegion(region);
+            boolean renderDrawn = rendered.drawPattern(offset[0], offset[1], pattern, true, region);
+            boolean blitDrawn = blitted.blit(offset[0], offset[1], content, true, region);
+
+            assertEquals(renderDrawn, blitDrawn);
+            assertArrayEquals(rendered.getFrame().getPixels(), blitted.getFrame().getPixels());
+        }
+
+    }
+
+    @Test
+    public void testBlitDamage() {
+
+        LightBoardSurface surface = surface();
+        FrameBuffer content = FrameBuffer.fromPattern(pattern);
+        Region region = surface.safeRegion(0, 0, 20, 10);
+
+        assertTrue(surface.blit(2, 2, content, true, region));
+        assertEquals(2, surface.getDamage().getBounds().left);
+        surface.publish();
+
+        // Same content in the same place changes nothing
+        surface.blit(2, 2, content, true, region);
+        assertTrue(surface.getDamage().isEmpty());
+
+        // Without clearing, the old position is left alone
+        surface.blit(3, 2, content, false, region);
+        assertFalse(surface.getDamage().isRowDamaged(0));
+        assertEquals(3, surface.getDamage().getLeft(2));
+        assertTrue(surface.getFrame().isOn(2, 2));
+
+    }
+
+    @Test
+    public void testClippedDrawPattern() {
+
+        Random random = new Random(42);
+        for ( int run=0; run<200; run++ ) {
+            double[][][] values = new double[3][1 + random.nextInt(12)][1 + random.nextInt(20)];
+            for ( int r=0; r<values[0].length; r++ ) {
+                for ( int c=0; c<values[0][0].length; c++ ) {
+                    double value = random.nextInt(3) / 2.0;
+                    values[0][r][c] = value;
+                    values[1][r][c] = random.nextBoolean() ? value : 1.0;
+                    values[2][r][c] = value;
+                }
+            }
+            Pattern p = new Pattern(values);
+            boolean opaque = random.nextBoolean();
+            int x = random.nextInt(220) - 20;
+            int y = random.nextInt(50) - 10;
+
+            LightBoardSurface clipped = surface();
+            LightBoardSurface reference = surface();
+            Region region = clipped.safeRegion(random.nextInt(192), random.nextInt(32), random.nextInt(100), random.nextInt(20));
+
+            boolean drawn = clipped.drawPattern(x, y, p, opaque, region);
+
+            // Per-pixel reference, as drawPattern used to work
+            boolean expected = false;
+            for ( int r=0; r<p.getRows(); r++ ) {
+                for ( int c=0; c<p.getCols(); c++ ) {
+                    if ( opaque || (values[0][r][c]>0 && values[1][r][c]>0 && values[2][r][c]>0) ) {
+                        expected |= reference.drawPoint(x + c, y + r, values[0][r][c], values[1][r][c], values[2][r][c], region);
+                    }
+                }
+            }
+
+            assertEquals(expected, drawn);
+            assertArrayEquals(reference.getFrame().getPixels(), clipped.getFrame().getPixels());
+        }
+
+    }
+
+    private LightBoardSurface surface() {
+        MockSync sync = new MockSync();
+        LightBoardSurface surface = new LightBoardSurface(new MockBoard(), sync);
+        surface.init(32, 192);
+        surface.publish();
+        return surface;
+    }
+
+}
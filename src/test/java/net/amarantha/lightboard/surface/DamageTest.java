@@ -0,0 +1,78 @@
+package net.amarantha.lightboard.surface;
+
+import net.amarantha.lightboard.board.MockBoard;
+import net.amarantha.lightboard.entity.Pattern;
+import net.amarantha.lightboard.utility.MockSync;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DamageTest {
+
+    @Test
+    public void testCoalescing() {
+
+        Damage damage = new Damage(32, 192);
+        assertTrue(damage.isEmpty());
+        assertNull(damage.getBounds());
+
+        damage.add(10, 2, 5, 3);
+        damage.addPoint(15, 5);
+        damage.add(100, 20, 20, 11);
+
+        List<Region> regions = damage.getRegions();
+        assertEquals(2, regions.size());
+        assertRegion(regions.get(0), 10, 2, 6, 4);
+        assertRegion(regions.get(1), 100, 20, 20, 11);
+
+        assertRegion(damage.getBounds(), 10, 2, 110, 29);
+        assertFalse(damage.isRowDamaged(0));
+        assertEquals(10, damage.getLeft(3));
+        assertEquals(14, damage.getRight(3));
+
+        damage.add(-5, 30, 500, 10);
+        assertEquals(0, damage.getLeft(31));
+        assertEquals(191, damage.getRight(31));
+
+        damage.clear();
+        assertTrue(damage.isEmpty());
+        assertEquals(-1, damage.getRight(3));
+
+    }
+
+    @Test
+    public void testSurfaceDamage() {
+
+        MockSync sync = new MockSync();
+        LightBoardSurface surface = new LightBoardSurface(new MockBoard(), sync);
+        surface.init(32, 192);
+
+        // First push always covers the whole board
+        assertRegion(surface.getDamage().getBounds(), 0, 0, 192, 32);
+        sync.runTasks();
+        assertTrue(surface.getDamage().isEmpty());
+
+        surface.drawPattern(20, 10, new Pattern(3, "#-#-#-#-#"));
+        assertEquals(1, surface.getDamage().getRegions().size());
+        assertRegion(surface.getDamage().getBounds(), 20, 10, 3, 3);
+        sync.runTasks();
+
+        // Drawing what is already there is not damage
+        surface.drawPattern(20, 10, new Pattern(3, "#-#-#-#-#"));
+        assertTrue(surface.getDamage().isEmpty());
+
+    }
+
+    private void assertRegion(Region r, int left, int top, int width, int height) {
+        assertEquals(left, r.left);
+        assertEquals(top, r.top);
+        assertEquals(width, r.width);
+        assertEquals(height, r.height);
+    }
+
+}
@@ -0,0 +1,135 @@
+package net.amarantha.lightboard.surface;
+
+import net.amarantha.lightboard.utility.MockSync;
+import net.amarantha.lightboard.utility.Sync;
+import net.amarantha.lightboard.utility.VirtualSync;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameClockTest {
+
+    @Test
+    public void testFramePacing() throws InterruptedException {
+
+        MockSync sync = new MockSync();
+        sync.init();
+
+        AtomicInteger published = new AtomicInteger();
+        FrameClock clock = new FrameClock(sync, published::incrementAndGet);
+        clock.start(5L);
+
+        Object zone = new Object();
+        AtomicInteger everyFrame = new AtomicInteger();
+        AtomicInteger slow = new AtomicInteger();
+        clock.addTask(zone, counter(null, everyFrame));
+        clock.addTask(zone, counter(60000L, slow));
+
+        sync.runTasks();
+        sync.runTasks();
+        sync.runTasks();
+
+        // Both tasks fall due on the first frame, but only one is due on every frame
+        assertEquals(3, published.get());
+        assertEquals(3, everyFrame.get());
+        assertEquals(1, slow.get());
+        assertEquals(3, clock.getFrames());
+        assertEquals(0, clock.getMissedDeadlines());
+
+        clock.addTask(this, new Sync.Task(null) {
+            @Override
+            public void runTask() {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException ignored) {}
+            }
+        });
+        sync.runTasks();
+        assertEquals(1, clock.getMissedDeadlines());
+
+        assertEquals(2, clock.releaseTasks(zone));
+        sync.runTasks();
+        assertEquals(4, everyFrame.get());
+        assertEquals(5, published.get());
+
+    }
+
+    @Test
+    public void testTicksFasterThanFrames() {
+
+        VirtualSync sync = new VirtualSync();
+        sync.init();
+
+        AtomicInteger published = new AtomicInteger();
+        FrameClock clock = new FrameClock(sync, published::incrementAndGet);
+        clock.start(250L);
+
+        AtomicInteger fast = new AtomicInteger();
+        AtomicInteger everyFrame = new AtomicInteger();
+        clock.addTask(this, counter(20L, fast));
+        clock.addTask(this, counter(null, everyFrame));
+
+        sync.advance(999);
+        assertEquals(4, published.get());
+        assertEquals(4, everyFrame.get());
+        assertEquals(50, fast.get());
+
+        // Nothing quicker than the frames left, so only frames run
+        clock.releaseTasks(this);
+        long passes = sync.getPasses();
+        sync.advance(1000);
+        assertEquals(8, published.get());
+        assertTrue(sync.getPasses() - passes <= 6);
+
+    }
+
+    @Test
+    public void testTickRateSettlesAfterConcurrentChanges() throws InterruptedException {
+
+        VirtualSync sync = new VirtualSync();
+        sync.init();
+        FrameClock clock = new FrameClock(sync, () -> {});
+        clock.start(250L);
+
+        AtomicInteger fast = new AtomicInteger();
+        clock.addTask(this, counter(20L, fast));
+
+        // Other owners come and go on their own threads while frames run
+        Thread[] threads = new Thread[4];
+        for ( int t=0; t<threads.length; t++ ) {
+            Object owner = new Object();
+            threads[t] = new Thread(() -> {
+                for ( int i=0; i<500; i++ ) {
+                    clock.addTask(owner, counter(5L, new AtomicInteger()));
+                    clock.releaseTasks(owner);
+                }
+            });
+            threads[t].start();
+        }
+        for ( int i=0; i<500; i++ ) {
+            clock.frame();
+        }
+        for ( Thread thread : threads ) {
+            thread.join();
+        }
+
+        // Only the one fast task left, so the tick runs at its rate rather than being paused
+        int before = fast.get();
+        sync.advance(1000);
+        assertTrue("fast ran " + (fast.get() - before), fast.get() - before >= 49);
+
+    }
+
+    private Sync.Task counter(Long interval, AtomicInteger count) {
+        return new Sync.Task(interval) {
+            @Override
+            public void runTask() {
+                count.incrementAndGet();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,59 @@
+package net.amarantha.lightboard.surface;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class FrameExchangeTest {
+
+    @Test
+    public void testChangesSinceLastAcquire() {
+
+        FrameExchange exchange = new FrameExchange(8, 16);
+        FrameBuffer source = new FrameBuffer(8, 16);
+        Damage damage = new Damage(8, 16);
+
+        source.setPixel(1, 1, FrameBuffer.WHITE);
+        damage.addPoint(1, 1);
+        exchange.publish(source, damage);
+        FrameBuffer first = exchange.acquire();
+        assertEquals(FrameBuffer.WHITE, first.getPixel(1, 1));
+        assertTrue(exchange.getChanges().isRowDamaged(1));
+
+        // Two frames published before the consumer looks - it sees both changes
+        damage.clear();
+        source.setPixel(2, 3, FrameBuffer.WHITE);
+        damage.addPoint(2, 3);
+        exchange.publish(source, damage);
+        damage.clear();
+        source.setPixel(4, 6, FrameBuffer.WHITE);
+        damage.addPoint(4, 6);
+        exchange.publish(source, damage);
+
+        FrameBuffer second = exchange.acquire();
+        assertNotSame(first, second);
+        assertEquals(FrameBuffer.WHITE, second.getPixel(2, 3));
+        assertEquals(FrameBuffer.WHITE, second.getPixel(4, 6));
+        Damage changes = exchange.getChanges();
+        assertFalse(changes.isRowDamaged(1));
+        assertTrue(changes.isRowDamaged(3));
+        assertTrue(changes.isRowDamaged(6));
+        assertEquals(2, changes.getLeft(3));
+        assertEquals(4, changes.getLeft(6));
+
+        // Taken in between, so only the newest change
+        damage.clear();
+        source.setPixel(5, 7, FrameBuffer.WHITE);
+        damage.addPoint(5, 7);
+        exchange.publish(source, damage);
+        exchange.acquire();
+        changes = exchange.getChanges();
+        assertFalse(changes.isRowDamaged(3));
+        assertFalse(changes.isRowDamaged(6));
+        assertTrue(changes.isRowDamaged(7));
+    }
+
+}
@@ -0,0 +1,146 @@
+package net.amarantha.lightboard.surface;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import net.amarantha.lightboard.board.LightBoard;
+import net.amarantha.lightboard.board.MockBoard;
+import net.amarantha.lightboard.module.ApplicationTestModule;
+import net.amarantha.lightboard.utility.MockSync;
+import net.amarantha.lightboard.utility.Sync;
+import net.amarantha.lightboard.zone.impl.ClockZone;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LayerTest {
+
+    private static final int RED = 0xFF0000;
+    private static final int BLUE = 0x0000FF;
+
+    @Test
+    public void testCompositing() {
+
+        DamageBoard board = new DamageBoard();
+        LightBoardSurface surface = new LightBoardSurface(board, new MockSync());
+        surface.init(8, 16);
+
+        surface.fillRegion(surface.safeRegion(0, 0, 16, 8));
+        Layer top = surface.addLayer(2);
+        Layer middle = surface.addLayer(1);
+        assertEquals(middle, surface.getLayers().get(0));
+
+        middle.drawPoint(2, 2, 1.0, 0.0, 0.0, null);
+        top.drawPoint(3, 2, 0.0, 0.0, 1.0, null);
+        top.drawPoint(2, 2, 0.0, 0.0, 1.0, null);
+        surface.publish();
+
+        // Off pixels are transparent, and higher layers cover lower ones
+        assertEquals(BLUE, board.getFrame().getPixel(2, 2));
+        assertEquals(BLUE, board.getFrame().getPixel(3, 2));
+        assertEquals(FrameBuffer.WHITE, board.getFrame().getPixel(4, 2));
+        assertEquals(FrameBuffer.WHITE, surface.getFrame().getPixel(2, 2));
+
+        // Only what a layer changed is composited and sent
+        middle.drawPoint(5, 6, 1.0, 0.0, 0.0, null);
+        surface.publish();
+        assertRegion(5, 6, 1, 1, board.damage);
+        assertEquals(RED, board.getFrame().getPixel(5, 6));
+
+        surface.publish();
+        assertNull(board.damage);
+
+        top.setOpacity(0.5);
+        surface.publish();
+        assertEquals(0x7F007F, board.getFrame().getPixel(2, 2));
+        assertEquals(0x7F7FFF, board.getFrame().getPixel(3, 2));
+        assertRegion(2, 2, 2, 1, board.damage);
+
+        top.setOpacity(1.0).setBlend(Layer.Blend.ADD);
+        middle.setVisible(false);
+        surface.publish();
+        assertEquals(FrameBuffer.WHITE, board.getFrame().getPixel(2, 2));
+        assertEquals(FrameBuffer.WHITE, board.getFrame().getPixel(5, 6));
+
+        // Surface drawing under a layer shows through its transparent pixels only
+        surface.clearSurface();
+        surface.publish();
+        assertEquals(BLUE, board.getFrame().getPixel(2, 2));
+        assertFalse(board.getFrame().isOn(4, 2));
+
+        surface.removeLayer(top);
+        surface.publish();
+        assertFalse(board.getFrame().isOn(2, 2));
+        assertTrue(surface.getLayers().contains(middle));
+
+    }
+
+    @Test
+    public void testZoneLayerFollowsStartAndStop() {
+
+        Injector injector = Guice.createInjector(new ApplicationTestModule());
+        injector.getInstance(Sync.class).init();
+        MockBoard board = (MockBoard) injector.getInstance(LightBoard.class);
+        LightBoardSurface surface = injector.getInstance(LightBoardSurface.class);
+        surface.init(16, 64);
+
+        ClockZone clock = injector.getInstance(ClockZone.class);
+        clock.setRegion(0, 0, clock.getContentWidth(), clock.getContentHeight());
+        clock.onLayer(1);
+        Layer layer = clock.getLayer();
+        clock.start();
+        clock.render();
+        surface.publish();
+        assertTrue(surface.getLayers().contains(layer));
+        assertTrue(isLit(board.getFrame(), clock.getContentWidth(), clock.getContentHeight()));
+
+        // Stopped zones leave nothing on the surface
+        clock.stop();
+        surface.publish();
+        assertTrue(surface.getLayers().isEmpty());
+        assertFalse(isLit(board.getFrame(), clock.getContentWidth(), clock.getContentHeight()));
+
+        clock.start();
+        surface.publish();
+        assertSame(layer, surface.getLayers().get(0));
+        assertTrue(isLit(board.getFrame(), clock.getContentWidth(), clock.getContentHeight()));
+
+    }
+
+    private boolean isLit(FrameBuffer frame, int width, int height) {
+        for ( int y=0; y<height; y++ ) {
+            for ( int x=0; x<width; x++ ) {
+                if ( frame.isOn(x, y) ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void assertRegion(int left, int top, int width, int height, Region region) {
+        assertEquals(left, region.left);
+        assertEquals(top, region.top);
+        assertEquals(width, region.width);
+        assertEquals(height, region.height);
+    }
+
+    /**
+     * Remembers the bounds of the damage it was last sent
+     */
+    private static class DamageBoard extends MockBoard {
+
+        private Region damage;
+
+        @Override
+        public void update(FrameBuffer frame, Damage damage) {
+            this.damage = damage.getBounds();
+            update(frame);
+        }
+
+    }
+
+}
@@ -0,0 +1,84 @@
+package net.amarantha.lightboard.utility;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void testBuckets() {
+        for ( long value : new long[] { 0, 1, 31, 32, 33, 1000, 123456789, Histogram.MAX_VALUE } ) {
+            int index = Histogram.indexOf(value);
+            assertTrue(Histogram.lowestValueOf(index) <= value);
+            assertTrue(Histogram.lowestValueOf(index + 1) > value);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+
+        for ( int i=1; i<=1000; i++ ) {
+            histogram.record(i);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500, histogram.getMean());
+        assertWithin(500, histogram.getValueAtPercentile(50));
+        assertWithin(990, histogram.getValueAtPercentile(99));
+        assertWithin(289, histogram.getStdDeviation());
+
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Histogram.MAX_VALUE, histogram.getMax());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+
+    }
+
+    @Test
+    public void testSnapshotWhileRecording() throws InterruptedException {
+
+        Histogram histogram = new Histogram();
+        Thread writer = new Thread(() -> {
+            for ( int i=0; i<200000; i++ ) {
+                histogram.record(100);
+            }
+        });
+        writer.start();
+
+        // Every snapshot agrees with itself, however far the writer has got
+        long last = 0;
+        while ( writer.isAlive() ) {
+            Histogram snapshot = histogram.snapshot();
+            long count = snapshot.getCount();
+            assertTrue(count >= last);
+            if ( count > 0 ) {
+                assertEquals(100, snapshot.getMean());
+                assertEquals(100, snapshot.getMax());
+                assertWithin(100, snapshot.getValueAtPercentile(100));
+            }
+            last = count;
+        }
+        writer.join();
+
+        Histogram snapshot = histogram.snapshot();
+        histogram.record(5000);
+        assertEquals(200000, snapshot.getCount());
+        assertEquals(100, snapshot.getMax());
+        assertEquals(200001, histogram.getCount());
+
+    }
+
+    private void assertWithin(long expected, long actual) {
+        assertTrue("Expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 16 + 1);
+    }
+
+}
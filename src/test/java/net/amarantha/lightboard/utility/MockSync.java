@@ -22,7 +22,9 @@ public class MockSync extends Sync {
 
     public void runTasks() {
         for ( Map.Entry<Integer, Task> entry : tasks.entrySet() ) {
-            entry.getValue().runTask();
+            if ( !entry.getValue().isCancelled() ) {
+                entry.getValue().runTask();
+            }
         }
     }
 
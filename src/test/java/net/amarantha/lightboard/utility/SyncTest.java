@@ -0,0 +1,139 @@
+package net.amarantha.lightboard.utility;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SyncTest {
+
+    @Test
+    public void testScheduling() throws InterruptedException {
+
+        Sync sync = new Sync();
+        sync.init();
+
+        AtomicInteger fast = new AtomicInteger();
+        AtomicInteger slow = new AtomicInteger();
+        AtomicInteger paused = new AtomicInteger();
+
+        sync.addTask(new Sync.Task(20L) {
+            @Override
+            public void runTask() {
+                fast.incrementAndGet();
+            }
+        });
+        sync.addTask(new Sync.Task(100L) {
+            @Override
+            public void runTask() {
+                slow.incrementAndGet();
+            }
+        });
+        int id = sync.addTask(new Sync.Task(20L) {
+            @Override
+            public void runTask() {
+                paused.incrementAndGet();
+            }
+        });
+        sync.pauseTask(id);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long cpuBefore = totalCpuTime(threads);
+
+        sync.startSyncThread();
+        Thread.sleep(500);
+        long cpuUsed = totalCpuTime(threads) - cpuBefore;
+        sync.stopSyncThread();
+
+        // Loose bounds - the sync thread is only woken by the tasks falling due
+        assertTrue("fast ran " + fast.get(), fast.get() >= 15 && fast.get() <= 27);
+        assertTrue("slow ran " + slow.get(), slow.get() >= 3 && slow.get() <= 7);
+        assertEquals(0, paused.get());
+        assertTrue("sync used " + cpuUsed + "ns", cpuUsed < 250_000_000L);
+
+    }
+
+    @Test
+    public void testRegistry() {
+
+        MockSync sync = new MockSync();
+        sync.init();
+
+        Object owner = new Object();
+        AtomicInteger runs = new AtomicInteger();
+
+        int first = sync.addTask(owner, counter(runs));
+        sync.addTask(owner, counter(runs));
+        int other = sync.addTask(counter(runs));
+
+        sync.runTasks();
+        assertEquals(3, runs.get());
+
+        assertEquals(2, sync.releaseTasks(owner));
+        assertFalse(sync.removeTask(first));
+        sync.runTasks();
+        assertEquals(4, runs.get());
+
+        assertTrue(sync.removeTask(other));
+        sync.runTasks();
+        assertEquals(4, runs.get());
+
+    }
+
+    @Test
+    public void testPausedTaskLeavesSchedule() {
+
+        VirtualSync sync = new VirtualSync();
+        sync.init();
+
+        AtomicInteger runs = new AtomicInteger();
+        int id = sync.addTask(new Sync.Task(null) {
+            @Override
+            public void runTask() {
+                runs.incrementAndGet();
+            }
+        });
+
+        sync.advance(10);
+        int running = runs.get();
+        assertTrue("ran " + running, running >= 10);
+
+        // Once it falls due while paused, nothing is left to step the clock for
+        sync.pauseTask(id);
+        sync.advance(10);
+        long passes = sync.getPasses();
+        sync.advance(1000);
+        assertEquals(passes + 1, sync.getPasses());
+        assertNull(sync.nextDue());
+        assertEquals(running, runs.get());
+
+        sync.resumeTask(id);
+        sync.advance(10);
+        assertTrue(runs.get() > running);
+
+    }
+
+    private Sync.Task counter(AtomicInteger runs) {
+        return new Sync.Task(10L) {
+            @Override
+            public void runTask() {
+                runs.incrementAndGet();
+            }
+        };
+    }
+
+    private long totalCpuTime(ThreadMXBean threads) {
+        long total = 0;
+        for ( long id : threads.getAllThreadIds() ) {
+            total += Math.max(0, threads.getThreadCpuTime(id));
+        }
+        return total;
+    }
+
+}
@@ -0,0 +1,62 @@
+package net.amarantha.lightboard.utility;
+
+import org.junit.Test;
+
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class VirtualSyncTest {
+
+    @Test
+    public void testVirtualTime() {
+
+        VirtualSync sync = new VirtualSync();
+        sync.init();
+        sync.setMinimumStep(5);
+        Now now = new VirtualNow(sync);
+
+        AtomicInteger fast = new AtomicInteger();
+        AtomicInteger slow = new AtomicInteger();
+        AtomicInteger continuous = new AtomicInteger();
+        AtomicInteger timer = new AtomicInteger();
+
+        sync.addTask(counter(20L, fast));
+        sync.addTask(counter(1000L, slow));
+        sync.addTask(counter(null, continuous));
+        sync.startTimerTask(new TimerTask() {
+            @Override
+            public void run() {
+                timer.incrementAndGet();
+            }
+        }, 60000L);
+
+        long start = now.millis();
+        sync.startSyncThread();
+        sync.advance(10, TimeUnit.SECONDS);
+
+        // Every task runs at time zero, then once per interval up to and including the end
+        assertEquals(10000, now.millis() - start);
+        assertEquals(501, fast.get());
+        assertEquals(11, slow.get());
+        assertEquals(2001, continuous.get());
+        assertEquals(1, timer.get());
+
+        sync.advance(2, TimeUnit.HOURS);
+        assertEquals(121, timer.get());
+        assertEquals(7211, slow.get());
+
+    }
+
+    private Sync.Task counter(Long interval, AtomicInteger count) {
+        return new Sync.Task(interval) {
+            @Override
+            public void runTask() {
+                count.incrementAndGet();
+            }
+        };
+    }
+
+}